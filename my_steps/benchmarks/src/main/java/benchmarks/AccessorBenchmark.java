@@ -0,0 +1,133 @@
+package benchmarks;
+
+import classes.City;
+import metadata.AccessorStrategies;
+import metadata.ColumnMetadata;
+import metadata.EntityMapper;
+import metadata.EntityMappers;
+import metadata.EntityMetadata;
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись 1000 объектов City в параметры запроса и чтение 1000 строк
+ * в объекты отображением модели (EntityMapper): через типизированные
+ * привязки колонок при доступе к полям рефлексией и через MethodHandle,
+ * и через отображение, сгенерированное при компиляции.
+ * Строки читаются из результата в памяти, параметры пишутся в запрос H2
+ * без выполнения, поэтому замер не включает работу БД.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessorBenchmark {
+    private static final int ROWS = 1000;
+
+    @Param({"reflective", "methodHandles", "generated"})
+    public String mapping;
+
+    private EntityMapper<City> mapper;
+    private List<City> cities;
+    private SimpleResultSet rows;
+    private Connection connection;
+    private PreparedStatement insert;
+
+    @Setup
+    public void setUp() throws Exception {
+        EntityMetadata<City> metadata;
+        if (mapping.equals("generated")) {
+            metadata = EntityMetadata.build(City.class);
+        } else {
+            boolean generated = EntityMappers.isGeneratedEnabled();
+            EntityMappers.setGeneratedEnabled(false);
+            try {
+                metadata = EntityMetadata.build(City.class, mapping.equals("reflective")
+                        ? AccessorStrategies.REFLECTIVE : AccessorStrategies.METHOD_HANDLES);
+            } finally {
+                EntityMappers.setGeneratedEnabled(generated);
+            }
+        }
+        mapper = metadata.getMapper();
+        cities = EmbeddedCities.cities(ROWS);
+
+        //колонки результата и параметры запроса в порядке колонок модели
+        List<ColumnMetadata> columns = metadata.getColumns();
+        rows = new SimpleResultSet();
+        //результат читается заново в каждой операции
+        rows.setAutoClose(false);
+        for (ColumnMetadata column : columns) {
+            rows.addColumn(column.getColumnName(), Types.JAVA_OBJECT, 0, 0);
+        }
+        for (City city : cities) {
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < row.length; ++i) {
+                row[i] = columns.get(i).get(city);
+            }
+            rows.addRow(row);
+        }
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+        StringBuilder table = new StringBuilder("CREATE TABLE cities (");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < columns.size(); ++i) {
+            table.append(i == 0 ? "" : ", ").append(columns.get(i).getColumnName())
+                    .append(' ').append(columns.get(i).getSqlType());
+            values.append(i == 0 ? "?" : ", ?");
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(table.append(')').toString());
+        }
+        insert = connection.prepareStatement("INSERT INTO cities VALUES (" + values + ")");
+    }
+
+    @Benchmark
+    public PreparedStatement bind() throws SQLException {
+        for (City city : cities) {
+            mapper.bindColumns(insert, 1, city);
+        }
+        return insert;
+    }
+
+    @Benchmark
+    public List<City> read() throws SQLException {
+        List<City> read = new ArrayList<>(ROWS);
+        rows.beforeFirst();
+        while (rows.next()) {
+            read.add(mapper.read(rows));
+        }
+        return read;
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try {
+            insert.close();
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package benchmarks;
+
+import classes.City;
+import mySQL.MySqlDao;
+import mySQL.MySqlDaoFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pool.PoolConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка 200000 строк в таблицу Cities MySQL: пакетами через executeBatch,
+ * пакетами одним запросом INSERT ... VALUES (...), (...) и потоком
+ * через LOAD DATA LOCAL INFILE. Операция включает откат транзакции.
+ * Нужен запущенный MySQL с local_infile = 1; адрес и учётная запись
+ * задаются параметрами, например -p user=root -p password=secret.
+ * Без доступного MySQL замер завершается ошибкой подготовки,
+ * остальные замеры выполняются.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkLoadBenchmark {
+    private static final int ROWS = 200000;
+
+    @Param("jdbc:mysql://localhost:3306/?allowLoadLocalInfile=true")
+    public String url;
+
+    @Param("kost")
+    public String user;
+
+    @Param("webster")
+    public String password;
+
+    private MySqlDaoFactory factory;
+    private Connection connection;
+    private List<City> cities;
+    private MySqlDao<City> batchDao;
+    private MySqlDao<City> multiRowDao;
+
+    @Setup
+    public void setUp() throws Exception {
+        factory = new MySqlDaoFactory(new PoolConfig(url, user, password));
+        cities = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; ++i) {
+            //табуляция в названии проверяет экранирование потока LOAD DATA
+            cities.add(new City("City\t" + i, "Country" + (i % 200), i, i % 10 == 0));
+        }
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        batchDao = (MySqlDao<City>) factory.getDao(connection, City.class);
+        multiRowDao = (MySqlDao<City>) factory.getDao(connection, City.class);
+        multiRowDao.setMultiRowInsert(true);
+    }
+
+    @Benchmark
+    public int[] executeBatch() throws SQLException {
+        int[] counts = batchDao.insertAll(cities);
+        connection.rollback();
+        return counts;
+    }
+
+    @Benchmark
+    public int[] multiRowValues() throws SQLException {
+        int[] counts = multiRowDao.insertAll(cities);
+        connection.rollback();
+        return counts;
+    }
+
+    @Benchmark
+    public int loadDataLocal() throws SQLException {
+        int loaded = batchDao.bulkLoad(cities);
+        connection.rollback();
+        return loaded;
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try {
+            connection.close();
+        } finally {
+            factory.close();
+        }
+    }
+}
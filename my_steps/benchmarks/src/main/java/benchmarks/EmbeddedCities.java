@@ -0,0 +1,52 @@
+package benchmarks;
+
+import classes.City;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Встроенная БД H2 с таблицей Cities для замеров, которым нужна БД
+ */
+final class EmbeddedCities {
+    private static final AtomicInteger opened = new AtomicInteger();//Для имён баз
+
+    private EmbeddedCities() {}
+
+    /**
+     * Города City0..City{count - 1} в 200 странах
+     * @param count число городов
+     * @return города
+     */
+    static List<City> cities(int count) {
+        List<City> cities = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            cities.add(new City("City" + i, "Country" + (i % 200), i, i % 10 == 0));
+        }
+        return cities;
+    }
+
+    /**
+     * Открывает новую базу в памяти и записывает в Cities count городов.
+     * База живёт до конца процесса, поэтому к имени добавляется номер:
+     * при запуске без форков (-f 0) каждое состояние получает пустую базу.
+     * @param database имя базы, своё для каждого замера
+     * @param count число городов
+     * @return фабрика над базой
+     * @throws Exception
+     */
+    static EmbeddedDaoFactory open(String database, int count) throws Exception {
+        EmbeddedDaoFactory factory = new EmbeddedDaoFactory(database + "_" + opened.incrementAndGet());
+        if (count > 0) {
+            try (Connection connection = factory.getContext()) {
+                ReflectionJdbcDao<City> dao = factory.getDao(connection, City.class);
+                dao.insertAll(cities(count));
+            }
+        }
+        return factory;
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import classes.City;
+import classes.Employee;
+import classes.ReflectionHelper;
+import metadata.ColumnMetadata;
+import metadata.EntityMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Получение значений полей для insert и update: через обход иерархии
+ * в ReflectionHelper на каждом вызове и через заранее построенную EntityMetadata
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+
+    @Param({"City", "Employee"})
+    public String entityClass;
+
+    private Object entity;
+    private Class<?> cls;
+    private EntityMetadata<?> metadata;
+
+    @Setup
+    public void setUp() throws Exception {
+        entity = entityClass.equals("City")
+                ? new City("Moscow", "Russia", 16000000, true) : new Employee(1, "Frank", "Austin");
+        cls = entity.getClass();
+        metadata = EntityMetadata.forClass(cls);
+    }
+
+    @Benchmark
+    public void insertReflectionHelper(Blackhole values) throws IllegalAccessException {
+        for (Field f : ReflectionHelper.getAllValidFields(cls)) {
+            f.setAccessible(true);
+            values.consume(f.get(entity));
+        }
+    }
+
+    @Benchmark
+    public void insertEntityMetadata(Blackhole values) {
+        for (ColumnMetadata column : metadata.getColumns()) {
+            values.consume(column.get(entity));
+        }
+    }
+
+    @Benchmark
+    public void updateReflectionHelper(Blackhole values) throws IllegalAccessException {
+        List<Field> keys = ReflectionHelper.getKeyFields(cls);
+        List<Field> nonKeys = ReflectionHelper.getAllValidFields(cls);
+        nonKeys.removeAll(keys);
+        for (Field f : nonKeys) {
+            f.setAccessible(true);
+            values.consume(f.get(entity));
+        }
+        for (Field f : keys) {
+            f.setAccessible(true);
+            values.consume(f.get(entity));
+        }
+    }
+
+    @Benchmark
+    public void updateEntityMetadata(Blackhole values) {
+        for (ColumnMetadata column : metadata.getNonKeyColumns()) {
+            values.consume(column.get(entity));
+        }
+        for (ColumnMetadata column : metadata.getKeyColumns()) {
+            values.consume(column.get(entity));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import classes.City;
+import dao.Criteria;
+import dao.EntityQueries;
+import dialects.MySqlDialect;
+import metadata.EntityMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Получение текста SQL запросов к таблице Cities: построение условий
+ * и поиск запроса по их виду, запросы выборки по нескольким ключам
+ * и многострочной вставки из кэша EntityQueries
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryRenderingBenchmark {
+    private EntityQueries queries;
+
+    @Setup
+    public void setUp() throws Exception {
+        queries = EntityQueries.forEntity(EntityMetadata.forClass(City.class), MySqlDialect.INSTANCE, "yandex_dao");
+    }
+
+    @Benchmark
+    public String criteriaQuery() {
+        Criteria<City> criteria = new Criteria<City>().eq("country", "Russia")
+                .gt("population", 100000).orderBy("population").limit(10);
+        return queries.getCountQuery(criteria);
+    }
+
+    @Benchmark
+    public String selectByKeysQuery() {
+        return queries.getSelectByKeysQuery(500);
+    }
+
+    @Benchmark
+    public String multiRowInsertQuery() {
+        return queries.getMultiRowInsertQuery(1000);
+    }
+}
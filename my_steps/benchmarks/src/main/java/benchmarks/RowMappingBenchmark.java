@@ -0,0 +1,87 @@
+package benchmarks;
+
+import classes.City;
+import dao.GenericDao;
+import dialects.H2Dialect;
+import embedded.EmbeddedDaoFactory;
+import metadata.EntityMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение 1000 строк Cities встроенной H2 в объекты: сопоставление
+ * колонок по именам (parseResultSet после SELECT *) и по позициям
+ * (selectAll с явным списком колонок). Кроме пропускной способности
+ * снимаются перцентили длительности операции.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+    private static final int ROWS = 1000;
+
+    private EmbeddedDaoFactory factory;
+    private Connection connection;
+    private PreparedStatement selectAll;
+    private NameMappingDao dao;
+
+    /** Открывает доступ к parseResultSet */
+    private static class NameMappingDao extends GenericDao<City> {
+        NameMappingDao(Connection connection) throws Exception {
+            super(connection, EntityMetadata.forClass(City.class), H2Dialect.INSTANCE, DEFAULT_SCHEMA);
+        }
+
+        List<City> parse(ResultSet rs) {
+            return parseResultSet(rs);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        factory = EmbeddedCities.open("row_mapping_benchmark", ROWS);
+        connection = factory.getContext();
+        selectAll = connection.prepareStatement("SELECT * FROM \"yandex_dao\".\"Cities\"");
+        dao = new NameMappingDao(connection);
+    }
+
+    @Benchmark
+    public List<City> byName() throws SQLException {
+        try (ResultSet rs = selectAll.executeQuery()) {
+            return dao.parse(rs);
+        }
+    }
+
+    @Benchmark
+    public List<City> byPosition() {
+        return dao.selectAll();
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try {
+            selectAll.close();
+            connection.close();
+        } finally {
+            factory.close();
+        }
+    }
+}
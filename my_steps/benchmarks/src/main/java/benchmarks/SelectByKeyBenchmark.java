@@ -0,0 +1,79 @@
+package benchmarks;
+
+import classes.City;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import metadata.EntityKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение по ключу из 10000 строк Cities встроенной H2: selectByKey
+ * случайного города и selectByKeys 100 случайных городов.
+ * Задержки операций смотреть в перцентилях режима SampleTime.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SelectByKeyBenchmark {
+    private static final int ROWS = 10000;
+    private static final int LOOKUP_KEYS = 100;
+
+    private EmbeddedDaoFactory factory;
+    private Connection connection;
+    private ReflectionJdbcDao<City> dao;
+    private List<City> cities;
+    private Random random;
+
+    @Setup
+    public void setUp() throws Exception {
+        factory = EmbeddedCities.open("select_by_key_benchmark", ROWS);
+        cities = EmbeddedCities.cities(ROWS);
+        random = new Random(42);
+        connection = factory.getContext();
+        dao = factory.getDao(connection, City.class);
+    }
+
+    @Benchmark
+    public City selectByKey() {
+        return dao.selectByKey(cities.get(random.nextInt(ROWS)));
+    }
+
+    @Benchmark
+    public Map<EntityKey, City> selectByKeys() {
+        List<City> keys = new ArrayList<>(LOOKUP_KEYS);
+        for (int i = 0; i < LOOKUP_KEYS; ++i) {
+            keys.add(cities.get(random.nextInt(ROWS)));
+        }
+        return dao.selectByKeys(keys);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try {
+            connection.close();
+        } finally {
+            factory.close();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import classes.City;
+import dao.GenericDao;
+import embedded.EmbeddedDaoFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись 100 и 20000 строк Cities во встроенную H2: по одной строке,
+ * пакетом через executeBatch и одним запросом INSERT ... VALUES (...), (...).
+ * Операция включает откат транзакции. Те же способы записи в MySQL
+ * сравнивает BulkLoadBenchmark.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+    @Param({"100", "20000"})
+    public int rows;
+
+    private EmbeddedDaoFactory factory;
+    private Connection connection;
+    private List<City> cities;
+    private GenericDao<City> batchDao;
+    private GenericDao<City> multiRowDao;
+
+    @Setup
+    public void setUp() throws Exception {
+        factory = EmbeddedCities.open("write_benchmark", 0);
+        cities = EmbeddedCities.cities(rows);
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        batchDao = (GenericDao<City>) factory.getDao(connection, City.class);
+        multiRowDao = (GenericDao<City>) factory.getDao(connection, City.class);
+        multiRowDao.setMultiRowInsert(true);
+    }
+
+    @Benchmark
+    public Object singleRowInserts() throws SQLException {
+        for (City city : cities) {
+            batchDao.insert(city);
+        }
+        connection.rollback();
+        return batchDao;
+    }
+
+    @Benchmark
+    public int[] executeBatch() throws SQLException {
+        int[] counts = batchDao.insertAll(cities);
+        connection.rollback();
+        return counts;
+    }
+
+    @Benchmark
+    public int[] multiRowValues() throws SQLException {
+        int[] counts = multiRowDao.insertAll(cities);
+        connection.rollback();
+        return counts;
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try {
+            connection.close();
+        } finally {
+            factory.close();
+        }
+    }
+}
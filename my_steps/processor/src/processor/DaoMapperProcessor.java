@@ -0,0 +1,503 @@
+package processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Процессор аннотаций, генерирующий для каждого класса, помеченного
+ * TaggedObject, отображение <Класс>_DaoMapper (metadata.EntityMapper)
+ * в пакете класса. Отображение пишет и читает поля напрямую или через
+ * get/set методы, без рефлексии и без обращений через FieldAccessor
+ * и ColumnBinding, а также содержит имя таблицы и имена колонок.
+ *
+ * Колонки - поля класса и его родителей известных типов
+ * (как ReflectionHelper.getAllValidFields) в том же порядке.
+ * Если поле недоступно из пакета класса ни напрямую, ни через методы,
+ * отображение не создаётся, а dao работает через рефлексию. Так же
+ * пропускаются непубличные классы, в том числе вспомогательные классы,
+ * объявленные в файле другого класса: отображение было бы публичным
+ * классом, открывающим доступ к непубличному.
+ *
+ * Процессор не зависит от классов dao: аннотации и интерфейс
+ * отображения указываются по именам.
+ */
+public class DaoMapperProcessor extends AbstractProcessor {
+    private static final String TAGGED_OBJECT = "annotations.TaggedObject";
+    private static final String KEY_FIELD = "annotations.KeyField";
+    private static final String ENTITY_MAPPER = "metadata.EntityMapper";
+    private static final String SUFFIX = "_DaoMapper";
+
+    //тип поля -> запись и чтение колонки
+    private static final Map<String, ColumnType> columnTypes = new HashMap<>();
+
+    static {
+        primitive("int", "Int");
+        primitive("long", "Long");
+        primitive("short", "Short");
+        primitive("byte", "Byte");
+        primitive("double", "Double");
+        primitive("float", "Float");
+        primitive("boolean", "Boolean");
+        wrapper("java.lang.Integer", "Int", "int", "INTEGER");
+        wrapper("java.lang.Long", "Long", "long", "BIGINT");
+        wrapper("java.lang.Short", "Short", "short", "SMALLINT");
+        wrapper("java.lang.Byte", "Byte", "byte", "TINYINT");
+        wrapper("java.lang.Double", "Double", "double", "DOUBLE");
+        wrapper("java.lang.Float", "Float", "float", "REAL");
+        wrapper("java.lang.Boolean", "Boolean", "boolean", "BOOLEAN");
+        columnTypes.put("java.lang.String", new ColumnType(
+                "statement.setString(index, %s);",
+                "%s(rs.getString(%d));"));
+        columnTypes.put("char", new ColumnType(
+                "statement.setString(index, String.valueOf(%s));",
+                "String value%2$d = rs.getString(%2$d);\n" +
+                "        %1$s(value%2$d == null || value%2$d.isEmpty() ? '\\0' : value%2$d.charAt(0));"));
+        columnTypes.put("java.lang.Character", new ColumnType(
+                "Character value = %s;\n" +
+                "        if (value == null) {\n" +
+                "            statement.setNull(index, Types.CHAR);\n" +
+                "        } else {\n" +
+                "            statement.setString(index, String.valueOf(value.charValue()));\n" +
+                "        }",
+                "String value%2$d = rs.getString(%2$d);\n" +
+                "        %1$s(value%2$d == null || value%2$d.isEmpty() ? null : Character.valueOf(value%2$d.charAt(0)));"));
+    }
+
+    private static void primitive(String type, String jdbc) {
+        columnTypes.put(type, new ColumnType(
+                "statement.set" + jdbc + "(index, %s);",
+                "%s(rs.get" + jdbc + "(%d));"));
+    }
+
+    private static void wrapper(String type, String jdbc, String primitive, String sqlType) {
+        String simpleName = type.substring(type.lastIndexOf('.') + 1);
+        columnTypes.put(type, new ColumnType(
+                simpleName + " value = %s;\n" +
+                "        if (value == null) {\n" +
+                "            statement.setNull(index, Types." + sqlType + ");\n" +
+                "        } else {\n" +
+                "            statement.set" + jdbc + "(index, value);\n" +
+                "        }",
+                primitive + " value%2$d = rs.get" + jdbc + "(%2$d);\n" +
+                "        %1$s(rs.wasNull() ? null : " + simpleName + ".valueOf(value%2$d));"));
+    }
+
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        filer = processingEnv.getFiler();
+        messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(TAGGED_OBJECT);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement tagged = elements.getTypeElement(TAGGED_OBJECT);
+        if (tagged == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(tagged)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                process((TypeElement) element);
+            }
+        }
+
+        return false;
+    }
+
+    private void process(TypeElement entity) {
+        String problem = checkEntity(entity);
+        List<Column> columns = new ArrayList<>();
+        if (problem == null) {
+            problem = collectColumns(entity, columns);
+        }
+        if (problem != null) {
+            messager.printMessage(Diagnostic.Kind.NOTE, entity.getQualifiedName() + ": " + problem +
+                    ", " + SUFFIX + " is not generated, reflection is used", entity);
+            return;
+        }
+
+        try {
+            write(entity, columns);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Can't write mapper: " + e, entity);
+        }
+    }
+
+    /**
+     * Проверяет, что класс и объемлющие его классы публичны
+     * и объекты класса можно создавать из пакета класса
+     * @return описание препятствия или null
+     */
+    private String checkEntity(TypeElement entity) {
+        Set<Modifier> modifiers = entity.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT)) {
+            return "class is abstract";
+        }
+        if (!entity.getTypeParameters().isEmpty()) {
+            return "class is generic";
+        }
+        for (Element e = entity; e.getKind() == ElementKind.CLASS; e = e.getEnclosingElement()) {
+            TypeElement type = (TypeElement) e;
+            //непубличный класс верхнего уровня может быть объявлен в чужом файле
+            if (!type.getModifiers().contains(Modifier.PUBLIC)) {
+                return "class is not public";
+            }
+            if (type.getNestingKind() == NestingKind.TOP_LEVEL) {
+                break;
+            }
+            if (type.getNestingKind() != NestingKind.MEMBER || !type.getModifiers().contains(Modifier.STATIC)) {
+                return "class is not static";
+            }
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return accessible(constructor, packageOf(entity)) ? null : "no-arg constructor is private";
+            }
+        }
+        return ElementFilter.constructorsIn(entity.getEnclosedElements()).isEmpty() ? null
+                : "class has no no-arg constructor";
+    }
+
+    /**
+     * Собирает колонки класса и его родителей
+     * @return описание препятствия или null
+     */
+    private String collectColumns(TypeElement entity, List<Column> columns) {
+        PackageElement pkg = packageOf(entity);
+        Set<String> names = new HashSet<>();
+        TypeElement keyField = elements.getTypeElement(KEY_FIELD);
+        for (TypeElement type = entity; type != null; type = superclassOf(type)) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                String fieldType = typeName(field.asType());
+                if (field.getModifiers().contains(Modifier.STATIC) || !columnTypes.containsKey(fieldType)) {
+                    continue;
+                }
+                String name = field.getSimpleName().toString();
+                if (!names.add(name)) {
+                    return "field " + name + " is hidden by a field of a subclass";
+                }
+                Column column = new Column(columns.size(), name, fieldType, hasAnnotation(field, keyField));
+                if (accessible(field, pkg) && accessible(type, pkg)) {
+                    column.getter = "entity." + name;
+                    column.setter = "entity." + name + " = ";
+                } else {
+                    String getter = findGetter(entity, name, field.asType(), pkg);
+                    String setter = findSetter(entity, name, field.asType(), pkg);
+                    if (getter == null || setter == null) {
+                        return "field " + name + " has no accessible get and set methods";
+                    }
+                    column.getter = "entity." + getter + "()";
+                    column.setter = "entity." + setter;
+                }
+                columns.add(column);
+            }
+        }
+
+        return null;
+    }
+
+    private String findGetter(TypeElement entity, String field, TypeMirror type, PackageElement pkg) {
+        String suffix = capitalize(field);
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+            String name = method.getSimpleName().toString();
+            boolean named = name.equals("get" + suffix) ||
+                    (type.getKind() == TypeKind.BOOLEAN && name.equals("is" + suffix));
+            if (named && method.getParameters().isEmpty() && types.isSameType(method.getReturnType(), type) &&
+                    !method.getModifiers().contains(Modifier.STATIC) && accessible(method, pkg)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private String findSetter(TypeElement entity, String field, TypeMirror type, PackageElement pkg) {
+        String name = "set" + capitalize(field);
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1 &&
+                    types.isSameType(method.getParameters().get(0).asType(), type) &&
+                    !method.getModifiers().contains(Modifier.STATIC) && accessible(method, pkg)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Доступен ли член класса из сгенерированного класса пакета pkg
+     */
+    private boolean accessible(Element member, PackageElement pkg) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        return !modifiers.contains(Modifier.PRIVATE) && packageOf(member).equals(pkg);
+    }
+
+    private PackageElement packageOf(Element element) {
+        return elements.getPackageOf(element);
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    private static boolean hasAnnotation(Element element, TypeElement annotation) {
+        if (annotation == null) {
+            return false;
+        }
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().asElement().equals(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String typeName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return type.toString();
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Имя колонки в under_score, как ReflectionHelper.underScorize
+     */
+    private static String underScorize(String camelCase) {
+        StringBuilder underScore = new StringBuilder(camelCase.length() + 4);
+        for (int i = 0; i < camelCase.length(); i++) {
+            char c = camelCase.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                underScore.append('_').append((char) (c - 'A' + 'a'));
+            } else {
+                underScore.append(c);
+            }
+        }
+        return underScore.toString();
+    }
+
+    private void write(TypeElement entity, List<Column> columns) throws IOException {
+        String pkg = packageOf(entity).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(entity).toString();
+        String simpleName = (pkg.isEmpty() ? binaryName : binaryName.substring(pkg.length() + 1))
+                .replace('$', '_') + SUFFIX;
+        //вложенные классы указываются через точку
+        String entityName = pkg.isEmpty() ? entity.getQualifiedName().toString()
+                : entity.getQualifiedName().toString().substring(pkg.length() + 1);
+        String tableName = tableName(entity);
+
+        List<Column> keys = new ArrayList<>();
+        List<Column> nonKeys = new ArrayList<>();
+        for (Column column : columns) {
+            (column.key ? keys : nonKeys).add(column);
+        }
+
+        StringBuilder out = new StringBuilder();
+        if (!pkg.isEmpty()) {
+            out.append("package ").append(pkg).append(";\n\n");
+        }
+        out.append("import java.sql.PreparedStatement;\n")
+                .append("import java.sql.ResultSet;\n")
+                .append("import java.sql.SQLException;\n");
+        //java.sql.Types нужен только для записи null в колонки-обёртки
+        if (hasNullable(columns)) {
+            out.append("import java.sql.Types;\n");
+        }
+        out.append('\n')
+                .append("/**\n")
+                .append(" * Отображение ").append(entityName).append(" на таблицу ").append(tableName)
+                .append(",\n * сгенерированное ").append(DaoMapperProcessor.class.getName())
+                .append(". Не редактировать.\n */\n")
+                .append("public final class ").append(simpleName).append(" implements ")
+                .append(ENTITY_MAPPER).append('<').append(entityName).append("> {\n")
+                .append("    public static final String TABLE_NAME = ").append(literal(tableName)).append(";\n")
+                .append("    private static final String[] COLUMN_NAMES = ").append(names(columns)).append(";\n")
+                .append("    private static final String[] KEY_COLUMN_NAMES = ").append(names(keys)).append(";\n\n")
+                .append("    @Override\n")
+                .append("    public String[] getColumnNames() {\n")
+                .append("        return COLUMN_NAMES.clone();\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public String[] getKeyColumnNames() {\n")
+                .append("        return KEY_COLUMN_NAMES.clone();\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public ").append(entityName).append(" newInstance() {\n")
+                .append("        return new ").append(entityName).append("();\n")
+                .append("    }\n\n");
+        appendBindAll(out, "bindColumns", entityName, columns);
+        appendBindAll(out, "bindKeyColumns", entityName, keys);
+        appendBindAll(out, "bindNonKeyColumns", entityName, nonKeys);
+
+        out.append("    @Override\n")
+                .append("    public ").append(entityName).append(" read(ResultSet rs) throws SQLException {\n")
+                .append("        ").append(entityName).append(" entity = new ").append(entityName).append("();\n");
+        for (int i = 0; i < columns.size(); ++i) {
+            Column column = columns.get(i);
+            //"entity.setF(value);" или "entity.f = (value);"
+            out.append("        ").append(String.format(columnTypes.get(column.type).read, column.setter, i + 1))
+                    .append('\n');
+        }
+        out.append("        return entity;\n")
+                .append("    }\n");
+
+        for (int i = 0; i < columns.size(); ++i) {
+            Column column = columns.get(i);
+            out.append('\n')
+                    .append("    private static void bind").append(i).append("(PreparedStatement statement, int index, ")
+                    .append(entityName).append(" entity)\n")
+                    .append("            throws SQLException {\n")
+                    .append("        // ").append(column.name).append(" -> ").append(underScorize(column.name))
+                    .append('\n')
+                    .append("        ").append(String.format(columnTypes.get(column.type).bind, column.getter))
+                    .append('\n')
+                    .append("    }\n");
+        }
+        out.append("}\n");
+
+        JavaFileObject file = filer.createSourceFile((pkg.isEmpty() ? "" : pkg + ".") + simpleName, entity);
+        try (Writer writer = file.openWriter()) {
+            writer.write(out.toString());
+        }
+    }
+
+    private static boolean hasNullable(List<Column> columns) {
+        for (Column column : columns) {
+            if (columnTypes.get(column.type).bind.contains("Types.")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendBindAll(StringBuilder out, String method, String entityName, List<Column> columns) {
+        out.append("    @Override\n")
+                .append("    public int ").append(method).append("(PreparedStatement statement, int index, ")
+                .append(entityName).append(" entity)\n")
+                .append("            throws SQLException {\n");
+        for (Column column : columns) {
+            out.append("        bind").append(column.index).append("(statement, index++, entity);\n");
+        }
+        out.append("        return index;\n")
+                .append("    }\n\n");
+    }
+
+    private String tableName(TypeElement entity) {
+        TypeElement tagged = elements.getTypeElement(TAGGED_OBJECT);
+        for (AnnotationMirror mirror : entity.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().asElement().equals(tagged)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                        : mirror.getElementValues().entrySet()) {
+                    if (value.getKey().getSimpleName().contentEquals("name")) {
+                        return String.valueOf(value.getValue().getValue());
+                    }
+                }
+            }
+        }
+        return "";
+    }
+
+    private static String names(List<Column> columns) {
+        StringBuilder result = new StringBuilder("{");
+        for (int i = 0; i < columns.size(); ++i) {
+            result.append(i == 0 ? "" : ", ").append(literal(underScorize(columns.get(i).name)));
+        }
+        return result.append('}').toString();
+    }
+
+    private static String literal(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /** Запись и чтение колонки одного типа: шаблоны строк кода */
+    private static final class ColumnType {
+        //%s - выражение значения поля; параметр - index
+        final String bind;
+        //%1$s - присваивание или вызов set метода, %2$d - номер колонки
+        final String read;
+
+        ColumnType(String bind, String read) {
+            this.bind = bind;
+            this.read = read;
+        }
+    }
+
+    /** Колонка сгенерированного отображения */
+    private static final class Column {
+        final String name;
+        final String type;
+        final boolean key;
+        final int index;
+        //выражение значения поля
+        String getter;
+        //начало присваивания ("entity.f = ") или имя set метода ("entity.setF")
+        String setter;
+
+        Column(int index, String name, String type, boolean key) {
+            this.index = index;
+            this.name = name;
+            this.type = type;
+            this.key = key;
+        }
+    }
+}
@@ -14,7 +14,7 @@ import java.sql.SQLException;
  * Был вспомогательным классом для тестирования
  */
 public class A {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws SQLException {
         DaoFactory<Connection> factory = new MySqlDaoFactory();
         Connection connection = null;
         try {
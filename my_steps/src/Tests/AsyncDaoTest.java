@@ -0,0 +1,192 @@
+package Tests;
+
+import classes.City;
+import dao.AsyncDao;
+import dao.Criteria;
+import dao.DaoFactory;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Асинхронные операции dao над встроенной H2
+ */
+public class AsyncDaoTest {
+    private static EmbeddedDaoFactory factory;
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    /** Фабрика, задерживающая выдачу подключений до released */
+    private static class GatedFactory implements DaoFactory<Connection> {
+        private final AtomicInteger entered = new AtomicInteger();
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public Connection getContext() throws SQLException {
+            entered.incrementAndGet();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return factory.getContext();
+        }
+
+        @Override
+        public <T> ReflectionJdbcDao<T> getDao(Connection connection, Class<T> dtoClass) throws SQLException,
+                NoTableTitleException, NoKeyFieldsException {
+            return factory.getDao(connection, dtoClass);
+        }
+    }
+
+    /** Фабрика подключений, возврат которых завершается ошибкой */
+    private static class FailingCloseFactory implements DaoFactory<Connection> {
+
+        @Override
+        public Connection getContext() throws SQLException {
+            final Connection connection = factory.getContext();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            } finally {
+                                if (method.getName().equals("close")) {
+                                    throw new SQLException("Can't return connection");
+                                }
+                            }
+                        }
+                    });
+        }
+
+        @Override
+        public <T> ReflectionJdbcDao<T> getDao(Connection connection, Class<T> dtoClass) throws SQLException,
+                NoTableTitleException, NoKeyFieldsException {
+            return factory.getDao(connection, dtoClass);
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        if (factory == null) {
+            factory = new EmbeddedDaoFactory("async_dao_test");
+        }
+        connection = factory.getContext();
+        daoCity = factory.getDao(connection, City.class);
+    }
+
+    @Test
+    public void operationsCompleteFutures() throws Exception {
+        try (AsyncDao<City> async = new AsyncDao<>(factory, City.class, 4)) {
+            CompletableFuture.allOf(async.insert(new City("Moscow", "Russia", 16000000, true)),
+                    async.insertAll(Arrays.asList(new City("Kazan", "Russia", 1300000, true),
+                            new City("Ufa", "Russia", 1100000, true)))).get(5, TimeUnit.SECONDS);
+            async.upsert(new City("Ufa", "Russia", 1150000, true)).get(5, TimeUnit.SECONDS);
+
+            Assert.assertEquals(new City("Ufa", "Russia", 1150000, true),
+                    async.selectByKey(new City("Ufa", "Russia")).get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Long.valueOf(3),
+                    async.count(new Criteria<City>().eq("country", "Russia")).get(5, TimeUnit.SECONDS));
+
+            async.deleteByKey(new City("Kazan", "Russia")).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(2, async.selectAll().get(5, TimeUnit.SECONDS).size());
+        }
+    }
+
+    @Test
+    public void failureCompletesExceptionally() throws Exception {
+        daoCity.insert(new City("London", "UK", 10000000, true));
+        try (AsyncDao<City> async = new AsyncDao<>(factory, City.class, 1)) {
+            async.insert(new City("London", "UK", 10000000, true)).get(5, TimeUnit.SECONDS);
+            Assert.fail("Duplicate key must fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DaoException);
+        }
+    }
+
+    @Test
+    public void closeFailureCompletesExceptionally() throws Exception {
+        try (AsyncDao<City> async = new AsyncDao<>(new FailingCloseFactory(), City.class, 1)) {
+            async.selectAll().get(5, TimeUnit.SECONDS);
+            Assert.fail("Connection close failure must fail the operation");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("Can't return connection", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void dependentStageMayWaitForOperation() throws Exception {
+        daoCity.insert(new City("Kazan", "Russia", 1300000, true));
+        try (final AsyncDao<City> async = new AsyncDao<>(factory, City.class, 1)) {
+            //стадия выполняется в потоке задачи, когда её разрешение уже возвращено
+            CompletableFuture<Long> count = async.selectAll().thenApply(new Function<List<City>, Long>() {
+                @Override
+                public Long apply(List<City> cities) {
+                    return async.count(new Criteria<City>().eq("country", "Russia")).join() + cities.size();
+                }
+            });
+            Assert.assertEquals(Long.valueOf(2), count.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void concurrencyLimited() throws Exception {
+        GatedFactory gated = new GatedFactory();
+        List<CompletableFuture<List<City>>> selects = new ArrayList<>();
+        try (AsyncDao<City> async = new AsyncDao<>(gated, City.class, 2)) {
+            for (int i = 0; i < 6; ++i) {
+                selects.add(async.selectAll());
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (gated.entered.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            //остальные задачи ждут разрешения, не доходя до фабрики
+            Thread.sleep(100);
+            Assert.assertEquals(2, gated.entered.get());
+
+            gated.released.countDown();
+            for (CompletableFuture<List<City>> select : selects) {
+                Assert.assertTrue(select.get(5, TimeUnit.SECONDS).isEmpty());
+            }
+            Assert.assertEquals(6, gated.entered.get());
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        daoCity.deleteAllByKeys(daoCity.selectAll());
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,129 @@
+package Tests;
+
+import classes.City;
+import dao.GenericDao;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Пакетные insertAll, updateAll и deleteAllByKeys над встроенной H2:
+ * число изменённых записей по объектам, деление на пакеты
+ * и результаты невыполненных объектов при ошибке
+ */
+public class BatchDaoTest {
+    private static EmbeddedDaoFactory factory;
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    @BeforeClass
+    public static void createFactory() throws SQLException {
+        factory = new EmbeddedDaoFactory("batch_dao_test");
+        //пять городов делятся на пакеты 2, 2 и 1
+        factory.setBatchSize(2);
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        daoCity = factory.getDao(connection, City.class);
+    }
+
+    private static List<City> cities() {
+        return Arrays.asList(new City("Moscow", "Russia", 16000000, true),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("Ufa", "Russia", 1100000, true),
+                new City("London", "UK", 10000000, true),
+                new City("Leeds", "UK", 800000, false));
+    }
+
+    @Test
+    public void insertAllCountsEveryObject() {
+        Assert.assertArrayEquals(new int[] {1, 1, 1, 1, 1}, daoCity.insertAll(cities()));
+
+        Assert.assertEquals(5, daoCity.selectAll().size());
+        Assert.assertEquals(new City("Leeds", "UK", 800000, false), daoCity.selectByKey(new City("Leeds", "UK")));
+    }
+
+    @Test
+    public void multiRowInsertCountsEveryObject() {
+        ((GenericDao<City>) daoCity).setMultiRowInsert(true);
+
+        Assert.assertArrayEquals(new int[] {1, 1, 1, 1, 1}, daoCity.insertAll(cities()));
+        Assert.assertEquals(5, daoCity.selectAll().size());
+        Assert.assertEquals(new City("Ufa", "Russia", 1100000, true), daoCity.selectByKey(new City("Ufa", "Russia")));
+    }
+
+    @Test
+    public void updateAndDeleteCountMissingKeys() {
+        daoCity.insertAll(cities());
+
+        Assert.assertArrayEquals(new int[] {1, 0, 1}, daoCity.updateAll(Arrays.asList(
+                new City("Kazan", "Russia", 1310000, true), new City("Paris", "France", 2100000, true),
+                new City("Leeds", "UK", 810000, false))));
+        Assert.assertEquals(1310000, daoCity.selectByKey(new City("Kazan", "Russia")).getPopulation());
+        Assert.assertEquals(810000, daoCity.selectByKey(new City("Leeds", "UK")).getPopulation());
+
+        Assert.assertArrayEquals(new int[] {1, 0, 1}, daoCity.deleteAllByKeys(Arrays.asList(
+                new City("Moscow", "Russia"), new City("Paris", "France"), new City("London", "UK"))));
+        Assert.assertEquals(3, daoCity.selectAll().size());
+        Assert.assertNull(daoCity.selectByKey(new City("Moscow", "Russia")));
+    }
+
+    @Test
+    public void emptyCollectionDoesNothing() {
+        Assert.assertEquals(0, daoCity.insertAll(Arrays.<City>asList()).length);
+        Assert.assertEquals(0, daoCity.deleteAllByKeys(Arrays.<City>asList()).length);
+        Assert.assertTrue(daoCity.selectAll().isEmpty());
+    }
+
+    @Test
+    public void failedBatchReportsUnexecutedObjects() {
+        //повтор ключа Moscow во втором пакете, третий пакет не выполняется
+        List<City> cities = Arrays.asList(new City("Moscow", "Russia", 16000000, true),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("Ufa", "Russia", 1100000, true),
+                new City("Moscow", "Russia", 1, false),
+                new City("Leeds", "UK", 800000, false));
+        try {
+            daoCity.insertAll(cities);
+            Assert.fail("Duplicate key inserted");
+        } catch (DaoException e) {
+            Assert.assertTrue(e.getCause() instanceof BatchUpdateException);
+            int[] counts = ((BatchUpdateException) e.getCause()).getUpdateCounts();
+            Assert.assertEquals(5, counts.length);
+            Assert.assertEquals(1, counts[0]);
+            Assert.assertEquals(1, counts[1]);
+            Assert.assertEquals(Statement.EXECUTE_FAILED, counts[3]);
+            Assert.assertEquals(Statement.EXECUTE_FAILED, counts[4]);
+        }
+        Assert.assertNull(daoCity.selectByKey(new City("Leeds", "UK")));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
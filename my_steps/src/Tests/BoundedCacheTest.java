@@ -0,0 +1,52 @@
+package Tests;
+
+import cache.BoundedCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка вытеснения значений из кэша
+ */
+public class BoundedCacheTest {
+
+    @Test
+    public void leastRecentlyUsedEvicted () {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(2, 0, TimeUnit.SECONDS, false);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("c", 3);
+
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+        Assert.assertEquals(Integer.valueOf(3), cache.get("c"));
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertEquals(0.75, cache.getHitRatio(), 1e-9);
+    }
+
+    @Test
+    public void rareValueNotAdmitted () {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(1, 0, TimeUnit.SECONDS, true);
+        cache.put("hot", 1);
+        for (int i = 0; i < 5; ++i) {
+            cache.get("hot");
+        }
+        cache.put("cold", 2);
+
+        Assert.assertEquals(Integer.valueOf(1), cache.get("hot"));
+        Assert.assertEquals(1, cache.getRejections());
+    }
+
+    @Test
+    public void expiredValueRemoved () throws InterruptedException {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(10, 1, TimeUnit.MILLISECONDS, false);
+        cache.put("a", 1);
+        Thread.sleep(5);
+
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(1, cache.getExpirations());
+        Assert.assertEquals(0, cache.size());
+    }
+}
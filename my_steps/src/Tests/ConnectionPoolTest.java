@@ -0,0 +1,122 @@
+package Tests;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import pool.ConnectionPool;
+import pool.PoolConfig;
+import pool.PooledConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Проверка пула подключений на встроенной БД H2
+ */
+public class ConnectionPoolTest {
+    private ConnectionPool pool;
+
+    @Before
+    public void setUp () throws SQLException {
+        PoolConfig config = new PoolConfig("jdbc:h2:mem:pool_test;DB_CLOSE_DELAY=-1", "sa", "");
+        config.setMinSize(1);
+        config.setMaxSize(2);
+        config.setBorrowTimeoutMillis(100);
+        config.setEvictionIntervalMillis(0);
+        pool = new ConnectionPool(config);
+    }
+
+    @Test
+    public void reusesReturnedConnection () throws SQLException {
+        Connection first = pool.getConnection();
+        Connection physical = ((PooledConnection) first).getPhysicalConnection();
+        Assert.assertEquals(1, pool.getActiveCount());
+        first.close();
+
+        Assert.assertTrue(first.isClosed());
+        Assert.assertEquals(0, pool.getActiveCount());
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        Connection second = pool.getConnection();
+        Assert.assertSame(physical, ((PooledConnection) second).getPhysicalConnection());
+        Assert.assertEquals(1, pool.getTotalCount());
+        second.close();
+    }
+
+    @Test
+    public void timesOutWhenExhausted () throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        try {
+            pool.getConnection();
+            Assert.fail("Pool of size 2 gave out a third connection");
+        } catch (SQLException e) {
+            Assert.assertEquals(1, pool.getTimeoutCount());
+            Assert.assertTrue(pool.getTotalWaitNanos() > 0);
+        }
+        first.close();
+        second.close();
+        Assert.assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    public void rollsBackOnReturn () throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS pool_rows (id INT PRIMARY KEY)");
+            connection.setAutoCommit(false);
+            statement.executeUpdate("INSERT INTO pool_rows VALUES (1)");
+        }
+
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            Assert.assertTrue(connection.getAutoCommit());
+            Assert.assertFalse(statement.executeQuery("SELECT * FROM pool_rows").next());
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void closedConnectionIsUnusable () throws SQLException {
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.createStatement();
+    }
+
+    @Test
+    public void completionsRunWhenTransactionEnds () throws SQLException {
+        final AtomicInteger completed = new AtomicInteger();
+        Runnable action = new Runnable() {
+            @Override
+            public void run() {
+                completed.incrementAndGet();
+            }
+        };
+        try (PooledConnection connection = (PooledConnection) pool.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.afterCompletion(action);
+            //откат к точке сохранения транзакцию не завершает
+            connection.rollback(connection.setSavepoint());
+            connection.setAutoCommit(false);
+            Assert.assertEquals(0, completed.get());
+            connection.commit();
+            Assert.assertEquals(1, completed.get());
+
+            connection.afterCompletion(action);
+            connection.afterCompletion(action);
+            connection.close();
+            Assert.assertEquals(3, completed.get());
+            connection.afterCompletion(action);
+            Assert.fail("Returned connection accepted an action");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(3, completed.get());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+}
@@ -0,0 +1,140 @@
+package Tests;
+
+import classes.City;
+import dao.Criteria;
+import dao.EntityQueries;
+import dao.GenericDao;
+import dao.ReflectionJdbcDao;
+import dialects.H2Dialect;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.EntityMetadata;
+import metrics.DaoListener;
+import metrics.DaoOperation;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Выборка по условиям над встроенной H2: текст WHERE, ORDER BY, LIMIT ? OFFSET ?
+ * и выбранные записи
+ */
+public class CriteriaTest {
+    private static EmbeddedDaoFactory factory;
+    private static final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    @BeforeClass
+    public static void createFactory() throws SQLException {
+        factory = new EmbeddedDaoFactory("criteria_test");
+        factory.setListener(new DaoListener() {
+            @Override
+            public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                           long prepareNanos, long executeNanos, long mapNanos, int rows) {
+                if (operation == DaoOperation.SELECT) {
+                    queries.add(sql);
+                }
+            }
+
+            @Override
+            public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                        long elapsedNanos, Throwable error) {
+            }
+        });
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        daoCity = factory.getDao(connection, City.class);
+        daoCity.insertAll(Arrays.asList(new City("Moscow", "Russia", 16000000, true),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("Beloretsk", "Russia", 60000, false),
+                new City("Ufa", "Russia", 1100000, true),
+                new City("London", "UK", 10000000, true),
+                new City("Leeds", "UK", 800000, false)));
+        queries.clear();
+    }
+
+    @Test
+    public void countQueryRendersWhereOnly() throws NoKeyFieldsException, NoTableTitleException {
+        EntityQueries entityQueries = EntityQueries.forEntity(EntityMetadata.forClass(City.class),
+                H2Dialect.INSTANCE, GenericDao.DEFAULT_SCHEMA);
+        Criteria<City> criteria = new Criteria<City>().eq("country", "Russia").gt("population", 100000)
+                .orderBy("population").limit(10);
+
+        Assert.assertEquals("SELECT COUNT(*) FROM \"yandex_dao\".\"Cities\"\n"
+                + " WHERE \"country\" = ? AND \n\"population\" > ?", entityQueries.getCountQuery(criteria));
+    }
+
+    @Test
+    public void orderByLimitOffset() {
+        Criteria<City> russia = new Criteria<City>().eq("country", "Russia").ge("population", 1000000)
+                .orderBy("population", false).limit(2).offset(1);
+
+        Assert.assertEquals(Arrays.asList(new City("Kazan", "Russia", 1300000, true),
+                new City("Ufa", "Russia", 1100000, true)), daoCity.select(russia));
+        Assert.assertEquals(3, daoCity.count(new Criteria<City>().eq("country", "Russia")
+                .ge("population", 1000000)));
+
+        Assert.assertEquals(Collections.singletonList("SELECT \"is_megapolis\", \"city_name\", \"country\","
+                + " \"population\" FROM \"yandex_dao\".\"Cities\"\n"
+                + " WHERE \"country\" = ? AND \n\"population\" >= ?\n"
+                + " ORDER BY \"population\" DESC\n"
+                + " LIMIT ? OFFSET ?"), queries);
+    }
+
+    @Test
+    public void sameShapeSharesQuery() {
+        Assert.assertEquals(Collections.singletonList(new City("London", "UK", 10000000, true)),
+                daoCity.select(new Criteria<City>().eq("country", "UK").orderBy("population", false).limit(1)));
+        Assert.assertEquals(Collections.singletonList(new City("Moscow", "Russia", 16000000, true)),
+                daoCity.select(new Criteria<City>().eq("country", "Russia").orderBy("population", false).limit(1)));
+
+        Assert.assertEquals(2, queries.size());
+        Assert.assertSame(queries.get(0), queries.get(1));
+    }
+
+    @Test
+    public void inBetweenAndNull() {
+        Assert.assertEquals(Arrays.asList(new City("Leeds", "UK", 800000, false),
+                new City("Ufa", "Russia", 1100000, true), new City("Kazan", "Russia", 1300000, true)),
+                daoCity.select(new Criteria<City>().between("population", 500000, 5000000)
+                        .orderBy("population")));
+        Assert.assertEquals(Arrays.asList(new City("Beloretsk", "Russia", 60000, false),
+                new City("Leeds", "UK", 800000, false)),
+                daoCity.select(new Criteria<City>().in("cityName", "Leeds", "Beloretsk", "Paris")
+                        .orderBy("population")));
+        Assert.assertTrue(daoCity.select(new Criteria<City>().in("cityName", Collections.emptyList())).isEmpty());
+        Assert.assertEquals(0, daoCity.count(new Criteria<City>().isNull("isMegapolis")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldRejected() {
+        daoCity.select(new Criteria<City>().eq("mayor", "Sobyanin"));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,214 @@
+package Tests;
+
+import metadata.EntityMapper;
+import metadata.EntityMappers;
+import metadata.EntityMetadata;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import processor.DaoMapperProcessor;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Проверка отображений, сгенерированных DaoMapperProcessor:
+ * для каких классов они создаются, их код и совпадение
+ * с отображением через колонки модели
+ */
+public class DaoMapperProcessorTest {
+    private static final String SAMPLE =
+            "package sample;\n" +
+            "\n" +
+            "import annotations.KeyField;\n" +
+            "import annotations.TaggedObject;\n" +
+            "\n" +
+            "@TaggedObject(name = \"Samples\")\n" +
+            "public class Sample {\n" +
+            "    @KeyField\n" +
+            "    private String code;\n" +
+            "    private Integer amount;\n" +
+            "    private boolean active;\n" +
+            "    double rate;\n" +
+            "\n" +
+            "    public String getCode() { return code; }\n" +
+            "    public void setCode(String code) { this.code = code; }\n" +
+            "    public Integer getAmount() { return amount; }\n" +
+            "    public void setAmount(Integer amount) { this.amount = amount; }\n" +
+            "    public boolean isActive() { return active; }\n" +
+            "    public void setActive(boolean active) { this.active = active; }\n" +
+            "}\n" +
+            "\n" +
+            "@TaggedObject(name = \"Drafts\")\n" +
+            "class Draft {\n" +
+            "    @KeyField\n" +
+            "    String code;\n" +
+            "}\n";
+    private static final String PLAIN =
+            "package sample;\n" +
+            "\n" +
+            "import annotations.KeyField;\n" +
+            "import annotations.TaggedObject;\n" +
+            "\n" +
+            "@TaggedObject(name = \"Plains\")\n" +
+            "public class Plain {\n" +
+            "    @KeyField\n" +
+            "    public long id;\n" +
+            "    public String name;\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File classes;
+    private File generated;
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+    /** Исходный файл, заданный строкой */
+    private static class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    @Before
+    public void compile() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        classes = folder.newFolder("classes");
+        generated = folder.newFolder("generated");
+
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                "-d", classes.getPath(), "-s", generated.getPath());
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null,
+                Arrays.asList(new Source("sample.Sample", SAMPLE), new Source("sample.Plain", PLAIN)));
+        task.setProcessors(Collections.singletonList(new DaoMapperProcessor()));
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+    }
+
+    @Test
+    public void mapperGeneratedForPublicClassesOnly() throws Exception {
+        Assert.assertTrue(new File(generated, "sample/Sample_DaoMapper.java").isFile());
+        Assert.assertTrue(new File(generated, "sample/Plain_DaoMapper.java").isFile());
+        Assert.assertFalse(new File(generated, "sample/Draft_DaoMapper.java").exists());
+
+        List<String> notes = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            Assert.assertEquals(diagnostic.toString(), Diagnostic.Kind.NOTE, diagnostic.getKind());
+            notes.add(diagnostic.getMessage(null));
+        }
+        Assert.assertEquals(Collections.singletonList(
+                "sample.Draft: class is not public, _DaoMapper is not generated, reflection is used"), notes);
+    }
+
+    @Test
+    public void typesImportedOnlyForNullableColumns() throws Exception {
+        Assert.assertTrue(read("sample/Sample_DaoMapper.java").contains("import java.sql.Types;"));
+        Assert.assertFalse(read("sample/Plain_DaoMapper.java").contains("java.sql.Types"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void generatedMapperMatchesReflective() throws Exception {
+        EntityMapper<Object> generatedMapper = (EntityMapper<Object>) mapperOf(loadSample());
+        EntityMapper<Object> reflectiveMapper;
+        EntityMappers.setGeneratedEnabled(false);
+        try {
+            reflectiveMapper = (EntityMapper<Object>) mapperOf(loadSample());
+        } finally {
+            EntityMappers.setGeneratedEnabled(true);
+        }
+        Assert.assertEquals("sample.Sample_DaoMapper", generatedMapper.getClass().getName());
+        Assert.assertNotEquals("sample.Sample_DaoMapper", reflectiveMapper.getClass().getName());
+        Assert.assertArrayEquals(reflectiveMapper.getColumnNames(), generatedMapper.getColumnNames());
+        Assert.assertArrayEquals(reflectiveMapper.getKeyColumnNames(), generatedMapper.getKeyColumnNames());
+
+        Object sample = generatedMapper.newInstance();
+        set(sample, "code", "A-1");
+        set(sample, "amount", null);
+        set(sample, "active", true);
+        set(sample, "rate", 2.5);
+        Object copy = pass(generatedMapper, reflectiveMapper, sample);
+        Assert.assertEquals(fields(sample), fields(copy));
+
+        set(copy, "amount", 42);
+        Assert.assertEquals(fields(copy), fields(pass(reflectiveMapper, generatedMapper, copy)));
+    }
+
+    /**
+     * Записывает объект одним отображением в параметры запроса
+     * и читает результат запроса другим
+     */
+    private static Object pass(EntityMapper<Object> writer, EntityMapper<Object> reader, Object entity)
+            throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+             PreparedStatement statement = connection.prepareStatement("SELECT ?, ?, ?, ?")) {
+            Assert.assertEquals(5, writer.bindColumns(statement, 1, entity));
+            try (ResultSet rs = statement.executeQuery()) {
+                Assert.assertTrue(rs.next());
+                return reader.read(rs);
+            }
+        }
+    }
+
+    /** Загружает скомпилированный класс отдельным загрузчиком, чтобы модель строилась заново */
+    private Class<?> loadSample() throws Exception {
+        URLClassLoader loader = new URLClassLoader(new URL[] {classes.toURI().toURL()},
+                getClass().getClassLoader());
+        return loader.loadClass("sample.Sample");
+    }
+
+    private static EntityMapper<?> mapperOf(Class<?> cls) throws Exception {
+        return EntityMetadata.forClass(cls).getMapper();
+    }
+
+    private static void set(Object entity, String name, Object value) throws Exception {
+        Field field = entity.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(entity, value);
+    }
+
+    private static List<Object> fields(Object entity) throws Exception {
+        List<Object> values = new ArrayList<>();
+        for (String name : Arrays.asList("code", "amount", "active", "rate")) {
+            Field field = entity.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            values.add(field.get(entity));
+        }
+        return values;
+    }
+
+    private String read(String path) throws Exception {
+        return new String(Files.readAllBytes(new File(generated, path).toPath()), StandardCharsets.UTF_8);
+    }
+}
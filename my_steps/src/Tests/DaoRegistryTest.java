@@ -0,0 +1,127 @@
+package Tests;
+
+import annotations.KeyField;
+import annotations.TaggedObject;
+import classes.City;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Регистрация классов фабрикой над встроенной H2: таблица класса создаётся
+ * один раз, даже если dao запрашивают одновременно несколько потоков,
+ * а каждый dao работает через переданное ему подключение
+ */
+public class DaoRegistryTest {
+    private static final int THREADS = 8;
+    private static EmbeddedDaoFactory factory;
+
+    @TaggedObject(name = "Airports")
+    public static class Airport {
+        @KeyField
+        private String code;
+        private String city;
+
+        public Airport() {}
+
+        public Airport(String code, String city) {
+            this.code = code;
+            this.city = city;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public String getCity() {
+            return city;
+        }
+
+        public void setCity(String city) {
+            this.city = city;
+        }
+    }
+
+    @BeforeClass
+    public static void createFactory() throws SQLException {
+        factory = new EmbeddedDaoFactory("dao_registry_test");
+    }
+
+    @Test
+    public void concurrentRegistrationCreatesTableOnce() throws Exception {
+        try (Connection connection = factory.getContext()) {
+            final RecordingConnection recording = new RecordingConnection(connection);
+            final CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<ReflectionJdbcDao<Airport>>> daos = new ArrayList<>();
+                for (int i = 0; i < THREADS; ++i) {
+                    daos.add(executor.submit(new Callable<ReflectionJdbcDao<Airport>>() {
+                        @Override
+                        public ReflectionJdbcDao<Airport> call() throws Exception {
+                            start.await();
+                            return factory.getDao(recording.getConnection(), Airport.class);
+                        }
+                    }));
+                }
+                start.countDown();
+
+                for (int i = 0; i < THREADS; ++i) {
+                    ReflectionJdbcDao<Airport> dao = daos.get(i).get();
+                    dao.insert(new Airport("A" + i, "City" + i));
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            Assert.assertEquals(THREADS, factory.getDao(connection, Airport.class).selectAll().size());
+            int creates = 0;
+            for (String update : recording.getUpdates()) {
+                if (update.startsWith("CREATE TABLE")) {
+                    ++creates;
+                }
+            }
+            Assert.assertEquals(1, creates);
+        }
+    }
+
+    @Test
+    public void registeredDaoUsesGivenConnection() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        try (Connection writer = factory.getContext(); Connection reader = factory.getContext()) {
+            writer.setAutoCommit(false);
+            ReflectionJdbcDao<City> written = factory.getDao(writer, City.class);
+            ReflectionJdbcDao<City> read = factory.getDao(reader, City.class);
+
+            written.insert(new City("Perm", "Russia", 1000000, true));
+            Assert.assertEquals(1, written.selectAll().size());
+            //незафиксированная строка не видна через другое подключение
+            Assert.assertTrue(read.selectAll().isEmpty());
+
+            writer.rollback();
+        }
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,121 @@
+package Tests;
+
+import annotations.KeyField;
+import annotations.TaggedObject;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.ColumnMetadata;
+import metadata.EntityMetadata;
+import mySQL.DelimitedRowStream;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Точные байты потока строк LOAD DATA: NULL, логические значения,
+ * экранирование и UTF-8 при чтении малыми порциями
+ */
+public class DelimitedRowStreamTest {
+    private List<ColumnMetadata> columns;
+
+    @TaggedObject(name = "Notes")
+    public static class Note {
+        @KeyField
+        private Integer id;
+        private String text;
+        private Boolean done;
+
+        public Note() {}
+
+        public Note(Integer id, String text, Boolean done) {
+            this.id = id;
+            this.text = text;
+            this.done = done;
+        }
+    }
+
+    @Before
+    public void setUp() throws NoKeyFieldsException, NoTableTitleException {
+        //порядок колонок задаёт запрос загрузки, а не модель
+        columns = new ArrayList<>();
+        for (String field : Arrays.asList("id", "text", "done")) {
+            for (ColumnMetadata column : EntityMetadata.forClass(Note.class).getColumns()) {
+                if (column.getFieldName().equals(field)) {
+                    columns.add(column);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nullsAndBooleans() throws Exception {
+        byte[] read = readAll(Arrays.asList(new Note(1, null, true), new Note(2, "", false),
+                new Note(3, "x", null)), 2);
+
+        Assert.assertEquals("1\t\\N\t1\n2\t\t0\n3\tx\t\\N\n", new String(read, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void specialCharactersEscaped() throws Exception {
+        byte[] read = readAll(Arrays.asList(new Note(1, "a\\b\tc\nd\re\0f\u001ag", true)), 3);
+
+        Assert.assertArrayEquals(new byte[] {'1', '\t',
+                'a', '\\', '\\', 'b', '\\', 't', 'c', '\\', 'n', 'd', '\\', 'r', 'e', '\\', '0', 'f', '\\', 'Z', 'g',
+                '\t', '1', '\n'}, read);
+    }
+
+    @Test
+    public void multiByteCharactersSplitAcrossReads() throws Exception {
+        String text = "Москва €😀";
+        List<Note> notes = Arrays.asList(new Note(1, text, false), new Note(2, text, true));
+        byte[] expected = ("1\t" + text + "\t0\n2\t" + text + "\t1\n").getBytes(StandardCharsets.UTF_8);
+
+        //порции любой длины режут многобайтные символы в разных местах
+        for (int chunk = 1; chunk <= 7; ++chunk) {
+            Assert.assertArrayEquals("chunk " + chunk, expected, readAll(notes, chunk));
+        }
+        Assert.assertArrayEquals(expected, readByBytes(notes));
+    }
+
+    @Test
+    public void emptyStreamEnds() throws Exception {
+        DelimitedRowStream<Note> stream = new DelimitedRowStream<>(new ArrayList<Note>().iterator(), columns);
+        Assert.assertEquals(0, stream.read(new byte[4], 0, 0));
+        Assert.assertEquals(-1, stream.read(new byte[4], 0, 4));
+        Assert.assertEquals(-1, stream.read());
+    }
+
+    /**
+     * Читает поток порциями не длиннее chunk в середину буфера
+     */
+    private byte[] readAll(List<Note> notes, int chunk) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream stream = new DelimitedRowStream<>(notes.iterator(), columns)) {
+            byte[] buffer = new byte[chunk + 2];
+            int read;
+            while ((read = stream.read(buffer, 1, chunk)) != -1) {
+                Assert.assertTrue(read > 0 && read <= chunk);
+                out.write(buffer, 1, read);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] readByBytes(List<Note> notes) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream stream = new DelimitedRowStream<>(notes.iterator(), columns)) {
+            int b;
+            while ((b = stream.read()) != -1) {
+                out.write(b);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,80 @@
+package Tests;
+
+import classes.City;
+import dao.Criteria;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Те же операции dao, что и в MySqlDaoSimpleTest, над встроенной H2
+ */
+public class EmbeddedDaoTest {
+    private static EmbeddedDaoFactory factory;
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        if (factory == null) {
+            factory = new EmbeddedDaoFactory("embedded_dao_test");
+        }
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        daoCity = factory.getDao(connection, City.class);
+    }
+
+    @Test
+    public void simpleTestCRUD() {
+        daoCity.insert(new City("Moscow", "Russia", 16000000, true));
+        daoCity.insert(new City("London", "UK", 10000000, true));
+        daoCity.insert(new City("Beloretsk", "Russia", 60000, false));
+
+        Assert.assertEquals(3, daoCity.selectAll().size());
+
+        City fake = new City("Beloretsk", "Russia");
+        Assert.assertEquals(60000, daoCity.selectByKey(fake).getPopulation());
+
+        daoCity.update(new City("Beloretsk", "Russia", 75000, false));
+        Assert.assertEquals(75000, daoCity.selectByKey(fake).getPopulation());
+
+        daoCity.deleteByKey(new City("London", "UK"));
+        Assert.assertNull(daoCity.selectByKey(new City("London", "UK")));
+        Assert.assertEquals(new City("Moscow", "Russia", 16000000, true),
+                daoCity.selectByKey(new City("Moscow", "Russia")));
+    }
+
+    @Test
+    public void upsertAndCriteria() {
+        daoCity.insertAll(Arrays.asList(new City("Tokyo", "Japan", 14000000, true),
+                new City("Osaka", "Japan", 2700000, true)));
+        daoCity.upsertAll(Arrays.asList(new City("Osaka", "Japan", 2750000, true),
+                new City("Kyoto", "Japan", 1500000, false)));
+
+        Criteria<City> japan = new Criteria<City>().eq("country", "Japan").orderBy("population").limit(2);
+        Assert.assertEquals(3, daoCity.count(new Criteria<City>().eq("country", "Japan")));
+        Assert.assertEquals(Arrays.asList(new City("Kyoto", "Japan", 1500000, false),
+                new City("Osaka", "Japan", 2750000, true)), daoCity.select(japan));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
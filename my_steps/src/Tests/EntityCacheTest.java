@@ -0,0 +1,153 @@
+package Tests;
+
+import annotations.Cached;
+import annotations.KeyField;
+import annotations.TaggedObject;
+import cache.EntityCache;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.EntityKey;
+import metadata.EntityMetadata;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+
+/**
+ * Согласованность кэша объектов (Cached) с записью в БД над встроенной H2
+ */
+public class EntityCacheTest {
+    private static EmbeddedDaoFactory factory;
+    private static EmbeddedDaoFactory otherFactory;
+
+    @Cached
+    @TaggedObject(name = "Currencies")
+    public static class Currency {
+        @KeyField
+        private String code;
+        private String title;
+
+        public Currency() {}
+
+        public Currency(String code, String title) {
+            this.code = code;
+            this.title = title;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+    }
+
+    @BeforeClass
+    public static void openFactories() throws SQLException {
+        factory = new EmbeddedDaoFactory("entity_cache_test");
+        otherFactory = new EmbeddedDaoFactory("entity_cache_test_other");
+    }
+
+    @Test
+    public void transactionalUpdateInvalidatedOnCommit() throws SQLException, NoKeyFieldsException,
+            NoTableTitleException {
+        try (Connection reader = factory.getContext(); Connection writer = factory.getContext()) {
+            ReflectionJdbcDao<Currency> readerDao = factory.getDao(reader, Currency.class);
+            ReflectionJdbcDao<Currency> writerDao = factory.getDao(writer, Currency.class);
+            readerDao.insert(new Currency("RUB", "Ruble"));
+            Currency key = new Currency("RUB", null);
+            Assert.assertEquals("Ruble", readerDao.selectByKey(key).getTitle());
+
+            writer.setAutoCommit(false);
+            writerDao.update(new Currency("RUB", "Russian ruble"));
+            //до commit читается и снова кэшируется прежнее значение
+            Assert.assertEquals("Ruble", readerDao.selectByKey(key).getTitle());
+            writer.commit();
+
+            Assert.assertEquals("Russian ruble", readerDao.selectByKey(key).getTitle());
+            readerDao.deleteByKey(key);
+        }
+    }
+
+    @Test
+    public void transactionReadsOwnWrites() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        try (Connection reader = factory.getContext(); Connection writer = factory.getContext()) {
+            ReflectionJdbcDao<Currency> readerDao = factory.getDao(reader, Currency.class);
+            ReflectionJdbcDao<Currency> writerDao = factory.getDao(writer, Currency.class);
+            readerDao.insert(new Currency("EUR", "Euro"));
+            Currency key = new Currency("EUR", null);
+
+            writer.setAutoCommit(false);
+            writerDao.update(new Currency("EUR", "Single currency"));
+            //читатель снова кладёт в кэш зафиксированное значение
+            Assert.assertEquals("Euro", readerDao.selectByKey(key).getTitle());
+            //транзакция видит своё изменение, а не объект из кэша
+            Assert.assertEquals("Single currency", writerDao.selectByKey(key).getTitle());
+            Assert.assertEquals("Single currency", writerDao.selectByKeys(Collections.singletonList(key))
+                    .get(new EntityKey("EUR")).getTitle());
+            writer.rollback();
+            writer.setAutoCommit(true);
+
+            Assert.assertEquals("Euro", readerDao.selectByKey(key).getTitle());
+            readerDao.deleteByKey(key);
+        }
+    }
+
+    @Test
+    public void lateReaderDoesNotRestoreEvictedObject() throws NoKeyFieldsException, NoTableTitleException {
+        EntityCache<Currency> cache = EntityCache.forEntity(EntityMetadata.forClass(Currency.class),
+                "late_reader", "yandex_dao");
+        EntityKey key = new EntityKey("JPY");
+
+        //читатель снял отметку и прочитал прежнее значение
+        long stamp = cache.stamp(key);
+        Currency old = new Currency("JPY", "Yen");
+        //писатель изменил запись и удалил её из кэша
+        cache.invalidate(key);
+        //опоздавший читатель кладёт прочитанное
+        cache.put(key, old, stamp);
+        Assert.assertNull(cache.get(key));
+
+        cache.put(key, new Currency("JPY", "Japanese yen"), cache.stamp(key));
+        Assert.assertEquals("Japanese yen", cache.get(key).getTitle());
+        cache.invalidateAll();
+        Assert.assertNull(cache.get(key));
+    }
+
+    @Test
+    public void databasesHaveSeparateCaches() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        try (Connection first = factory.getContext(); Connection second = otherFactory.getContext()) {
+            ReflectionJdbcDao<Currency> firstDao = factory.getDao(first, Currency.class);
+            ReflectionJdbcDao<Currency> secondDao = otherFactory.getDao(second, Currency.class);
+            firstDao.insert(new Currency("USD", "Dollar"));
+            secondDao.insert(new Currency("USD", "US dollar"));
+            Currency key = new Currency("USD", null);
+
+            Assert.assertEquals("Dollar", firstDao.selectByKey(key).getTitle());
+            Assert.assertEquals("US dollar", secondDao.selectByKey(key).getTitle());
+            firstDao.deleteByKey(key);
+            secondDao.deleteByKey(key);
+        }
+    }
+
+    @AfterClass
+    public static void closeFactories() {
+        factory.close();
+        otherFactory.close();
+    }
+}
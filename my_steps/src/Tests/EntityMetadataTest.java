@@ -0,0 +1,72 @@
+package Tests;
+
+import classes.City;
+import classes.Employee;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.AccessorStrategies;
+import metadata.AccessorStrategy;
+import metadata.ColumnMetadata;
+import metadata.EntityMetadata;
+import metadata.FieldAccessor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Проверка построения модели класса
+ */
+public class EntityMetadataTest {
+
+    @Test
+    public void cityColumns () throws NoKeyFieldsException, NoTableTitleException {
+        EntityMetadata<City> metadata = EntityMetadata.forClass(City.class);
+
+        Assert.assertEquals("Cities", metadata.getTableName());
+        Assert.assertEquals(4, metadata.getColumns().size());
+        Assert.assertEquals(names(metadata.getKeyColumns()), Arrays.asList("city_name", "country"));
+        Assert.assertEquals(names(metadata.getNonKeyColumns()), Arrays.asList("is_megapolis", "population"));
+        Assert.assertSame(metadata, EntityMetadata.forClass(City.class));
+    }
+
+    @Test
+    public void columnAccess () throws Exception {
+        EntityMetadata<Employee> metadata = EntityMetadata.forClass(Employee.class);
+        Employee employee = new Employee(1, "Frank", "Austin");
+
+        ColumnMetadata name = metadata.getColumn("name");
+        Assert.assertEquals("Frank", name.get(employee));
+        name.set(employee, "John");
+        Assert.assertEquals("John", metadata.getColumnByField("name").get(employee));
+    }
+
+    @Test
+    public void primitiveAccess () throws Exception {
+        for (AccessorStrategy strategy : new AccessorStrategy[] {
+                AccessorStrategies.REFLECTIVE, AccessorStrategies.METHOD_HANDLES}) {
+            EntityMetadata<City> metadata = EntityMetadata.build(City.class, strategy);
+            City city = metadata.newInstance();
+
+            FieldAccessor population = metadata.getColumnByField("population").getAccessor();
+            population.setInt(city, 60000);
+            Assert.assertEquals(60000, population.getInt(city));
+            Assert.assertEquals(60000, city.getPopulation());
+        }
+    }
+
+    @Test(expected = NoTableTitleException.class)
+    public void untaggedClass () throws NoKeyFieldsException, NoTableTitleException {
+        EntityMetadata.forClass(String.class);
+    }
+
+    private static List<String> names (List<ColumnMetadata> columns) {
+        List<String> names = new ArrayList<>();
+        for (ColumnMetadata column : columns) {
+            names.add(column.getColumnName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,178 @@
+package Tests;
+
+import classes.City;
+import dao.CloseableIterator;
+import dao.Criteria;
+import dao.GenericDao;
+import dialects.H2Dialect;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.EntityMetadata;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Потоковое чтение таблицы над встроенной H2: iterator, stream и forEach
+ * читают все строки и закрывают запрос по окончании строк,
+ * при закрытии прерванного обхода и при ошибке обработчика
+ */
+public class IteratorTest {
+    private static EmbeddedDaoFactory factory;
+    private Connection connection;
+    private RecordingConnection recording;
+    private GenericDao<City> daoCity;
+
+    @BeforeClass
+    public static void createFactory() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        factory = new EmbeddedDaoFactory("iterator_test");
+        try (Connection connection = factory.getContext()) {
+            factory.getDao(connection, City.class);
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        recording = new RecordingConnection(connection);
+        daoCity = new GenericDao<>(recording.getConnection(), EntityMetadata.forClass(City.class),
+                H2Dialect.INSTANCE, GenericDao.DEFAULT_SCHEMA);
+        //строки получаются по две, чтобы обход шёл за несколько обращений к результату
+        daoCity.setFetchSize(2);
+        daoCity.insertAll(cities());
+    }
+
+    private static List<City> cities() {
+        return Arrays.asList(new City("Beloretsk", "Russia", 60000, false),
+                new City("Leeds", "UK", 800000, false),
+                new City("Ufa", "Russia", 1100000, true),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("London", "UK", 10000000, true),
+                new City("Moscow", "Russia", 16000000, true));
+    }
+
+    /** Запрос, созданный последним: запрос открытого обхода */
+    private Statement lastStatement() {
+        List<Statement> statements = recording.getStatements();
+        return statements.get(statements.size() - 1);
+    }
+
+    @Test
+    public void exhaustedIteratorClosesStatement() throws SQLException {
+        List<City> read = new ArrayList<>();
+        CloseableIterator<City> iterator = daoCity.iterator(new Criteria<City>().orderBy("population"));
+        Statement statement = lastStatement();
+        while (iterator.hasNext()) {
+            Assert.assertFalse(statement.isClosed());
+            read.add(iterator.next());
+        }
+
+        Assert.assertEquals(cities(), read);
+        Assert.assertTrue(statement.isClosed());
+        Assert.assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            Assert.fail("Read past the last row");
+        } catch (NoSuchElementException e) {
+            //строк больше нет
+        }
+    }
+
+    @Test
+    public void abandonedIteratorClosedByClose() throws SQLException {
+        CloseableIterator<City> iterator = daoCity.iterator();
+        Statement statement = lastStatement();
+        Assert.assertNotNull(iterator.next());
+
+        iterator.close();
+        Assert.assertTrue(statement.isClosed());
+        Assert.assertFalse(iterator.hasNext());
+        //повторное закрытие ничего не делает
+        iterator.close();
+    }
+
+    @Test
+    public void abandonedIteratorClosedByTryWithResources() throws SQLException {
+        Statement statement;
+        try (CloseableIterator<City> iterator = daoCity.iterator(new Criteria<City>().eq("country", "UK"))) {
+            statement = lastStatement();
+            Assert.assertEquals("UK", iterator.next().getCountry());
+        }
+
+        Assert.assertTrue(statement.isClosed());
+    }
+
+    @Test
+    public void streamClosesIterator() throws SQLException {
+        Statement statement;
+        try (Stream<City> stream = daoCity.stream(new Criteria<City>().eq("country", "Russia")
+                .orderBy("population", false))) {
+            statement = lastStatement();
+            Assert.assertEquals(Arrays.asList("Moscow", "Kazan"),
+                    stream.limit(2).map(City::getCityName).collect(Collectors.toList()));
+            //обход прерван раньше последней строки, запрос ещё открыт
+            Assert.assertFalse(statement.isClosed());
+        }
+
+        Assert.assertTrue(statement.isClosed());
+    }
+
+    @Test
+    public void forEachReadsAllRows() {
+        final List<City> read = new ArrayList<>();
+        daoCity.forEach(new Consumer<City>() {
+            @Override
+            public void accept(City city) {
+                read.add(city);
+            }
+        });
+
+        Assert.assertEquals(6, read.size());
+        Assert.assertTrue(read.containsAll(cities()));
+    }
+
+    @Test
+    public void failedActionClosesStatement() throws SQLException {
+        final IllegalStateException stop = new IllegalStateException("stop");
+        try {
+            daoCity.forEach(new Consumer<City>() {
+                @Override
+                public void accept(City city) {
+                    throw stop;
+                }
+            });
+            Assert.fail("Action failure swallowed");
+        } catch (IllegalStateException e) {
+            Assert.assertSame(stop, e);
+        }
+
+        Assert.assertTrue(lastStatement().isClosed());
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,199 @@
+package Tests;
+
+import classes.City;
+import dao.CloseableIterator;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metrics.CompositeListener;
+import metrics.DaoListener;
+import metrics.DaoOperation;
+import metrics.MetricsRegistry;
+import metrics.OperationMetrics;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Сведения об операциях dao над встроенной H2: фазы, число параметров
+ * и объектов, ошибки и их учёт в MetricsRegistry
+ */
+public class MetricsTest {
+    private static EmbeddedDaoFactory factory;
+    private static final MetricsRegistry registry = new MetricsRegistry();
+    private static final List<Event> events = Collections.synchronizedList(new ArrayList<Event>());
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    /** Сведения об одной операции */
+    private static class Event {
+        final DaoOperation operation;
+        final String sql;
+        final int parameters;
+        final long prepareNanos;
+        final long executeNanos;
+        final long mapNanos;
+        final int rows;
+        final Throwable error;
+
+        Event(DaoOperation operation, String sql, int parameters, long prepareNanos, long executeNanos,
+              long mapNanos, int rows, Throwable error) {
+            this.operation = operation;
+            this.sql = sql;
+            this.parameters = parameters;
+            this.prepareNanos = prepareNanos;
+            this.executeNanos = executeNanos;
+            this.mapNanos = mapNanos;
+            this.rows = rows;
+            this.error = error;
+        }
+    }
+
+    @BeforeClass
+    public static void createFactory() throws SQLException {
+        factory = new EmbeddedDaoFactory("metrics_test");
+        factory.setListener(new CompositeListener(registry, new DaoListener() {
+            @Override
+            public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                           long prepareNanos, long executeNanos, long mapNanos, int rows) {
+                events.add(new Event(operation, sql, parameters, prepareNanos, executeNanos, mapNanos, rows, null));
+            }
+
+            @Override
+            public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                        long elapsedNanos, Throwable error) {
+                events.add(new Event(operation, sql, 0, 0, elapsedNanos, 0, 0, error));
+            }
+        }));
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        daoCity = factory.getDao(connection, City.class);
+        daoCity.insertAll(Arrays.asList(new City("Moscow", "Russia", 16000000, true),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("Ufa", "Russia", 1100000, true)));
+        registry.reset();
+        events.clear();
+    }
+
+    @Test
+    public void writeReportsParametersAndRows() {
+        daoCity.insertAll(Arrays.asList(new City("London", "UK", 10000000, true),
+                new City("Leeds", "UK", 800000, false)));
+
+        Assert.assertEquals(1, events.size());
+        Event insert = events.get(0);
+        Assert.assertEquals(DaoOperation.INSERT_ALL, insert.operation);
+        Assert.assertTrue(insert.sql, insert.sql.startsWith("INSERT INTO \"yandex_dao\".\"Cities\""));
+        Assert.assertEquals(8, insert.parameters);
+        Assert.assertEquals(2, insert.rows);
+        Assert.assertTrue(insert.prepareNanos > 0);
+        Assert.assertTrue(insert.executeNanos > 0);
+        Assert.assertEquals(0, insert.mapNanos);
+    }
+
+    @Test
+    public void readReportsMapPhase() {
+        Assert.assertEquals(3, daoCity.selectAll().size());
+        Assert.assertEquals(16000000, daoCity.selectByKey(new City("Moscow", "Russia")).getPopulation());
+
+        Assert.assertEquals(2, events.size());
+        Event all = events.get(0);
+        Assert.assertEquals(DaoOperation.SELECT_ALL, all.operation);
+        Assert.assertEquals(0, all.parameters);
+        Assert.assertEquals(3, all.rows);
+        Assert.assertTrue(all.executeNanos > 0);
+        Assert.assertTrue(all.mapNanos > 0);
+
+        Event byKey = events.get(1);
+        Assert.assertEquals(DaoOperation.SELECT_BY_KEY, byKey.operation);
+        Assert.assertEquals(2, byKey.parameters);
+        Assert.assertEquals(1, byKey.rows);
+    }
+
+    @Test
+    public void iteratorReportedOnceOnClose() {
+        try (CloseableIterator<City> cities = daoCity.iterator()) {
+            cities.next();
+            cities.next();
+            Assert.assertTrue(events.isEmpty());
+        }
+        //исчерпанный обход закрывается сам, повторный close не сообщается
+        try (CloseableIterator<City> cities = daoCity.iterator()) {
+            while (cities.hasNext()) {
+                cities.next();
+            }
+        }
+
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals(DaoOperation.ITERATE, events.get(0).operation);
+        Assert.assertEquals(2, events.get(0).rows);
+        Assert.assertEquals(DaoOperation.ITERATE, events.get(1).operation);
+        Assert.assertEquals(3, events.get(1).rows);
+    }
+
+    @Test
+    public void failureReportedWithError() {
+        try {
+            daoCity.insert(new City("Kazan", "Russia", 1300000, true));
+            Assert.fail("Duplicate key must fail");
+        } catch (DaoException e) {
+            Assert.assertEquals(1, events.size());
+            Event failed = events.get(0);
+            Assert.assertEquals(DaoOperation.INSERT, failed.operation);
+            Assert.assertSame(e, failed.error);
+            Assert.assertTrue(failed.sql, failed.sql.startsWith("INSERT INTO"));
+        }
+
+        OperationMetrics insert = registry.get(City.class, DaoOperation.INSERT);
+        Assert.assertEquals(0, insert.getCompletedCount());
+        Assert.assertEquals(1, insert.getFailedCount());
+    }
+
+    @Test
+    public void registryAccumulatesPhases() {
+        for (int i = 0; i < 5; ++i) {
+            daoCity.selectAll();
+        }
+
+        OperationMetrics selectAll = registry.get(City.class, DaoOperation.SELECT_ALL);
+        Assert.assertEquals(5, selectAll.getCompletedCount());
+        Assert.assertEquals(15, selectAll.getRows());
+        Assert.assertEquals(5, selectAll.getExecute().getCount());
+        Assert.assertEquals(5, selectAll.getMap().getCount());
+        Assert.assertTrue(selectAll.getTotal().getMax() >= selectAll.getExecute().getMax());
+        Assert.assertNull(registry.get(City.class, DaoOperation.DELETE));
+
+        String text = registry.scrape();
+        Assert.assertTrue(text, text.contains("dao_operations_total{entity=\"City\",operation=\"SELECT_ALL\"} 5\n"));
+        Assert.assertTrue(text, text.contains("dao_rows_total{entity=\"City\",operation=\"SELECT_ALL\"} 15\n"));
+        Assert.assertTrue(text, text.contains(
+                "dao_operation_seconds_count{entity=\"City\",operation=\"SELECT_ALL\",phase=\"map\"} 5\n"));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
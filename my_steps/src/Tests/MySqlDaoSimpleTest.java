@@ -9,6 +9,7 @@ import mySQL.MySqlDaoFactory;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.sql.Connection;
@@ -22,9 +23,14 @@ import java.sql.SQLException;
 public class MySqlDaoSimpleTest {
     private Connection connection;
     private ReflectionJdbcDao<City> daoCity;
-    private Class<?> cls = City.class;
+    private Class<City> cls = City.class;
 
-    private static final DaoFactory<Connection> factory = new MySqlDaoFactory();
+    private static DaoFactory<Connection> factory;
+
+    @BeforeClass
+    public static void createFactory() throws SQLException {
+        factory = new MySqlDaoFactory();
+    }
 
     @Before
     public void setUp () throws SQLException, NoKeyFieldsException, NoTableTitleException {
@@ -0,0 +1,131 @@
+package Tests;
+
+import annotations.KeyField;
+import annotations.TaggedObject;
+import classes.City;
+import dao.Criteria;
+import dao.Page;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Постраничная выборка по ключевым полям над встроенной H2
+ */
+public class PageTest {
+    private static EmbeddedDaoFactory factory;
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    @TaggedObject(name = "Countries")
+    public static class Country {
+        @KeyField
+        private String name;
+
+        public Country() {}
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @BeforeClass
+    public static void createFactory() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        factory = new EmbeddedDaoFactory("page_test");
+        //CREATE TABLE фиксирует транзакцию, поэтому таблица создаётся до тестов
+        try (Connection connection = factory.getContext()) {
+            factory.getDao(connection, Country.class);
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        daoCity = factory.getDao(connection, City.class);
+        List<City> cities = new ArrayList<>();
+        for (int i = 0; i < 11; ++i) {
+            //по несколько стран у одного названия: страницы делятся и внутри первого ключевого поля
+            cities.add(new City("City" + i / 3, "Country" + i % 3, i, false));
+        }
+        daoCity.insertAll(cities);
+    }
+
+    @Test
+    public void pagesCoverTableInKeyOrder() {
+        List<City> read = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        String token = null;
+        do {
+            Page<City> page = daoCity.selectPage(token, 4);
+            read.addAll(page.getItems());
+            sizes.add(page.getItems().size());
+            token = page.getNextToken();
+            Assert.assertEquals(token != null, page.hasNext());
+        } while (token != null);
+
+        Assert.assertEquals(Arrays.asList(4, 4, 3), sizes);
+        Assert.assertEquals(daoCity.select(new Criteria<City>().orderBy("cityName").orderBy("country")), read);
+    }
+
+    @Test
+    public void lastFullPageHasNoToken() {
+        Page<City> page = daoCity.selectPage(null, 11);
+        Assert.assertEquals(11, page.getItems().size());
+        Assert.assertNull(page.getNextToken());
+        Assert.assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void tokenSeeksPastChangedRows() {
+        Page<City> first = daoCity.selectPage(null, 4);
+        //записи до метки не сдвигают следующую страницу, в отличие от OFFSET
+        daoCity.insert(new City("City0", "Country", 100, true));
+        daoCity.deleteByKey(first.getItems().get(0));
+
+        Assert.assertEquals(Arrays.asList(new City("City1", "Country1", 4, false),
+                new City("City1", "Country2", 5, false), new City("City2", "Country0", 6, false),
+                new City("City2", "Country1", 7, false)),
+                daoCity.selectPage(first.getNextToken(), 4).getItems());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tokenOfOtherTableRejected() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        String token = daoCity.selectPage(null, 1).getNextToken();
+        ReflectionJdbcDao<Country> daoCountry = factory.getDao(connection, Country.class);
+        daoCountry.selectPage(token, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void corruptedTokenRejected() {
+        daoCity.selectPage("not a token", 4);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
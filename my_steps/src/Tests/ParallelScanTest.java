@@ -0,0 +1,89 @@
+package Tests;
+
+import classes.City;
+import dao.ParallelScan;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metrics.DaoListener;
+import metrics.DaoOperation;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Параллельное чтение таблицы диапазонами над встроенной H2
+ */
+public class ParallelScanTest {
+    private static EmbeddedDaoFactory factory;
+    private static final Map<DaoOperation, Integer> operations =
+            Collections.synchronizedMap(new EnumMap<DaoOperation, Integer>(DaoOperation.class));
+
+    @BeforeClass
+    public static void fillTable() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        factory = new EmbeddedDaoFactory("parallel_scan_test");
+        List<City> cities = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            //по два города с одним названием: значения первого ключевого поля повторяются
+            cities.add(new City("City" + (10 + i / 2), "Country" + i % 2, i, false));
+        }
+        try (Connection connection = factory.getContext()) {
+            ReflectionJdbcDao<City> dao = factory.getDao(connection, City.class);
+            dao.insertAll(cities);
+        }
+        factory.setListener(new DaoListener() {
+            @Override
+            public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                           long prepareNanos, long executeNanos, long mapNanos, int rows) {
+                synchronized (operations) {
+                    Integer count = operations.get(operation);
+                    operations.put(operation, count == null ? 1 : count + 1);
+                }
+            }
+
+            @Override
+            public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                        long elapsedNanos, Throwable error) {
+            }
+        });
+    }
+
+    @Test
+    public void everyRowReadOnce() throws NoKeyFieldsException, NoTableTitleException {
+        operations.clear();
+        final Set<Integer> populations = Collections.synchronizedSet(new HashSet<Integer>());
+        final List<City> read = Collections.synchronizedList(new ArrayList<City>());
+        new ParallelScan<>(factory, City.class, 4).forEach(new Consumer<City>() {
+            @Override
+            public void accept(City city) {
+                read.add(city);
+                populations.add(city.getPopulation());
+            }
+        });
+
+        Assert.assertEquals(100, read.size());
+        Assert.assertEquals(100, populations.size());
+        //границы находятся одним проходом, а не запросом на каждую
+        Assert.assertEquals(Integer.valueOf(1), operations.get(DaoOperation.COUNT));
+        Assert.assertNull(operations.get(DaoOperation.SELECT_TUPLES));
+        Assert.assertEquals(Integer.valueOf(1 + 4), operations.get(DaoOperation.ITERATE));
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,137 @@
+package Tests;
+
+import classes.City;
+import dao.CloseableIterator;
+import dao.Criteria;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metrics.DaoListener;
+import metrics.DaoOperation;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Выборка части полей над встроенной H2: в SELECT перечисляются только
+ * выбранные колонки, частично заполненные объекты и значения полей
+ * без объектов в порядке запрошенных полей
+ */
+public class ProjectionTest {
+    private static EmbeddedDaoFactory factory;
+    private static final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    @BeforeClass
+    public static void createFactory() throws SQLException {
+        factory = new EmbeddedDaoFactory("projection_test");
+        factory.setListener(new DaoListener() {
+            @Override
+            public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                           long prepareNanos, long executeNanos, long mapNanos, int rows) {
+                if (operation == DaoOperation.SELECT || operation == DaoOperation.SELECT_TUPLES
+                        || operation == DaoOperation.ITERATE) {
+                    queries.add(sql);
+                }
+            }
+
+            @Override
+            public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                        long elapsedNanos, Throwable error) {
+            }
+        });
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        daoCity = factory.getDao(connection, City.class);
+        daoCity.insertAll(Arrays.asList(new City("Moscow", "Russia", 16000000, true),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("London", "UK", 10000000, null),
+                new City("Leeds", "UK", 800000, false)));
+        queries.clear();
+    }
+
+    @Test
+    public void selectFillsOnlyRequestedFields() {
+        List<City> cities = daoCity.select(new Criteria<City>().eq("country", "Russia").orderBy("population"),
+                "population", "cityName");
+
+        Assert.assertEquals(2, cities.size());
+        Assert.assertEquals("Kazan", cities.get(0).getCityName());
+        Assert.assertEquals(1300000, cities.get(0).getPopulation());
+        Assert.assertNull(cities.get(0).getCountry());
+        Assert.assertNull(cities.get(0).getIsMegapolis());
+        Assert.assertEquals("Moscow", cities.get(1).getCityName());
+        Assert.assertEquals(Collections.singletonList("SELECT \"population\", \"city_name\""
+                + " FROM \"yandex_dao\".\"Cities\"\n WHERE \"country\" = ?\n ORDER BY \"population\" ASC"), queries);
+    }
+
+    @Test
+    public void tuplesInRequestedOrder() {
+        List<Object[]> tuples = daoCity.selectTuples(new Criteria<City>().eq("country", "UK")
+                .orderBy("population", false), "isMegapolis", "population", "cityName");
+
+        Assert.assertEquals(2, tuples.size());
+        //значение примитивного поля - обёртка, NULL - null
+        Assert.assertArrayEquals(new Object[] {null, 10000000, "London"}, tuples.get(0));
+        Assert.assertArrayEquals(new Object[] {false, 800000, "Leeds"}, tuples.get(1));
+    }
+
+    @Test
+    public void tuplesWithoutFieldsInColumnOrder() {
+        List<Object[]> tuples = daoCity.selectTuples(new Criteria<City>().eq("cityName", "Leeds"));
+
+        Assert.assertEquals(1, tuples.size());
+        Assert.assertArrayEquals(new Object[] {false, "Leeds", "UK", 800000}, tuples.get(0));
+        Assert.assertEquals(Collections.singletonList("SELECT \"is_megapolis\", \"city_name\", \"country\","
+                + " \"population\" FROM \"yandex_dao\".\"Cities\"\n WHERE \"city_name\" = ?"), queries);
+    }
+
+    @Test
+    public void tupleIteratorReadsRequestedFields() {
+        List<String> names = new ArrayList<>();
+        try (CloseableIterator<Object[]> tuples = daoCity.tupleIterator(new Criteria<City>()
+                .ge("population", 1000000).orderBy("cityName"), "cityName")) {
+            while (tuples.hasNext()) {
+                Object[] tuple = tuples.next();
+                Assert.assertEquals(1, tuple.length);
+                names.add((String) tuple[0]);
+            }
+        }
+
+        Assert.assertEquals(Arrays.asList("Kazan", "London", "Moscow"), names);
+        Assert.assertEquals(Collections.singletonList("SELECT \"city_name\" FROM \"yandex_dao\".\"Cities\"\n"
+                + " WHERE \"population\" >= ?\n ORDER BY \"city_name\" ASC"), queries);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldRejected() {
+        daoCity.selectTuples(new Criteria<City>(), "cityName", "mayor");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,88 @@
+package Tests;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Подключение, запоминающее созданные через него запросы и текст
+ * выполненных через Statement команд, чтобы тесты могли проверить,
+ * что запросы закрыты и команды выполнены нужное число раз
+ */
+class RecordingConnection implements InvocationHandler {
+    private final Connection connection;
+    private final Connection proxy;
+    private final List<Statement> statements = Collections.synchronizedList(new ArrayList<Statement>());
+    private final List<String> updates = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * @param connection подключение, которому передаются вызовы
+     */
+    RecordingConnection(Connection connection) {
+        this.connection = connection;
+        this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, this);
+    }
+
+    /** Подключение, вызовы которого запоминаются */
+    Connection getConnection() {
+        return proxy;
+    }
+
+    /** Запросы, созданные через подключение, в порядке создания */
+    List<Statement> getStatements() {
+        return statements;
+    }
+
+    /** Команды, выполненные через Statement.executeUpdate */
+    List<String> getUpdates() {
+        return updates;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        //обёртка равна только самой себе
+        if (method.getName().equals("equals")) {
+            return proxy == args[0];
+        }
+        if (method.getName().equals("hashCode")) {
+            return System.identityHashCode(proxy);
+        }
+        Object result;
+        try {
+            result = method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        if (result instanceof Statement) {
+            statements.add((Statement) result);
+            if (method.getName().equals("createStatement")) {
+                return recordUpdates((Statement) result);
+            }
+        }
+        return result;
+    }
+
+    private Statement recordUpdates(final Statement statement) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[] {Statement.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("executeUpdate")) {
+                            updates.add((String) args[0]);
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+}
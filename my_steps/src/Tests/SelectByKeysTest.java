@@ -0,0 +1,247 @@
+package Tests;
+
+import annotations.Cached;
+import annotations.KeyField;
+import annotations.TaggedObject;
+import classes.City;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.EntityKey;
+import metrics.DaoListener;
+import metrics.DaoOperation;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выборка по нескольким ключам над встроенной H2: одиночные и составные ключи,
+ * повторы, отсутствующие ключи и смесь попаданий в кэш с промахами
+ */
+public class SelectByKeysTest {
+    private static EmbeddedDaoFactory factory;
+    //запросы SELECT_BY_KEYS и число их параметров
+    private static final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+    private static final List<Integer> parameters = Collections.synchronizedList(new ArrayList<Integer>());
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+    private ReflectionJdbcDao<Currency> daoCurrency;
+
+    @Cached
+    @TaggedObject(name = "Currencies")
+    public static class Currency {
+        @KeyField
+        private String code;
+        private String title;
+
+        public Currency() {}
+
+        public Currency(String code, String title) {
+            this.code = code;
+            this.title = title;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+    }
+
+    @Cached
+    @TaggedObject(name = "Rates")
+    public static class Rate {
+        @KeyField
+        private String base;
+        @KeyField
+        private String quote;
+        private int value;
+
+        public Rate() {}
+
+        public Rate(String base, String quote, int value) {
+            this.base = base;
+            this.quote = quote;
+            this.value = value;
+        }
+
+        public String getBase() {
+            return base;
+        }
+
+        public void setBase(String base) {
+            this.base = base;
+        }
+
+        public String getQuote() {
+            return quote;
+        }
+
+        public void setQuote(String quote) {
+            this.quote = quote;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+    }
+
+    @BeforeClass
+    public static void createFactory() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        factory = new EmbeddedDaoFactory("select_by_keys_test");
+        factory.setLookupSize(3);
+        factory.setListener(new DaoListener() {
+            @Override
+            public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                           long prepareNanos, long executeNanos, long mapNanos, int rows) {
+                if (operation == DaoOperation.SELECT_BY_KEYS) {
+                    queries.add(sql);
+                    SelectByKeysTest.parameters.add(parameters);
+                }
+            }
+
+            @Override
+            public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                        long elapsedNanos, Throwable error) {
+            }
+        });
+        //CREATE TABLE фиксирует транзакцию, поэтому таблицы создаются до тестов
+        try (Connection connection = factory.getContext()) {
+            factory.getDao(connection, Currency.class);
+            factory.getDao(connection, Rate.class);
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        daoCity = factory.getDao(connection, City.class);
+        daoCurrency = factory.getDao(connection, Currency.class);
+        daoCity.insertAll(Arrays.asList(new City("Moscow", "Russia", 16000000, true),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("London", "UK", 10000000, true),
+                new City("Leeds", "UK", 800000, false)));
+        daoCurrency.insertAll(Arrays.asList(new Currency("RUB", "Ruble"), new Currency("GBP", "Pound"),
+                new Currency("EUR", "Euro"), new Currency("USD", "Dollar")));
+        queries.clear();
+        parameters.clear();
+    }
+
+    @Test
+    public void singleKeyUsesPlainIn() {
+        Map<EntityKey, Currency> found = daoCurrency.selectByKeys(Arrays.asList(new Currency("RUB", null),
+                new Currency("USD", null), new Currency("JPY", null)));
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("Ruble", "Dollar")), titles(found));
+        Assert.assertEquals(Collections.singletonList(
+                "SELECT \"code\", \"title\" FROM \"yandex_dao\".\"Currencies\"\n WHERE \"code\" IN (?, ?, ?)"),
+                queries);
+    }
+
+    @Test
+    public void compositeKeysUseRowValueIn() {
+        Map<EntityKey, City> found = daoCity.selectByKeys(Arrays.asList(new City("Moscow", "Russia"),
+                new City("Leeds", "UK"), new City("Moscow", "UK")));
+
+        Assert.assertEquals(2, found.size());
+        Assert.assertTrue(found.values().containsAll(Arrays.asList(new City("Moscow", "Russia", 16000000, true),
+                new City("Leeds", "UK", 800000, false))));
+        Assert.assertEquals(1, queries.size());
+        Assert.assertTrue(queries.get(0), queries.get(0).endsWith(
+                "\n WHERE (\"city_name\", \"country\") IN ((?, ?), (?, ?), (?, ?))"));
+        Assert.assertEquals(Collections.singletonList(6), parameters);
+    }
+
+    @Test
+    public void duplicateKeysSelectedOnce() {
+        Map<EntityKey, City> found = daoCity.selectByKeys(Arrays.asList(new City("Kazan", "Russia"),
+                new City("London", "UK"), new City("Kazan", "Russia"), new City("London", "UK")));
+
+        Assert.assertEquals(2, found.size());
+        Assert.assertEquals(Collections.singletonList(4), parameters);
+    }
+
+    @Test
+    public void keysSplitIntoLookupGroups() {
+        Map<EntityKey, City> found = daoCity.selectByKeys(Arrays.asList(new City("Moscow", "Russia"),
+                new City("Kazan", "Russia"), new City("London", "UK"), new City("Leeds", "UK")));
+
+        Assert.assertEquals(4, found.size());
+        //операция сообщается один раз с параметрами всех групп и последним запросом
+        Assert.assertEquals(Collections.singletonList(8), parameters);
+        Assert.assertTrue(queries.get(0), queries.get(0).endsWith(" IN ((?, ?))"));
+    }
+
+    @Test
+    public void cacheHitsNotSelected() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        ReflectionJdbcDao<Rate> daoRate = factory.getDao(connection, Rate.class);
+        daoRate.insertAll(Arrays.asList(new Rate("RUB", "USD", 90), new Rate("RUB", "EUR", 100),
+                new Rate("GBP", "USD", 1)));
+        daoCurrency.selectByKey(new Currency("EUR", null));
+        daoRate.selectByKey(new Rate("RUB", "EUR", 0));
+        queries.clear();
+        parameters.clear();
+
+        Map<EntityKey, Currency> currencies = daoCurrency.selectByKeys(Arrays.asList(new Currency("EUR", null),
+                new Currency("GBP", null), new Currency("EUR", null), new Currency("JPY", null)));
+        Map<EntityKey, Rate> rates = daoRate.selectByKeys(Arrays.asList(new Rate("RUB", "USD", 0),
+                new Rate("RUB", "EUR", 0), new Rate("GBP", "USD", 0), new Rate("RUB", "EUR", 0)));
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("Euro", "Pound")), titles(currencies));
+        Assert.assertEquals(3, rates.size());
+        //в запросы попадают только промахи, найденное кэшируется
+        Assert.assertEquals(Arrays.asList(2, 4), parameters);
+        Assert.assertEquals(2, daoRate.selectByKeys(Arrays.asList(new Rate("RUB", "USD", 0),
+                new Rate("GBP", "USD", 0))).size());
+        Assert.assertEquals(Arrays.asList(2, 4, 0), parameters);
+
+        daoRate.deleteAllByKeys(daoRate.selectAll());
+    }
+
+    private static HashSet<String> titles(Map<EntityKey, Currency> currencies) {
+        HashSet<String> titles = new HashSet<>();
+        for (Currency currency : currencies.values()) {
+            titles.add(currency.getTitle());
+        }
+        return titles;
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        daoCity.deleteAllByKeys(daoCity.selectAll());
+        daoCurrency.deleteAllByKeys(daoCurrency.selectAll());
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,84 @@
+package Tests;
+
+import dao.StatementCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import pool.ConnectionPool;
+import pool.PoolConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Проверка выдачи, возврата и вытеснения запросов кэша подключения
+ */
+public class StatementCacheTest {
+    private Connection connection;
+    private StatementCache cache;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+        cache = StatementCache.forConnection(connection);
+    }
+
+    @Test
+    public void returnedStatementReused() throws SQLException {
+        PreparedStatement first;
+        try (StatementCache.Lease lease = cache.prepare(connection, "SELECT 1")) {
+            first = lease.getStatement();
+        }
+        try (StatementCache.Lease lease = cache.prepare(connection, "SELECT 1")) {
+            Assert.assertSame(first, lease.getStatement());
+        }
+        Assert.assertFalse(first.isClosed());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void statementEvictedInUseClosedOnReturn() throws SQLException {
+        cache.setMaxSize(1);
+        StatementCache.Lease used = cache.prepare(connection, "SELECT 1");
+        PreparedStatement evicted = used.getStatement();
+        try (StatementCache.Lease lease = cache.prepare(connection, "SELECT 2")) {
+            Assert.assertNotSame(evicted, lease.getStatement());
+            Assert.assertEquals(1, cache.getEvictions());
+            Assert.assertFalse(evicted.isClosed());
+        }
+
+        used.close();
+        Assert.assertTrue(evicted.isClosed());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void pooledCacheSurvivesReturnToPool() throws SQLException {
+        PoolConfig config = new PoolConfig("jdbc:h2:mem:statement_cache_test;DB_CLOSE_DELAY=-1", "sa", "");
+        config.setMaxSize(2);
+        config.setEvictionIntervalMillis(0);
+        try (ConnectionPool pool = new ConnectionPool(config)) {
+            StatementCache pooled;
+            try (Connection first = pool.getConnection()) {
+                pooled = StatementCache.forConnection(first);
+                Assert.assertSame(pooled, StatementCache.forConnection(first));
+            }
+            try (Connection second = pool.getConnection(); Connection third = pool.getConnection()) {
+                //второй выдачей получено то же настоящее подключение, третьей - новое
+                Assert.assertSame(pooled, StatementCache.forConnection(second));
+                Assert.assertNotSame(pooled, StatementCache.forConnection(third));
+            }
+        }
+        try (Connection other = DriverManager.getConnection("jdbc:h2:mem:")) {
+            Assert.assertNotSame(cache, StatementCache.forConnection(other));
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+}
@@ -0,0 +1,196 @@
+package Tests;
+
+import classes.City;
+import dao.ReflectionJdbcDao;
+import dao.UnitOfWork;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metrics.DaoOperation;
+import metrics.DiagnosticsHandler;
+import metrics.StatementLog;
+import metrics.StatementRecord;
+import metrics.StatementScope;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал запросов над встроенной H2: поиск N+1 в областях StatementScope,
+ * медленные запросы и кольцевой буфер последних операций
+ */
+public class StatementLogTest {
+    private static final int CITIES = 10;
+    private static EmbeddedDaoFactory factory;
+    private final List<StatementRecord> handled = Collections.synchronizedList(new ArrayList<StatementRecord>());
+    private StatementLog log;
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    @BeforeClass
+    public static void fillTable() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        factory = new EmbeddedDaoFactory("statement_log_test");
+        List<City> cities = new ArrayList<>();
+        for (int i = 0; i < CITIES; ++i) {
+            cities.add(new City("City" + i, "Country", i, false));
+        }
+        try (Connection connection = factory.getContext()) {
+            ReflectionJdbcDao<City> dao = factory.getDao(connection, City.class);
+            dao.insertAll(cities);
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        log = new StatementLog(4, 4);
+        log.setRepeatThreshold(5);
+        log.setSlowThreshold(1, TimeUnit.HOURS);
+        log.setHandler(new DiagnosticsHandler() {
+            @Override
+            public void statementFlagged(StatementRecord record) {
+                handled.add(record);
+            }
+        });
+        //dao получает слушателя фабрики при создании
+        factory.setListener(log);
+        connection = factory.getContext();
+        daoCity = factory.getDao(connection, City.class);
+    }
+
+    @Test
+    public void repeatedLookupsFlaggedInScope() {
+        //в области повторы считаются целиком, окно времени не действует
+        log.setRepeatWindow(0, TimeUnit.NANOSECONDS);
+        StatementScope scope = StatementScope.open();
+        try {
+            for (int i = 0; i < CITIES; ++i) {
+                daoCity.selectByKey(new City("City" + i, "Country"));
+            }
+        } finally {
+            scope.close();
+        }
+
+        Assert.assertEquals(1, log.getFlagged().size());
+        StatementRecord flagged = log.getFlagged().get(0);
+        Assert.assertEquals(StatementRecord.Suspicion.REPEATED, flagged.getSuspicion());
+        Assert.assertEquals(5, flagged.getRepeats());
+        Assert.assertEquals(DaoOperation.SELECT_BY_KEY, flagged.getOperation());
+        Assert.assertEquals(City.class, flagged.getEntityClass());
+        Assert.assertEquals(StatementLogTest.class.getName(), flagged.getCaller()[0].getClassName());
+        Assert.assertEquals(Collections.singletonList(flagged), handled);
+    }
+
+    @Test
+    public void scopesCountedSeparately() {
+        for (int j = 0; j < 2; ++j) {
+            StatementScope scope = StatementScope.open();
+            try {
+                for (int i = 0; i < 4; ++i) {
+                    daoCity.selectByKey(new City("City" + i, "Country"));
+                }
+            } finally {
+                scope.close();
+            }
+        }
+
+        Assert.assertTrue(log.getFlagged().isEmpty());
+    }
+
+    @Test
+    public void nestedScopeCountedForOuter() {
+        StatementScope outer = StatementScope.open();
+        try {
+            for (int i = 0; i < 3; ++i) {
+                StatementScope inner = StatementScope.open();
+                try {
+                    daoCity.selectByKey(new City("City" + i, "Country"));
+                    daoCity.selectByKey(new City("City" + (i + 3), "Country"));
+                } finally {
+                    inner.close();
+                }
+            }
+        } finally {
+            outer.close();
+        }
+
+        Assert.assertEquals(1, log.getFlagged().size());
+        Assert.assertEquals(5, log.getFlagged().get(0).getRepeats());
+    }
+
+    @Test
+    public void repeatsOutsideScopeCountedInWindow() {
+        log.setRepeatWindow(0, TimeUnit.NANOSECONDS);
+        for (int i = 0; i < CITIES; ++i) {
+            daoCity.selectByKey(new City("City" + i, "Country"));
+        }
+        Assert.assertTrue(log.getFlagged().isEmpty());
+
+        log.setRepeatWindow(1, TimeUnit.HOURS);
+        for (int i = 0; i < CITIES; ++i) {
+            daoCity.selectByKey(new City("City" + i, "Country"));
+        }
+        Assert.assertEquals(1, log.getFlagged().size());
+    }
+
+    @Test
+    public void unitOfWorkOpensScope() {
+        log.setRepeatWindow(0, TimeUnit.NANOSECONDS);
+        try (UnitOfWork work = new UnitOfWork(factory)) {
+            ReflectionJdbcDao<City> dao = work.getDao(City.class);
+            for (int i = 0; i < CITIES; ++i) {
+                dao.selectByKey(new City("City" + i, "Country"));
+            }
+        }
+
+        Assert.assertEquals(1, log.getFlagged().size());
+        Assert.assertEquals(StatementRecord.Suspicion.REPEATED, log.getFlagged().get(0).getSuspicion());
+    }
+
+    @Test
+    public void slowOperationsFlagged() {
+        log.setSlowThreshold(0, TimeUnit.NANOSECONDS);
+        daoCity.selectAll();
+        daoCity.selectByKey(new City("City1", "Country"));
+
+        Assert.assertEquals(2, log.getFlagged().size());
+        Assert.assertEquals(StatementRecord.Suspicion.SLOW, log.getFlagged().get(0).getSuspicion());
+        Assert.assertEquals(DaoOperation.SELECT_ALL, log.getFlagged().get(0).getOperation());
+        Assert.assertEquals(CITIES, log.getFlagged().get(0).getRows());
+    }
+
+    @Test
+    public void recentKeepsLastOperations() {
+        for (int i = 0; i < 6; ++i) {
+            daoCity.selectByKey(new City("City" + i, "Country"));
+        }
+        daoCity.selectAll();
+
+        List<StatementRecord> recent = log.getRecent();
+        Assert.assertEquals(4, recent.size());
+        Assert.assertEquals(DaoOperation.SELECT_ALL, recent.get(3).getOperation());
+        for (int i = 1; i < recent.size(); ++i) {
+            Assert.assertTrue(recent.get(i - 1).getSequence() < recent.get(i).getSequence());
+        }
+        Assert.assertEquals(2, recent.get(0).getParameters());
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,180 @@
+package Tests;
+
+import annotations.KeyField;
+import annotations.TaggedObject;
+import classes.City;
+import dao.ReflectionJdbcDao;
+import dao.UnitOfWork;
+import embedded.EmbeddedDaoFactory;
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metrics.DaoListener;
+import metrics.DaoOperation;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Единица работы над встроенной H2: порядок записи таблиц и видов изменений,
+ * фиксация и откат
+ */
+public class UnitOfWorkTest {
+    private static EmbeddedDaoFactory factory;
+    private static final List<String> writes = Collections.synchronizedList(new ArrayList<String>());
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+    private ReflectionJdbcDao<Country> daoCountry;
+
+    @TaggedObject(name = "Countries")
+    public static class Country {
+        @KeyField
+        private String name;
+
+        public Country() {}
+
+        public Country(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @BeforeClass
+    public static void createFactory() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        factory = new EmbeddedDaoFactory("unit_of_work_test");
+        //CREATE TABLE фиксирует транзакцию, поэтому таблица создаётся до тестов
+        try (Connection connection = factory.getContext()) {
+            factory.getDao(connection, Country.class);
+        }
+        factory.setListener(new DaoListener() {
+            @Override
+            public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                           long prepareNanos, long executeNanos, long mapNanos, int rows) {
+                if (operation.name().endsWith("_ALL")) {
+                    writes.add(entityClass.getSimpleName() + " " + operation);
+                }
+            }
+
+            @Override
+            public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                        long elapsedNanos, Throwable error) {
+            }
+        });
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        daoCity = factory.getDao(connection, City.class);
+        daoCountry = factory.getDao(connection, Country.class);
+        daoCity.insert(new City("London", "UK", 10000000, true));
+        daoCity.insert(new City("Leeds", "UK", 800000, false));
+        writes.clear();
+    }
+
+    @Test
+    public void flushOrderedByTableThenKind() {
+        try (UnitOfWork work = new UnitOfWork(factory)) {
+            //Countries зарегистрирована первой, но пишется после Cities
+            work.registerNew(new Country("Japan"));
+            work.registerDirty(new City("London", "UK", 10500000, true));
+            work.registerNew(new City("Tokyo", "Japan", 14000000, true));
+            work.registerDeleted(new City("Leeds", "UK"));
+            work.commit();
+        }
+
+        Assert.assertEquals(Arrays.asList("City DELETE_ALL", "City INSERT_ALL", "City UPDATE_ALL",
+                "Country INSERT_ALL"), writes);
+        Assert.assertNull(daoCity.selectByKey(new City("Leeds", "UK")));
+        Assert.assertEquals(10500000, daoCity.selectByKey(new City("London", "UK")).getPopulation());
+        Assert.assertNotNull(daoCity.selectByKey(new City("Tokyo", "Japan")));
+        Assert.assertNotNull(daoCountry.selectByKey(new Country("Japan")));
+    }
+
+    @Test
+    public void changesOfOneKeyCoalesced() {
+        try (UnitOfWork work = new UnitOfWork(factory)) {
+            work.registerNew(new City("Kyoto", "Japan", 1400000, false));
+            work.registerDirty(new City("Kyoto", "Japan", 1500000, false));
+            work.registerNew(new City("Osaka", "Japan", 2700000, true));
+            work.registerDeleted(new City("Osaka", "Japan"));
+            work.commit();
+        }
+
+        Assert.assertEquals(Collections.singletonList("City INSERT_ALL"), writes);
+        Assert.assertEquals(1500000, daoCity.selectByKey(new City("Kyoto", "Japan")).getPopulation());
+        Assert.assertNull(daoCity.selectByKey(new City("Osaka", "Japan")));
+    }
+
+    @Test
+    public void flushedChangesVisibleOnlyInside() {
+        try (UnitOfWork work = new UnitOfWork(factory)) {
+            work.registerNew(new City("Tokyo", "Japan", 14000000, true));
+            work.flush();
+            Assert.assertTrue(work.isEmpty());
+            Assert.assertNotNull(work.getDao(City.class).selectByKey(new City("Tokyo", "Japan")));
+            Assert.assertNull(daoCity.selectByKey(new City("Tokyo", "Japan")));
+
+            work.rollback();
+            Assert.assertNull(work.getDao(City.class).selectByKey(new City("Tokyo", "Japan")));
+        }
+    }
+
+    @Test
+    public void closeRollsBackUncommitted() {
+        try (UnitOfWork work = new UnitOfWork(factory)) {
+            work.registerDeleted(new City("London", "UK"));
+            work.flush();
+        }
+
+        Assert.assertNotNull(daoCity.selectByKey(new City("London", "UK")));
+    }
+
+    @Test
+    public void failedFlushRollsBackEarlierTables() {
+        daoCountry.insert(new Country("Japan"));
+        try (UnitOfWork work = new UnitOfWork(factory)) {
+            work.registerNew(new City("Tokyo", "Japan", 14000000, true));
+            //повтор ключа: Cities уже записана, запись Countries упадёт
+            work.registerNew(new Country("Japan"));
+            try {
+                work.commit();
+                Assert.fail("Duplicate key must fail");
+            } catch (DaoException e) {
+                Assert.assertTrue(work.isEmpty());
+            }
+        }
+
+        Assert.assertEquals(Collections.singletonList("City INSERT_ALL"), writes);
+        Assert.assertNull(daoCity.selectByKey(new City("Tokyo", "Japan")));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        daoCity.deleteAllByKeys(daoCity.selectAll());
+        daoCountry.deleteAllByKeys(daoCountry.selectAll());
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,135 @@
+package Tests;
+
+import classes.City;
+import dao.Criteria;
+import dao.GenericDao;
+import dao.ReflectionJdbcDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metrics.DaoListener;
+import metrics.DaoOperation;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Вставка или обновление над встроенной H2: новые ключи вставляются,
+ * у существующих обновляются остальные поля, пакетами через executeBatch
+ * и одним запросом на пакет
+ */
+public class UpsertTest {
+    private static EmbeddedDaoFactory factory;
+    private static final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    @BeforeClass
+    public static void createFactory() throws SQLException {
+        factory = new EmbeddedDaoFactory("upsert_test");
+        factory.setBatchSize(2);
+        factory.setListener(new DaoListener() {
+            @Override
+            public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                           long prepareNanos, long executeNanos, long mapNanos, int rows) {
+                if (operation == DaoOperation.UPSERT || operation == DaoOperation.UPSERT_ALL) {
+                    queries.add(sql);
+                }
+            }
+
+            @Override
+            public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                        long elapsedNanos, Throwable error) {
+            }
+        });
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        connection = factory.getContext();
+        connection.setAutoCommit(false);
+        daoCity = factory.getDao(connection, City.class);
+        daoCity.insertAll(Arrays.asList(new City("Moscow", "Russia", 16000000, true),
+                new City("Leeds", "UK", 800000, false)));
+        queries.clear();
+    }
+
+    /** Все города в порядке названий */
+    private List<City> cities() {
+        return daoCity.select(new Criteria<City>().orderBy("cityName"));
+    }
+
+    @Test
+    public void upsertInsertsThenUpdates() {
+        daoCity.upsert(new City("Kazan", "Russia", 1300000, true));
+        daoCity.upsert(new City("Leeds", "UK", 810000, true));
+
+        Assert.assertEquals(Arrays.asList(new City("Kazan", "Russia", 1300000, true),
+                new City("Leeds", "UK", 810000, true), new City("Moscow", "Russia", 16000000, true)), cities());
+        Assert.assertEquals(2, queries.size());
+        Assert.assertEquals("MERGE INTO \"yandex_dao\".\"Cities\" \n"
+                + "(\"is_megapolis\", \"city_name\", \"country\", \"population\")"
+                + " KEY (\"city_name\", \"country\") \nVALUES(?, ?, ?, ?)", queries.get(0));
+    }
+
+    @Test
+    public void upsertAllMixesInsertsAndUpdates() {
+        int[] counts = daoCity.upsertAll(Arrays.asList(new City("Moscow", "Russia", 16100000, true),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("Ufa", "Russia", 1100000, true),
+                new City("Leeds", "UK", 790000, false),
+                new City("London", "UK", 10000000, true)));
+
+        Assert.assertArrayEquals(new int[] {1, 1, 1, 1, 1}, counts);
+        Assert.assertEquals(Arrays.asList(new City("Kazan", "Russia", 1300000, true),
+                new City("Leeds", "UK", 790000, false),
+                new City("London", "UK", 10000000, true),
+                new City("Moscow", "Russia", 16100000, true),
+                new City("Ufa", "Russia", 1100000, true)), cities());
+    }
+
+    @Test
+    public void multiRowUpsertAll() {
+        ((GenericDao<City>) daoCity).setMultiRowInsert(true);
+
+        int[] counts = daoCity.upsertAll(Arrays.asList(new City("Leeds", "UK", 790000, false),
+                new City("Kazan", "Russia", 1300000, true),
+                new City("Moscow", "Russia", 16100000, true)));
+
+        Assert.assertEquals(3, counts.length);
+        Assert.assertEquals(Arrays.asList(new City("Kazan", "Russia", 1300000, true),
+                new City("Leeds", "UK", 790000, false), new City("Moscow", "Russia", 16100000, true)), cities());
+        //пакеты по 2 строки: последний запрос - на оставшуюся строку
+        Assert.assertEquals(1, queries.size());
+        Assert.assertTrue(queries.get(0), queries.get(0).endsWith(" \nVALUES(?, ?, ?, ?)"));
+    }
+
+    @Test
+    public void repeatedKeyInBatchKeepsLastValues() {
+        daoCity.upsertAll(Arrays.asList(new City("Ufa", "Russia", 1000000, false),
+                new City("Ufa", "Russia", 1100000, true)));
+
+        Assert.assertEquals(new City("Ufa", "Russia", 1100000, true), daoCity.selectByKey(new City("Ufa", "Russia")));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.rollback();
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,140 @@
+package Tests;
+
+import classes.City;
+import dao.DaoFactory;
+import dao.ReflectionJdbcDao;
+import dao.WriteBehindDao;
+import embedded.EmbeddedDaoFactory;
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Объединение изменений и ошибки фоновой записи WriteBehindDao над встроенной H2
+ */
+public class WriteBehindDaoTest {
+    private static EmbeddedDaoFactory factory;
+    private Connection connection;
+    private ReflectionJdbcDao<City> daoCity;
+
+    /**
+     * Фабрика, задерживающая выдачу соединения фоновой записи,
+     * пока тест не разрешит её продолжить
+     */
+    private static class GatedFactory implements DaoFactory<Connection> {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public Connection getContext() throws SQLException {
+            entered.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return factory.getContext();
+        }
+
+        @Override
+        public <T> ReflectionJdbcDao<T> getDao(Connection connection, Class<T> dtoClass) throws SQLException,
+                NoTableTitleException, NoKeyFieldsException {
+            return factory.getDao(connection, dtoClass);
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException, NoKeyFieldsException, NoTableTitleException {
+        if (factory == null) {
+            factory = new EmbeddedDaoFactory("write_behind_dao_test");
+        }
+        connection = factory.getContext();
+        daoCity = factory.getDao(connection, City.class);
+    }
+
+    @Test
+    public void changesCoalescedByKey() throws NoKeyFieldsException, NoTableTitleException {
+        WriteBehindDao<City> writer = new WriteBehindDao<>(factory, City.class, 100, 60000, 100);
+        try {
+            writer.insert(new City("Ufa", "Russia", 1100000, true));
+            writer.update(new City("Ufa", "Russia", 1150000, true));
+            writer.insert(new City("Sterlitamak", "Russia", 280000, false));
+            writer.deleteByKey(new City("Sterlitamak", "Russia"));
+            Assert.assertEquals(1, writer.getPendingCount());
+
+            writer.flush();
+            Assert.assertEquals(0, writer.getPendingCount());
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertEquals(new City("Ufa", "Russia", 1150000, true),
+                daoCity.selectByKey(new City("Ufa", "Russia")));
+        Assert.assertNull(daoCity.selectByKey(new City("Sterlitamak", "Russia")));
+    }
+
+    @Test
+    public void backgroundFailureReportedToWaitingFlush() throws InterruptedException, NoKeyFieldsException,
+            NoTableTitleException {
+        daoCity.insert(new City("Kazan", "Russia", 1250000, true));
+
+        GatedFactory gated = new GatedFactory();
+        final WriteBehindDao<City> writer = new WriteBehindDao<>(gated, City.class, 1, 60000, 100);
+        try {
+            //повтор ключа: фоновая запись упадёт, уже забрав изменения из очереди
+            writer.insert(new City("Kazan", "Russia", 1300000, true));
+            Assert.assertTrue(gated.entered.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(0, writer.getPendingCount());
+
+            final AtomicReference<Throwable> flushError = new AtomicReference<>();
+            Thread flusher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writer.flush();
+                    } catch (Throwable e) {
+                        flushError.set(e);
+                    }
+                }
+            });
+            flusher.start();
+            //flush ждёт окончания фоновой записи
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (flusher.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(Thread.State.WAITING, flusher.getState());
+
+            gated.released.countDown();
+            flusher.join(5000);
+            Assert.assertTrue(flushError.get() instanceof DaoException);
+        } finally {
+            gated.released.countDown();
+            writer.close();
+        }
+
+        Assert.assertEquals(1250000, daoCity.selectByKey(new City("Kazan", "Russia")).getPopulation());
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        daoCity.deleteAllByKeys(daoCity.selectAll());
+        connection.close();
+    }
+
+    @AfterClass
+    public static void closeFactory() {
+        factory.close();
+    }
+}
@@ -0,0 +1,35 @@
+package annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Аннотация для включения кэша объектов класса, выбираемых
+ * по ключевым полям (см. ReflectionJdbcDao.selectByKey).
+ * Подходит для редко изменяемых справочных таблиц.
+ */
+@Target(value = ElementType.TYPE)
+@Retention(value= RetentionPolicy.RUNTIME)
+public @interface Cached {
+    /** Наибольшее число объектов в кэше */
+    int maxSize() default 10000;
+
+    /** Время жизни объекта в кэше в секундах; 0 - без ограничения */
+    long ttlSeconds() default 0;
+
+    /** Политика вытеснения при заполнении кэша */
+    Eviction eviction() default Eviction.LRU;
+
+    /** Политики вытеснения */
+    enum Eviction {
+        /** Вытесняется давно не использованный объект */
+        LRU,
+        /**
+         * Как LRU, но новый объект попадает в кэш, только если
+         * к нему обращались чаще, чем к вытесняемому (TinyLFU)
+         */
+        TINY_LFU
+    }
+}
@@ -0,0 +1,171 @@
+package cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный по размеру потокобезопасный кэш с вытеснением давно
+ * не использованных значений (LRU), временем жизни значений и, при
+ * необходимости, допуском новых значений по частоте обращений (TinyLFU).
+ *
+ * @param <K> ключ
+ * @param <V> значение
+ */
+public class BoundedCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final FrequencySketch sketch;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * @param maxSize наибольшее число значений
+     * @param ttl время жизни значения; 0 - без ограничения
+     * @param unit единица времени жизни
+     * @param frequencyAdmission допускать ли новые значения по частоте обращений
+     */
+    public BoundedCache(int maxSize, long ttl, TimeUnit unit, boolean frequencyAdmission) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.sketch = frequencyAdmission ? new FrequencySketch(maxSize) : null;
+    }
+
+    /**
+     * Получает значение по ключу
+     * @param key ключ
+     * @return значение или null, если его нет или время его жизни истекло
+     */
+    public synchronized V get(K key) {
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        Entry<V> entry = entries.get(key);
+        if (entry != null && isExpired(entry, System.nanoTime())) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Кладёт значение в кэш. При заполненном кэше вытесняется давно
+     * не использованное значение; с допуском по частоте новое значение
+     * отвергается, если к вытесняемому обращались не реже.
+     * @param key ключ
+     * @param value значение
+     */
+    public synchronized void put(K key, V value) {
+        long now = System.nanoTime();
+        if (!entries.containsKey(key) && entries.size() >= maxSize) {
+            removeExpired(now);
+        }
+        if (!entries.containsKey(key) && entries.size() >= maxSize) {
+            Map.Entry<K, Entry<V>> eldest = entries.entrySet().iterator().next();
+            if (sketch != null && sketch.frequency(key) <= sketch.frequency(eldest.getKey())) {
+                rejections.incrementAndGet();
+                return;
+            }
+            entries.remove(eldest.getKey());
+            evictions.incrementAndGet();
+        }
+        entries.put(key, new Entry<>(value, now));
+    }
+
+    /**
+     * Удаляет значение по ключу
+     * @param key ключ
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /** Удаляет все значения */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    private void removeExpired(long now) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next(), now)) {
+                iterator.remove();
+                expirations.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return ttlNanos > 0 && now - entry.created >= ttlNanos;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Число попаданий в кэш */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Число промахов */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Доля попаданий среди всех обращений */
+    public double getHitRatio() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /** Число значений, вытесненных при заполнении кэша */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /** Число значений, удалённых по истечении времени жизни */
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /** Число новых значений, не допущенных в кэш по частоте обращений */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /** Значение и момент его помещения в кэш */
+    private static class Entry<V> {
+        final V value;
+        final long created;
+
+        Entry(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
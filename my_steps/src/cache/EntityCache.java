@@ -0,0 +1,129 @@
+package cache;
+
+import annotations.Cached;
+import metadata.EntityKey;
+import metadata.EntityMetadata;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кэш объектов класса по значениям ключевых полей, общий для всех dao класса,
+ * работающих с одной таблицей: у одного класса в разных БД и схемах
+ * разные кэши. Включается аннотацией Cached. В кэше хранятся и из него
+ * выдаются копии объектов, поэтому изменение выданного объекта кэш не портит.
+ *
+ * Прочитанный из БД объект кладётся с отметкой stamp, снятой до запроса:
+ * если ключ с тех пор удалялся из кэша (запись изменили), объект не кладётся,
+ * иначе читатель, опоздавший за писателем, вернул бы в кэш прежнее значение.
+ * Отметки ведутся не по ключам, а по группам ключей с одним хэшем,
+ * поэтому удаление соседнего ключа лишь изредка отменяет put.
+ *
+ * @param <T> класс объектов
+ */
+public class EntityCache<T> {
+    //кэши классов, помеченных Cached, по "БД:схема:класс"
+    private static final ConcurrentMap<String, EntityCache<?>> caches = new ConcurrentHashMap<>();
+    private static final int STAMPS = 64;//Число групп ключей, степень двойки
+
+    private final EntityMetadata<T> metadata;
+    private final BoundedCache<EntityKey, T> objects;
+    //число удалений из кэша ключей группы
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+
+    private EntityCache(EntityMetadata<T> metadata, Cached config) {
+        this.metadata = metadata;
+        this.objects = new BoundedCache<>(config.maxSize(), config.ttlSeconds(), TimeUnit.SECONDS,
+                config.eviction() == Cached.Eviction.TINY_LFU);
+    }
+
+    /**
+     * Возвращает кэш таблицы класса, создавая его при первом обращении
+     * @param metadata модель класса
+     * @param database адрес БД (URL подключения)
+     * @param schema схема БД, в которой хранится таблица класса
+     * @return кэш или null, если класс не помечен Cached
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityCache<T> forEntity(EntityMetadata<T> metadata, String database, String schema) {
+        Class<T> cls = metadata.getEntityClass();
+        Cached config = cls.getAnnotation(Cached.class);
+        if (config == null) {
+            return null;
+        }
+
+        String cacheKey = database + ":" + schema + ":" + cls.getName();
+        EntityCache<T> cache = (EntityCache<T>) caches.get(cacheKey);
+        if (cache == null) {
+            cache = new EntityCache<>(metadata, config);
+            EntityCache<T> existing = (EntityCache<T>) caches.putIfAbsent(cacheKey, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * Получает копию объекта по ключу
+     * @param key ключ объекта
+     * @return копия объекта или null, если его нет в кэше
+     */
+    public T get(EntityKey key) {
+        T cached = objects.get(key);
+        return cached == null ? null : metadata.copy(cached);
+    }
+
+    /**
+     * Отметка ключа, которую надо снять до чтения объекта из БД
+     * и передать в put
+     * @param key ключ объекта
+     * @return отметка
+     */
+    public long stamp(EntityKey key) {
+        return stamps.get(indexOf(key));
+    }
+
+    /**
+     * Кладёт в кэш копию объекта, если после снятия отметки
+     * ключ не удалялся из кэша
+     * @param key ключ объекта
+     * @param entity объект
+     * @param stamp отметка ключа, снятая до чтения объекта
+     */
+    public synchronized void put(EntityKey key, T entity, long stamp) {
+        if (stamps.get(indexOf(key)) == stamp) {
+            objects.put(key, metadata.copy(entity));
+        }
+    }
+
+    /**
+     * Удаляет объект из кэша
+     * @param key ключ объекта
+     */
+    public synchronized void invalidate(EntityKey key) {
+        stamps.incrementAndGet(indexOf(key));
+        objects.invalidate(key);
+    }
+
+    /** Удаляет из кэша все объекты */
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < STAMPS; ++i) {
+            stamps.incrementAndGet(i);
+        }
+        objects.invalidateAll();
+    }
+
+    private static int indexOf(EntityKey key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STAMPS - 1);
+    }
+
+    /** Хранилище кэша со счётчиками попаданий и вытеснений */
+    public BoundedCache<EntityKey, T> getStatistics() {
+        return objects;
+    }
+}
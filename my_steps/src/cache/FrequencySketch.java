@@ -0,0 +1,75 @@
+package cache;
+
+/**
+ * Приближённый счётчик частоты обращений к ключам (count-min sketch)
+ * для допуска объектов в кэш по политике TinyLFU.
+ * Каждый ключ учитывается в четырёх счётчиках, частота - их минимум.
+ * Счётчики ограничены 15, и после sampleSize обращений все
+ * счётчики делятся пополам, чтобы старая популярность забывалась.
+ */
+class FrequencySketch {
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final byte[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maxSize) {
+        int size = Integer.highestOneBit(Math.max(16, maxSize * 4) - 1) << 1;
+        counters = new byte[size];
+        mask = size - 1;
+        sampleSize = Math.max(10 * maxSize, 16);
+    }
+
+    /**
+     * Учитывает обращение к ключу
+     * @param key ключ
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int seed : SEEDS) {
+            int index = index(hash, seed);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Оценивает частоту обращений к ключу
+     * @param key ключ
+     * @return оценка частоты от 0 до 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int seed : SEEDS) {
+            frequency = Math.min(frequency, counters[index(hash, seed)]);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length; ++i) {
+            counters[i] = (byte) (counters[i] >>> 1);
+        }
+        additions /= 2;
+    }
+
+    private int index(int hash, int seed) {
+        int h = (hash ^ seed) * 0x45D9F3B;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 15);
+    }
+}
@@ -7,6 +7,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Вспомогательный класс, содержащий статические методы
@@ -39,6 +41,10 @@ public class ReflectionHelper {
         typeNames.put(Boolean.class, "BOOL");
     }
 
+    //уже преобразованные в under_score имена полей
+    private static final ConcurrentMap<String, String> underScored =
+            new ConcurrentHashMap<String, String>();
+
     /**
      * Возвращает все поля класса, в т.ч. родительские
      * @param cls класс
@@ -103,21 +109,23 @@ public class ReflectionHelper {
      * @post underScorize(camelize(str)) == str
      */
     public static String underScorize (String camelCase) {
-        ArrayList<Character> underScore = new ArrayList<Character>();
-        char[] camel = camelCase.toCharArray();
+        String cached = underScored.get(camelCase);
+        if (cached != null) {
+            return cached;
+        }
+
+        StringBuilder underScore = new StringBuilder(camelCase.length() + 4);
         for (int i = 0; i<camelCase.length(); i++ ) {
-            Character c = camel[i];
+            char c = camelCase.charAt(i);
             if (isUpperCase(c)) {
-                underScore.add('_');
+                underScore.append('_');
             }
-            underScore.add(toLowerCase(c));
-        }
-        char[] under = new char[underScore.size()];
-        for (int i = 0; i<under.length; i++) {
-            under[i] = underScore.get(i).charValue();
+            underScore.append(toLowerCase(c));
         }
+        String under = underScore.toString();
+        underScored.putIfAbsent(camelCase, under);
 
-        return new String(under);
+        return under;
     }
 
     /**
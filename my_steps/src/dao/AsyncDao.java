@@ -0,0 +1,202 @@
+package dao;
+
+import metadata.EntityKey;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронный вариант ReflectionJdbcDao. Каждая операция выполняется
+ * отдельной задачей: задача берёт у фабрики подключение, получает dao,
+ * выполняет операцию и возвращает подключение. Результат или исключение
+ * операции (DaoException, SQLException и т.д.) передаются в CompletableFuture.
+ *
+ * Задачи выполняются на виртуальных потоках, если они есть в JVM (Java 21+),
+ * иначе на потоках-демонах, создаваемых по мере надобности. Одновременно
+ * выполняется не больше maxConcurrency задач, поэтому при maxConcurrency,
+ * равном размеру пула подключений, задачи не ждут подключения внутри пула.
+ *
+ * CompletableFuture завершается после возврата подключения и разрешения,
+ * поэтому зависимые стадии, выполняемые в потоке задачи, могут сами
+ * вызывать операции этого dao и ждать их.
+ *
+ * @param <T> класс объектов
+ */
+public class AsyncDao<T> implements AutoCloseable {
+    private final DaoFactory<Connection> factory;
+    private final Class<T> cls;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    /**
+     * @param factory фабрика подключений и dao
+     * @param cls класс объектов
+     * @param maxConcurrency наибольшее число одновременно выполняемых операций
+     */
+    public AsyncDao(DaoFactory<Connection> factory, Class<T> cls, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrency);
+        }
+        this.factory = factory;
+        this.cls = cls;
+        this.permits = new Semaphore(maxConcurrency);
+        this.executor = newExecutor();
+    }
+
+    /**
+     * Создаёт исполнителя задач: Executors.newVirtualThreadPerTaskExecutor,
+     * если он есть, иначе пул потоков-демонов без ограничения размера.
+     * Число одновременных операций ограничивает permits, а не пул: поток,
+     * занятый зависимой стадией, не должен задерживать следующие задачи.
+     * @return исполнитель
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            final AtomicInteger number = new AtomicInteger();
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "async-dao-" + number.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /** Операция над dao */
+    private interface DaoCall<T, R> {
+        R call(ReflectionJdbcDao<T> dao) throws Exception;
+    }
+
+    /**
+     * Запускает операцию отдельной задачей
+     * @param call операция
+     * @return результат операции
+     */
+    private <R> CompletableFuture<R> submit(final DaoCall<T, R> call) {
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                    return;
+                }
+                R result = null;
+                Throwable error = null;
+                //ошибка возврата подключения тоже завершает операцию ошибкой
+                try (Connection connection = factory.getContext()) {
+                    ReflectionJdbcDao<T> dao = factory.getDao(connection, cls);
+                    result = call.call(dao);
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    permits.release();
+                }
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(result);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    public CompletableFuture<Void> insert(final T object) {
+        return submit(dao -> {
+            dao.insert(object);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> upsert(final T object) {
+        return submit(dao -> {
+            dao.upsert(object);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> update(final T object) {
+        return submit(dao -> {
+            dao.update(object);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteByKey(final T key) {
+        return submit(dao -> {
+            dao.deleteByKey(key);
+            return null;
+        });
+    }
+
+    public CompletableFuture<int[]> insertAll(final Collection<T> objects) {
+        return submit(dao -> dao.insertAll(objects));
+    }
+
+    public CompletableFuture<int[]> upsertAll(final Collection<T> objects) {
+        return submit(dao -> dao.upsertAll(objects));
+    }
+
+    public CompletableFuture<int[]> updateAll(final Collection<T> objects) {
+        return submit(dao -> dao.updateAll(objects));
+    }
+
+    public CompletableFuture<int[]> deleteAllByKeys(final Collection<T> keys) {
+        return submit(dao -> dao.deleteAllByKeys(keys));
+    }
+
+    public CompletableFuture<T> selectByKey(final T key) {
+        return submit(dao -> dao.selectByKey(key));
+    }
+
+    public CompletableFuture<Map<EntityKey, T>> selectByKeys(final Collection<T> keys) {
+        return submit(dao -> dao.selectByKeys(keys));
+    }
+
+    public CompletableFuture<List<T>> select(final Criteria<T> criteria, final String... fields) {
+        return submit(dao -> dao.select(criteria, fields));
+    }
+
+    public CompletableFuture<List<Object[]>> selectTuples(final Criteria<T> criteria, final String... fields) {
+        return submit(dao -> dao.selectTuples(criteria, fields));
+    }
+
+    public CompletableFuture<Long> count(final Criteria<T> criteria) {
+        return submit(dao -> dao.count(criteria));
+    }
+
+    public CompletableFuture<Page<T>> selectPage(final String token, final int pageSize) {
+        return submit(dao -> dao.selectPage(token, pageSize));
+    }
+
+    public CompletableFuture<List<T>> selectAll() {
+        return submit(ReflectionJdbcDao::selectAll);
+    }
+
+    /**
+     * Прекращает приём операций; уже запущенные выполняются до конца
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
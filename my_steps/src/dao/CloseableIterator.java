@@ -0,0 +1,16 @@
+package dao;
+
+import java.util.Iterator;
+
+/**
+ * Итератор, удерживающий ресурсы БД до окончания обхода.
+ * Если обход прерывается раньше, итератор надо закрыть.
+ *
+ * @param <T> класс объектов
+ */
+public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+
+    /** Освобождает запрос и результат запроса */
+    @Override
+    public void close();
+}
@@ -0,0 +1,232 @@
+package dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Условия выборки объектов класса T: сравнения полей со значениями,
+ * порядок, ограничение числа и смещение записей (см. ReflectionJdbcDao.select).
+ * Поля задаются именами полей класса, как и в EntityMetadata.getColumnByField.
+ * Условия объединяются через AND. Значения передаются параметрами запроса,
+ * поэтому условия одного вида с разными значениями выполняются
+ * одним и тем же подготовленным запросом.
+ *
+ * @param <T> класс выбираемых объектов
+ */
+public class Criteria<T> {
+    /** Операции сравнения */
+    enum Operator {
+        EQ(" = ?"), NE(" <> ?"), LT(" < ?"), LE(" <= ?"), GT(" > ?"), GE(" >= ?"),
+        BETWEEN(" BETWEEN ? AND ?"), IN(null), IS_NULL(" IS NULL"), IS_NOT_NULL(" IS NOT NULL");
+
+        private final String sql;
+
+        Operator(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * Дописывает сравнение колонки
+         * @param query строящийся запрос
+         * @param arity число значений
+         */
+        void render(StringBuilder query, int arity) {
+            if (this != IN) {
+                query.append(sql);
+                return;
+            }
+            //IN () недопустим, а IN (NULL) не выбирает ни одной записи
+            query.append(arity == 0 ? " IN (NULL" : " IN (");
+            for (int i = 0; i < arity; ++i) {
+                query.append(i == 0 ? "?" : ", ?");
+            }
+            query.append(")");
+        }
+    }
+
+    /** Сравнение поля */
+    static class Condition {
+        final String field;
+        final Operator operator;
+        final Object[] values;
+
+        Condition(String field, Operator operator, Object... values) {
+            this.field = field;
+            this.operator = operator;
+            this.values = values;
+        }
+    }
+
+    /** Порядок по полю */
+    static class Order {
+        final String field;
+        final boolean ascending;
+
+        Order(String field, boolean ascending) {
+            this.field = field;
+            this.ascending = ascending;
+        }
+    }
+
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<Order> orders = new ArrayList<>();
+    private long limit = -1;
+    private long offset;
+
+    /** Поле равно значению; для null - поле не задано (IS NULL) */
+    public Criteria<T> eq(String field, Object value) {
+        return value == null ? isNull(field) : add(field, Operator.EQ, value);
+    }
+
+    /** Поле не равно значению; для null - поле задано (IS NOT NULL) */
+    public Criteria<T> ne(String field, Object value) {
+        return value == null ? isNotNull(field) : add(field, Operator.NE, value);
+    }
+
+    /** Поле меньше значения */
+    public Criteria<T> lt(String field, Object value) {
+        return add(field, Operator.LT, required(value));
+    }
+
+    /** Поле не больше значения */
+    public Criteria<T> le(String field, Object value) {
+        return add(field, Operator.LE, required(value));
+    }
+
+    /** Поле больше значения */
+    public Criteria<T> gt(String field, Object value) {
+        return add(field, Operator.GT, required(value));
+    }
+
+    /** Поле не меньше значения */
+    public Criteria<T> ge(String field, Object value) {
+        return add(field, Operator.GE, required(value));
+    }
+
+    /** Поле от from до to включительно */
+    public Criteria<T> between(String field, Object from, Object to) {
+        return add(field, Operator.BETWEEN, required(from), required(to));
+    }
+
+    /**
+     * Поле равно одному из значений
+     * @param field имя поля
+     * @param values значения; пустой набор не выбирает ни одной записи
+     * @return эти условия
+     */
+    public Criteria<T> in(String field, Collection<?> values) {
+        for (Object value : values) {
+            required(value);
+        }
+        return add(field, Operator.IN, values.toArray());
+    }
+
+    /** Поле равно одному из значений */
+    public Criteria<T> in(String field, Object... values) {
+        return in(field, Arrays.asList(values));
+    }
+
+    /** Поле не задано */
+    public Criteria<T> isNull(String field) {
+        return add(field, Operator.IS_NULL);
+    }
+
+    /** Поле задано */
+    public Criteria<T> isNotNull(String field) {
+        return add(field, Operator.IS_NOT_NULL);
+    }
+
+    /**
+     * Добавляет порядок по полю; порядки применяются в порядке добавления
+     * @param field имя поля
+     * @param ascending по возрастанию ли
+     * @return эти условия
+     */
+    public Criteria<T> orderBy(String field, boolean ascending) {
+        orders.add(new Order(required(field), ascending));
+        return this;
+    }
+
+    /** Добавляет порядок по возрастанию поля */
+    public Criteria<T> orderBy(String field) {
+        return orderBy(field, true);
+    }
+
+    /**
+     * Ограничивает число выбираемых записей
+     * @param limit наибольшее число записей
+     * @return эти условия
+     */
+    public Criteria<T> limit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Пропускает первые записи выборки
+     * @param offset число пропускаемых записей
+     * @return эти условия
+     */
+    public Criteria<T> offset(long offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    private Criteria<T> add(String field, Operator operator, Object... values) {
+        conditions.add(new Condition(required(field), operator, values));
+        return this;
+    }
+
+    private static <V> V required(V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Criteria value must not be null");
+        }
+        return value;
+    }
+
+    List<Condition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    List<Order> getOrders() {
+        return Collections.unmodifiableList(orders);
+    }
+
+    /** Наибольшее число записей; -1, если не ограничено */
+    long getLimit() {
+        return limit;
+    }
+
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Вид условий без значений: поля, операции, число значений, порядок
+     * и наличие ограничения. Условия одного вида дают один и тот же запрос.
+     * @return строка, по которой кэшируется текст запроса
+     */
+    String getShape() {
+        StringBuilder shape = new StringBuilder();
+        for (Condition condition : conditions) {
+            shape.append(condition.field).append(' ').append(condition.operator.ordinal())
+                    .append(' ').append(condition.values.length).append(';');
+        }
+        shape.append('|');
+        for (Order order : orders) {
+            shape.append(order.field).append(order.ascending ? '+' : '-');
+        }
+        shape.append('|').append(limit >= 0 || offset > 0 ? 'L' : ' ').append(offset > 0 ? 'O' : ' ');
+
+        return shape.toString();
+    }
+}
@@ -21,6 +21,6 @@ public interface DaoFactory <Connection> {
     public Connection getContext() throws SQLException;
 
     /** Возвращает объект для управления персистентным состоянием объекта */
-    public ReflectionJdbcDao getDao(Connection connection, Class<?> dtoClass) throws SQLException, NoTableTitleException,
-            NoKeyFieldsException;
+    public <T> ReflectionJdbcDao<T> getDao(Connection connection, Class<T> dtoClass) throws SQLException,
+            NoTableTitleException, NoKeyFieldsException;
 }
@@ -0,0 +1,538 @@
+package dao;
+
+import dialects.Dialect;
+import metadata.ColumnMetadata;
+import metadata.EntityMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Заранее построенные SQL запросы для CRUD операций над таблицей класса.
+ * Строятся один раз на класс, схему и диалект БД и переиспользуются всеми dao,
+ * поэтому при вызове операции текст запроса заново не собирается.
+ * Имена схемы, таблицы и колонок экранируются диалектом.
+ */
+public final class EntityQueries {
+    //диалект:схема -> класс -> запросы
+    private static final ConcurrentMap<String, ConcurrentMap<Class<?>, EntityQueries>> cache =
+            new ConcurrentHashMap<>();
+    //больше запросов по условиям и наборов колонок на класс не кэшируется
+    private static final int MAX_CACHED_QUERIES = 1024;
+
+    private final Dialect dialect;
+    private final String tableName;
+    private final String createTableQuery;
+    private final String insertQuery;
+    private final String upsertQuery;
+    private final String loadDataQuery;
+    private final String updateQuery;
+    private final String deleteQuery;
+    private final String selectQuery;
+    private final String selectAllQuery;
+    private final String firstPageQuery;
+    private final String nextPageQuery;
+    //число строк -> запрос вставки нескольких строк
+    private final ConcurrentMap<Integer, String> multiRowInsertQueries = new ConcurrentHashMap<>();
+    //число строк -> запрос вставки или обновления нескольких строк
+    private final ConcurrentMap<Integer, String> multiRowUpsertQueries = new ConcurrentHashMap<>();
+    //число ключей -> запрос выборки по нескольким ключам
+    private final ConcurrentMap<Integer, String> selectByKeysQueries = new ConcurrentHashMap<>();
+    private final List<ColumnMetadata> keyColumns;
+    //вид условий -> запрос выборки по условиям
+    private final ConcurrentMap<String, String> criteriaQueries = new ConcurrentHashMap<>();
+    //имена полей -> выбираемые колонки
+    private final ConcurrentMap<String, Projection> projections = new ConcurrentHashMap<>();
+    private final Projection allColumns;
+    private final EntityMetadata<?> metadata;
+    private final String insertColumns;
+    private final String insertRow;
+    //экранированные имена колонок для запросов вставки с обновлением
+    private final List<String> quotedColumns;
+    private final List<String> quotedKeys;
+
+    private EntityQueries(EntityMetadata<?> metadata, Dialect dialect, String schema) {
+        this.metadata = metadata;
+        this.dialect = dialect;
+        tableName = dialect.quote(schema) + "." + dialect.quote(metadata.getTableName());
+        StringBuilder columns = new StringBuilder();
+        appendColumns(columns, metadata.getColumns(), false, ", ");
+        insertColumns = columns.toString();
+        keyColumns = metadata.getKeyColumns();
+        quotedColumns = quoteAll(metadata.getColumns());
+        quotedKeys = quoteAll(keyColumns);
+        allColumns = newProjection(metadata.getColumns());
+        insertRow = renderPlaceholders(metadata.getColumns().size());
+        createTableQuery = renderCreateTable();
+        insertQuery = renderInsert();
+        upsertQuery = dialect.renderUpsert(tableName, quotedColumns, quotedKeys, insertRow);
+        loadDataQuery = renderLoadData();
+        updateQuery = renderUpdate(metadata.getNonKeyColumns(), metadata.getKeyColumns());
+        deleteQuery = renderDelete(metadata.getKeyColumns());
+        selectQuery = renderSelect(metadata.getKeyColumns());
+        selectAllQuery = allColumns.getSelectFrom();
+        firstPageQuery = renderPage(metadata.getKeyColumns(), false);
+        nextPageQuery = renderPage(metadata.getKeyColumns(), true);
+    }
+
+    /**
+     * Возвращает запросы для класса в заданной схеме, строя их при первом обращении
+     * @param metadata модель класса
+     * @param dialect диалект БД
+     * @param schema имя схемы БД
+     * @return запросы
+     */
+    public static EntityQueries forEntity(EntityMetadata<?> metadata, Dialect dialect, String schema) {
+        String cacheKey = dialect.getName() + ":" + schema;
+        ConcurrentMap<Class<?>, EntityQueries> bySchema = cache.get(cacheKey);
+        if (bySchema == null) {
+            bySchema = new ConcurrentHashMap<>();
+            ConcurrentMap<Class<?>, EntityQueries> existing = cache.putIfAbsent(cacheKey, bySchema);
+            if (existing != null) {
+                bySchema = existing;
+            }
+        }
+
+        EntityQueries queries = bySchema.get(metadata.getEntityClass());
+        if (queries == null) {
+            queries = new EntityQueries(metadata, dialect, schema);
+            EntityQueries existing = bySchema.putIfAbsent(metadata.getEntityClass(), queries);
+            if (existing != null) {
+                queries = existing;
+            }
+        }
+
+        return queries;
+    }
+
+    /** Полное имя таблицы вместе со схемой */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /** Создание таблицы, если её ещё нет, с первичным ключом из ключевых колонок */
+    public String getCreateTableQuery() {
+        return createTableQuery;
+    }
+
+    /** Вставка всех колонок в порядке EntityMetadata.getColumns */
+    public String getInsertQuery() {
+        return insertQuery;
+    }
+
+    /**
+     * Вставка нескольких строк одним запросом INSERT ... VALUES (...), (...)
+     * @param rows число строк
+     * @return SQL запрос
+     */
+    public String getMultiRowInsertQuery(int rows) {
+        String query = multiRowInsertQueries.get(rows);
+        if (query == null) {
+            query = "INSERT INTO " + tableName + " \n(" + insertColumns + ") \nVALUES" + renderRows(rows);
+            multiRowInsertQueries.putIfAbsent(rows, query);
+        }
+
+        return query;
+    }
+
+    /**
+     * Вставка всех колонок, а при совпадении ключа - обновление
+     * неключевых колонок (см. Dialect.renderUpsert).
+     * Параметры те же, что у getInsertQuery.
+     */
+    public String getUpsertQuery() {
+        return upsertQuery;
+    }
+
+    /**
+     * Вставка или обновление нескольких строк одним запросом
+     * @param rows число строк
+     * @return SQL запрос
+     */
+    public String getMultiRowUpsertQuery(int rows) {
+        String query = multiRowUpsertQueries.get(rows);
+        if (query == null) {
+            query = dialect.renderUpsert(tableName, quotedColumns, quotedKeys, renderRows(rows));
+            multiRowUpsertQueries.putIfAbsent(rows, query);
+        }
+
+        return query;
+    }
+
+    /**
+     * Загрузка строк из потока клиента запросом LOAD DATA LOCAL INFILE.
+     * Строки разделены '\n', поля - '\t', спецсимволы экранируются '\',
+     * NULL записывается как \N; поля идут в порядке EntityMetadata.getColumns.
+     */
+    public String getLoadDataQuery() {
+        return loadDataQuery;
+    }
+
+    /** Обновление: сначала неключевые колонки, затем ключевые в WHERE */
+    public String getUpdateQuery() {
+        return updateQuery;
+    }
+
+    /** Удаление по ключевым колонкам */
+    public String getDeleteQuery() {
+        return deleteQuery;
+    }
+
+    /** Выборка по ключевым колонкам */
+    public String getSelectQuery() {
+        return selectQuery;
+    }
+
+    /**
+     * Выборка по нескольким ключам: WHERE k IN (?, ?) для одной
+     * ключевой колонки, WHERE (a, b) IN ((?, ?), (?, ?)) для составного ключа,
+     * если диалект это поддерживает, иначе WHERE (a = ? AND b = ?) OR (...).
+     * Параметры - значения ключевых колонок ключ за ключом.
+     * @param keys число ключей
+     * @return SQL запрос
+     */
+    public String getSelectByKeysQuery(int keys) {
+        String query = selectByKeysQueries.get(keys);
+        if (query == null) {
+            StringBuilder builder = new StringBuilder(allColumns.getSelectFrom()).append("\n WHERE ");
+            if (keyColumns.size() == 1) {
+                builder.append(quote(keyColumns.get(0))).append(" IN ")
+                        .append(renderPlaceholders(keys));
+            } else if (dialect.supportsRowValueIn()) {
+                builder.append("(");
+                appendColumns(builder, keyColumns, false, ", ");
+                builder.append(") IN (");
+                String row = renderPlaceholders(keyColumns.size());
+                for (int i = 0; i < keys; ++i) {
+                    builder.append(i == 0 ? "" : ", ").append(row);
+                }
+                builder.append(")");
+            } else {
+                for (int i = 0; i < keys; ++i) {
+                    builder.append(i == 0 ? "(" : " OR \n(");
+                    appendColumns(builder, keyColumns, true, " AND ");
+                    builder.append(")");
+                }
+            }
+            query = builder.toString();
+            selectByKeysQueries.putIfAbsent(keys, query);
+        }
+
+        return query;
+    }
+
+    /** Первая страница в порядке ключевых колонок; параметр - LIMIT */
+    public String getFirstPageQuery() {
+        return firstPageQuery;
+    }
+
+    /**
+     * Страница, следующая за ключом (k1, ..., kn), в порядке ключевых колонок:
+     * WHERE k1 >= ? AND (k1 > ? OR (k1 = ? AND k2 > ?) OR ...).
+     * Параметры - значение k1, затем для i-го условия OR значения k1..ki,
+     * затем LIMIT (см. GenericDao.selectPage).
+     */
+    public String getNextPageQuery() {
+        return nextPageQuery;
+    }
+
+    /**
+     * Выборка по условиям: WHERE, ORDER BY и LIMIT ? OFFSET ?.
+     * Параметры - значения условий по порядку, затем ограничение и смещение.
+     * Запросы кэшируются по виду условий (см. Criteria.getShape) и набору колонок.
+     * @param criteria условия
+     * @param projection выбираемые колонки
+     * @return SQL запрос
+     * @throws IllegalArgumentException если у класса нет поля из условий
+     */
+    public String getCriteriaQuery(Criteria<?> criteria, Projection projection) {
+        return getCriteriaQuery(projection.getKey() + criteria.getShape(), criteria, projection);
+    }
+
+    /**
+     * Число записей, удовлетворяющих условиям; ORDER BY и LIMIT не добавляются
+     * @param criteria условия
+     * @return SQL запрос
+     * @throws IllegalArgumentException если у класса нет поля из условий
+     */
+    public String getCountQuery(Criteria<?> criteria) {
+        return getCriteriaQuery("COUNT " + criteria.getShape(), criteria, null);
+    }
+
+    private String getCriteriaQuery(String shape, Criteria<?> criteria, Projection projection) {
+        String query = criteriaQueries.get(shape);
+        if (query == null) {
+            query = renderCriteria(criteria, projection);
+            if (criteriaQueries.size() < MAX_CACHED_QUERIES) {
+                criteriaQueries.putIfAbsent(shape, query);
+            }
+        }
+
+        return query;
+    }
+
+    /** Все колонки в порядке EntityMetadata.getColumns */
+    Projection getAllColumns() {
+        return allColumns;
+    }
+
+    /**
+     * Колонки заданных полей в заданном порядке
+     * @param fields имена полей; без полей выбираются все колонки
+     * @return выбираемые колонки
+     * @throws IllegalArgumentException если у класса нет такого поля
+     */
+    Projection getProjection(String... fields) {
+        if (fields.length == 0) {
+            return allColumns;
+        }
+        StringBuilder key = new StringBuilder();
+        for (String field : fields) {
+            key.append(field).append(',');
+        }
+        Projection projection = projections.get(key.toString());
+        if (projection == null) {
+            List<ColumnMetadata> columns = new ArrayList<>(fields.length);
+            for (String field : fields) {
+                columns.add(getCriteriaColumn(field));
+            }
+            projection = newProjection(columns);
+            if (projections.size() < MAX_CACHED_QUERIES) {
+                projections.putIfAbsent(key.toString(), projection);
+            }
+        }
+
+        return projection;
+    }
+
+    /**
+     * Колонка поля, упомянутого в условиях
+     * @param field имя поля
+     * @return колонка
+     * @throws IllegalArgumentException если у класса нет такого поля
+     */
+    ColumnMetadata getCriteriaColumn(String field) {
+        ColumnMetadata column = metadata.getColumnByField(field);
+        if (column == null) {
+            throw new IllegalArgumentException("There are no field " + field +
+                    " in class " + metadata.getEntityClass().getName());
+        }
+        return column;
+    }
+
+    /** Выборка всех записей таблицы */
+    public String getSelectAllQuery() {
+        return selectAllQuery;
+    }
+
+    /**
+     * Получает запрос создания таблицы: ключевые колонки NOT NULL,
+     * остальные NULL, типы колонок задаёт диалект
+     * @return SQL запрос
+     */
+    private String renderCreateTable() {
+        StringBuilder query = new StringBuilder("CREATE TABLE IF NOT EXISTS \n").append(tableName).append(" (\n");
+        for (ColumnMetadata column : metadata.getColumns()) {
+            query.append(" ").append(quote(column)).append(" ").append(dialect.getSqlType(column.getType()))
+                    .append(column.isKey() ? " NOT NULL, \n" : " NULL, \n");
+        }
+        query.append(" PRIMARY KEY (");
+        appendColumns(query, keyColumns, false, ", ");
+
+        return query.append(") )").toString();
+    }
+
+    /**
+     * Получает строку для запроса вставки в таблицу всех колонок
+     * @return SQL запрос
+     */
+    private String renderInsert() {
+        return "INSERT INTO " + tableName + " \n(" + insertColumns + ") \nVALUES" + insertRow;
+    }
+
+    /**
+     * Получает запрос загрузки строк из потока клиента.
+     * Имя файла ни на что не влияет: данные берутся из потока,
+     * заданного у запроса до выполнения.
+     * @return SQL запрос
+     */
+    private String renderLoadData() {
+        return "LOAD DATA LOCAL INFILE 'stream' \nINTO TABLE " + tableName +
+                " \nCHARACTER SET utf8 \nFIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' " +
+                "\nLINES TERMINATED BY '\\n' \n(" + insertColumns + ")";
+    }
+
+    /**
+     * Получает строку параметров одной вставляемой строки
+     * @param count число колонок
+     * @return строка вида (?, ?, ?)
+     */
+    private static String renderPlaceholders(int count) {
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < count; ++i) {
+            row.append(i == 0 ? "?" : ", ?");
+        }
+
+        return row.append(")").toString();
+    }
+
+    /**
+     * Получает строку параметров нескольких вставляемых строк
+     * @param rows число строк
+     * @return строка вида (?, ?), (?, ?)
+     */
+    private String renderRows(int rows) {
+        StringBuilder values = new StringBuilder(rows * (insertRow.length() + 2));
+        for (int i = 0; i < rows; ++i) {
+            values.append(i == 0 ? "" : ", ").append(insertRow);
+        }
+
+        return values.toString();
+    }
+
+    /**
+     * Получает строку для запроса обновления таблицы
+     * @param nonKeys неключевые колонки для обновления
+     * @param keys ключевые колонки
+     * @return SQL запрос
+     */
+    private String renderUpdate(List<ColumnMetadata> nonKeys, List<ColumnMetadata> keys) {
+        StringBuilder query = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+        appendColumns(query, nonKeys, true, ", ");
+        query.append(" WHERE ");
+        appendColumns(query, keys, true, " AND ");
+
+        return query.toString();
+    }
+
+    /**
+     * Получает строку для запроса удаления из таблицы
+     * @param keys ключевые колонки
+     * @return SQL запрос
+     */
+    private String renderDelete(List<ColumnMetadata> keys) {
+        StringBuilder query = new StringBuilder("DELETE FROM ").append(tableName).append(" WHERE ");
+        appendColumns(query, keys, true, " AND ");
+
+        return query.toString();
+    }
+
+    /**
+     * Получает запрос на получение объекта из таблицы
+     * @param keys ключевые колонки
+     * @return SQL запрос
+     */
+    private String renderSelect(List<ColumnMetadata> keys) {
+        StringBuilder query = new StringBuilder(allColumns.getSelectFrom()).append("\n WHERE ");
+        appendColumns(query, keys, true, " AND \n");
+
+        return query.toString();
+    }
+
+    /**
+     * Получает запрос на выборку страницы в порядке ключевых колонок.
+     * Условие k1 >= ? перед OR позволяет БД взять диапазон индекса
+     * первичного ключа вместо его полного просмотра.
+     * @param keys ключевые колонки
+     * @param afterKey выбирать ли записи после заданного ключа
+     * @return SQL запрос
+     */
+    private String renderPage(List<ColumnMetadata> keys, boolean afterKey) {
+        StringBuilder query = new StringBuilder(allColumns.getSelectFrom());
+        if (afterKey && keys.size() == 1) {
+            query.append("\n WHERE ").append(quote(keys.get(0))).append(" > ?");
+        } else if (afterKey) {
+            query.append("\n WHERE ").append(quote(keys.get(0))).append(" >= ? AND \n(");
+            for (int i = 0; i < keys.size(); ++i) {
+                query.append(i == 0 ? "(" : " OR \n(");
+                appendColumns(query, keys.subList(0, i), true, " AND ");
+                query.append(i == 0 ? "" : " AND ").append(quote(keys.get(i))).append(" > ?)");
+            }
+            query.append(")");
+        }
+        query.append("\n ORDER BY ");
+        appendColumns(query, keys, false, ", ");
+
+        return query.append(dialect.renderLimit(false)).toString();
+    }
+
+    /**
+     * Получает запрос на выборку по условиям
+     * @param criteria условия
+     * @param projection выбираемые колонки или null, если выбирается только число записей
+     * @return SQL запрос
+     */
+    private String renderCriteria(Criteria<?> criteria, Projection projection) {
+        boolean count = projection == null;
+        StringBuilder query = new StringBuilder(count ? "SELECT COUNT(*) FROM " + tableName
+                : projection.getSelectFrom());
+        List<Criteria.Condition> conditions = criteria.getConditions();
+        for (int i = 0; i < conditions.size(); ++i) {
+            Criteria.Condition condition = conditions.get(i);
+            query.append(i == 0 ? "\n WHERE " : " AND \n")
+                    .append(quote(getCriteriaColumn(condition.field)));
+            condition.operator.render(query, condition.values.length);
+        }
+        if (count) {
+            return query.toString();
+        }
+
+        List<Criteria.Order> orders = criteria.getOrders();
+        for (int i = 0; i < orders.size(); ++i) {
+            Criteria.Order order = orders.get(i);
+            query.append(i == 0 ? "\n ORDER BY " : ", ")
+                    .append(quote(getCriteriaColumn(order.field)))
+                    .append(order.ascending ? " ASC" : " DESC");
+        }
+        if (criteria.getLimit() >= 0 || criteria.getOffset() > 0) {
+            query.append(dialect.renderLimit(criteria.getOffset() > 0));
+        }
+
+        return query.toString();
+    }
+
+    /**
+     * Дописывает перечисление колонок для использования в запросах
+     * @param query строящийся запрос
+     * @param columns колонки
+     * @param withValues идут ли после названий колонок их значения
+     * @param separator разделитель между колонками
+     */
+    private void appendColumns(StringBuilder query, List<ColumnMetadata> columns,
+                               boolean withValues, String separator) {
+        for (int i = 0; i < columns.size(); ++i) {
+            if (i > 0) {
+                query.append(separator);
+            }
+            query.append(quote(columns.get(i)));
+            if (withValues) {
+                query.append(" = ?");
+            }
+        }
+    }
+
+    /**
+     * Выбираемые колонки вместе с началом запроса SELECT колонки FROM таблица
+     * @param columns колонки в порядке SELECT
+     * @return выбираемые колонки
+     */
+    private Projection newProjection(List<ColumnMetadata> columns) {
+        StringBuilder select = new StringBuilder("SELECT ");
+        appendColumns(select, columns, false, ", ");
+        return new Projection(columns, select.append(" FROM ").append(tableName).toString());
+    }
+
+    private List<String> quoteAll(List<ColumnMetadata> columns) {
+        List<String> names = new ArrayList<>(columns.size());
+        for (ColumnMetadata column : columns) {
+            names.add(quote(column));
+        }
+        return names;
+    }
+
+    private String quote(ColumnMetadata column) {
+        return dialect.quote(column.getColumnName());
+    }
+}
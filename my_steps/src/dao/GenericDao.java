@@ -1,13 +1,38 @@
 package dao;
 
-import annotations.TaggedObject;
-import classes.ReflectionHelper;
+import annotations.Cached;
+import cache.EntityCache;
+import dialects.Dialect;
+import dialects.MySqlDialect;
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.ColumnMetadata;
+import metadata.EntityKey;
+import metadata.EntityMapper;
+import metadata.EntityMetadata;
+import metrics.DaoListener;
+import metrics.DaoOperation;
+import metrics.OperationTimer;
+import pool.PooledConnection;
 
-import java.lang.reflect.Field;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Класс, реализующий паттерн Data Access Object.
@@ -16,6 +41,10 @@ import java.util.List;
  * Класс Т должен быть помечен именем таблицы, иметь ключевые поля.
  * Для записи в базу допускаются лишь определенные типы полей.
  * (См. ReflectionHelper.typeNames).
+ * Ошибки обращения к БД выбрасываются как DaoException.
+ * Особенности SQL конкретной БД задаются диалектом (см. Dialect),
+ * по умолчанию это MySQL. О выполненных операциях можно узнавать,
+ * задав DaoListener.
  *
  * В классе MySqlDaoFactory есть поля user и password, которые надо
  * поменять, если захотите тестировать у себя
@@ -24,249 +53,1173 @@ import java.util.List;
  * @date 02.03.2015
  */
 public class GenericDao<T> implements ReflectionJdbcDao<T>{
+    /** Размер пакета по умолчанию для пакетных операций */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** fetchSize, при котором MySQL передаёт результат построчно */
+    public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    /** Число ключей в одном запросе selectByKeys по умолчанию */
+    public static final int DEFAULT_LOOKUP_SIZE = 500;
+    /** Схема БД, в которой по умолчанию хранятся таблицы */
+    public static final String DEFAULT_SCHEMA = "yandex_dao";
+
     private Connection connection;
-    private Class<?> cls;
-    private String tableName;
+    private Dialect dialect;
+    private EntityMetadata<T> metadata;
+    //запись и чтение объектов целиком, сгенерированное при компиляции, если есть
+    private EntityMapper<T> mapper;
+    private EntityQueries queries;
+    private StatementCache statements;
+    //null, если класс не помечен Cached
+    private EntityCache<T> cache;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private boolean multiRowInsert;
+    private int fetchSize;
+    private int lookupSize = DEFAULT_LOOKUP_SIZE;
+    private OperationTimer timer;
+
+    public GenericDao(Connection c, Class<T> cls) throws NoTableTitleException, NoKeyFieldsException {
+        this(c, EntityMetadata.forClass(cls));
+    }
 
-    public GenericDao(Connection c, Class<T> cls) {
+    public GenericDao(Connection c, EntityMetadata<T> metadata) {
+        this(c, metadata, MySqlDialect.INSTANCE, DEFAULT_SCHEMA);
+    }
+
+    /**
+     * @param c подключение к БД
+     * @param metadata модель класса
+     * @param dialect диалект БД подключения
+     * @param schema схема БД, в которой хранится таблица класса
+     */
+    public GenericDao(Connection c, EntityMetadata<T> metadata, Dialect dialect, String schema) {
         connection = c;
-        this.cls = cls;
-        tableName = "yandex_dao." + cls.getAnnotation(TaggedObject.class).name();
+        this.metadata = metadata;
+        this.mapper = metadata.getMapper();
+        this.dialect = dialect;
+        queries = EntityQueries.forEntity(metadata, dialect, schema);
+        statements = StatementCache.forConnection(c);
+        if (metadata.getEntityClass().isAnnotationPresent(Cached.class)) {
+            cache = EntityCache.forEntity(metadata, databaseOf(c, dialect), schema);
+        }
+        timer = new OperationTimer(metadata.getEntityClass(), null);
     }
 
-    @Override
-    public void insert(T object) {
-        List<Field> fields = ReflectionHelper.getAllValidFields(cls);
-        String query = getInsertQuery(fields);
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            for (int i = 0; i < fields.size(); ++i) {
-                fields.get(i).setAccessible(true);
-                statement.setObject(i+1, fields.get(i).get(object));
-            }
-            statement.executeUpdate();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+    /**
+     * Задаёт максимальное число строк в одном пакете
+     * для insertAll, updateAll и deleteAllByKeys
+     * @param batchSize размер пакета
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
         }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
     }
 
     /**
-     * Получает строку для запроса вставки в таблицу
-     * @param fields значения каких полей будут вставлены
-     * @return
+     * Включает для insertAll вставку пакета одним запросом
+     * INSERT ... VALUES (...), (...) вместо addBatch/executeBatch.
+     * Если диалект такую вставку не поддерживает, настройка не действует.
+     * @param multiRowInsert вставлять ли пакет одним запросом
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert && dialect.supportsMultiRowInsert();
+    }
+
+    public boolean isMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    /**
+     * Задаёт число строк, получаемых от БД за раз при потоковом чтении
+     * (iterator, stream, forEach). 0 оставляет значение драйвера.
+     * Для MySQL значение STREAMING_FETCH_SIZE включает построчное чтение;
+     * пока результат не дочитан или не закрыт, другие запросы
+     * по тому же подключению выполнять нельзя.
+     * @param fetchSize число строк
      */
-    private String getInsertQuery(List<Field> fields) {
-        String query = "INSERT INTO " + tableName + " \n(" +
-                getFieldsRecord(fields, false, false) + ") \nVALUES(";
-        for (int i = 0; i < fields.size() - 1; ++i) {
-            query += "?, ";
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Задаёт наибольшее число ключей в одном запросе selectByKeys
+     * @param lookupSize число ключей
+     */
+    public void setLookupSize(int lookupSize) {
+        if (lookupSize < 1) {
+            throw new IllegalArgumentException("Lookup size must be positive: " + lookupSize);
         }
-        query += "?);";
+        this.lookupSize = lookupSize;
+    }
 
-        return query;
+    public int getLookupSize() {
+        return lookupSize;
+    }
+
+    /**
+     * Кэш подготовленных запросов подключения, через которое работает dao
+     * @return кэш запросов
+     */
+    public StatementCache getStatementCache() {
+        return statements;
+    }
+
+    /** Подключение, через которое работает dao */
+    protected Connection getConnection() {
+        return connection;
+    }
+
+    /** Модель класса объектов */
+    protected EntityMetadata<T> getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Задаёт получателя сведений о выполненных операциях
+     * @param listener получатель или null, чтобы не засекать операции
+     */
+    public void setListener(DaoListener listener) {
+        timer.setListener(listener);
+    }
+
+    public DaoListener getListener() {
+        return timer.getListener();
+    }
+
+    /** Замер фаз операций dao для наследников, добавляющих операции */
+    protected OperationTimer getTimer() {
+        return timer;
+    }
+
+    /** Диалект БД подключения */
+    protected Dialect getDialect() {
+        return dialect;
+    }
+
+    /** Запросы к таблице класса */
+    protected EntityQueries getQueries() {
+        return queries;
+    }
+
+    /**
+     * Кэш объектов класса, общий для всех dao класса в той же БД и схеме
+     * @return кэш или null, если класс не помечен Cached
+     */
+    public EntityCache<T> getEntityCache() {
+        return cache;
+    }
+
+    @Override
+    public void insert(T object) {
+        timer.start(DaoOperation.INSERT);
+        String query = queries.getInsertQuery();
+        try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+            PreparedStatement statement = lease.getStatement();
+            int next = mapper.bindColumns(statement, 1, object);
+            timer.prepared(query, next - 1);
+            statement.executeUpdate();
+            timer.executed();
+            timer.completed(1);
+        } catch (SQLException e) {
+            throw failure("insert into", e);
+        } finally {
+            evict(Collections.singletonList(object));
+            timer.end();
+        }
     }
 
     @Override
     public void update(T object) {
-        List<Field> keys = ReflectionHelper.getKeyFields(cls);
-        List<Field> nonKeys = ReflectionHelper.getAllValidFields(cls);
-        nonKeys.removeAll(keys);
-        String query = getUpdateQuery(nonKeys, keys);
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            for (int i = 0; i < keys.size() + nonKeys.size(); ++i) {
-                Field f = i < nonKeys.size() ? nonKeys.get(i) : keys.get(i - nonKeys.size());
-                f.setAccessible(true);
-                statement.setObject(i + 1, f.get(object));
+        timer.start(DaoOperation.UPDATE);
+        String query = queries.getUpdateQuery();
+        try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+            PreparedStatement statement = lease.getStatement();
+            int next = bind(Operation.UPDATE, statement, object);
+            timer.prepared(query, next - 1);
+            int count = statement.executeUpdate();
+            timer.executed();
+            if (count != 1) {
+                throw timer.failed(new DaoException("On update modify " + count + " records instead of 1 in " +
+                        queries.getTableName()));
             }
+            timer.completed(1);
+        } catch (SQLException e) {
+            throw failure("update", e);
+        } finally {
+            evict(Collections.singletonList(object));
+            timer.end();
+        }
+    }
+
+    @Override
+    public void deleteByKey(T key) {
+        timer.start(DaoOperation.DELETE);
+        String query = queries.getDeleteQuery();
+        try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+            PreparedStatement statement = lease.getStatement();
+            int next = bind(Operation.DELETE, statement, key);
+            timer.prepared(query, next - 1);
             int count = statement.executeUpdate();
+            timer.executed();
             if (count != 1) {
-                throw new SQLException("On update modify more then 1 record: " + count);
+                throw timer.failed(new DaoException("On delete modify " + count + " records instead of 1 in " +
+                        queries.getTableName()));
             }
-            statement.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+            timer.completed(1);
+        } catch (SQLException e) {
+            throw failure("delete from", e);
+        } finally {
+            evict(Collections.singletonList(key));
+            timer.end();
+        }
+    }
+
+    @Override
+    public int[] insertAll(Collection<T> objects) {
+        timer.start(DaoOperation.INSERT_ALL);
+        try {
+            int[] counts = multiRowInsert ? insertMultiRow(objects, false)
+                    : executeBatch(Operation.INSERT, queries.getInsertQuery(), objects);
+            timer.completed(counts.length);
+            return counts;
+        } finally {
+            evict(objects);
+            timer.end();
+        }
+    }
+
+    @Override
+    public void upsert(T object) {
+        timer.start(DaoOperation.UPSERT);
+        String query = queries.getUpsertQuery();
+        try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+            PreparedStatement statement = lease.getStatement();
+            int next = bind(Operation.UPSERT, statement, object);
+            timer.prepared(query, next - 1);
+            statement.executeUpdate();
+            timer.executed();
+            timer.completed(1);
+        } catch (SQLException e) {
+            throw failure("upsert into", e);
+        } finally {
+            evict(Collections.singletonList(object));
+            timer.end();
+        }
+    }
+
+    @Override
+    public int[] upsertAll(Collection<T> objects) {
+        timer.start(DaoOperation.UPSERT_ALL);
+        try {
+            int[] counts = multiRowInsert ? insertMultiRow(objects, true)
+                    : executeBatch(Operation.UPSERT, queries.getUpsertQuery(), objects);
+            timer.completed(counts.length);
+            return counts;
+        } finally {
+            evict(objects);
+            timer.end();
+        }
+    }
+
+    @Override
+    public int[] updateAll(Collection<T> objects) {
+        timer.start(DaoOperation.UPDATE_ALL);
+        try {
+            int[] counts = executeBatch(Operation.UPDATE, queries.getUpdateQuery(), objects);
+            timer.completed(counts.length);
+            return counts;
+        } finally {
+            evict(objects);
+            timer.end();
+        }
+    }
+
+    @Override
+    public int[] deleteAllByKeys(Collection<T> keys) {
+        timer.start(DaoOperation.DELETE_ALL);
+        try {
+            int[] counts = executeBatch(Operation.DELETE, queries.getDeleteQuery(), keys);
+            timer.completed(counts.length);
+            return counts;
+        } finally {
+            evict(keys);
+            timer.end();
         }
     }
 
     /**
-     * /**
-     * Получает строку для запроса обновления таблицы
-     * @param nonKeys неключевые поля для обновления
-     * @param keys ключевые поля для обновления
-     * @return SQL запрос
+     * Удаляет из кэша объекты, изменённые в БД (в том числе при ошибке
+     * записи, которая могла успеть изменить часть строк). Если запись
+     * выполнена в транзакции, до её завершения другие подключения читают
+     * прежние значения и могут снова положить их в кэш, поэтому у подключений
+     * из пула объекты удаляются ещё раз после commit или rollback. Для других
+     * подключений это надо сделать самому через getEntityCache.
+     * @param objects объекты или их ключи
      */
-    private String getUpdateQuery(List<Field> nonKeys, List<Field> keys) {
-        String query = "UPDATE " + tableName + " SET " +
-            getFieldsRecord(nonKeys, true, false) +
-            " WHERE " + getFieldsRecord(keys, true, true) + ";";
+    protected void evict(Collection<T> objects) {
+        if (cache == null) {
+            return;
+        }
+        final EntityCache<T> entities = cache;
+        final List<EntityKey> keys = new ArrayList<>(objects.size());
+        for (T object : objects) {
+            keys.add(metadata.keyOf(object));
+        }
+        invalidate(entities, keys);
+        if (connection instanceof PooledConnection && inTransaction()) {
+            ((PooledConnection) connection).afterCompletion(new Runnable() {
+                @Override
+                public void run() {
+                    invalidate(entities, keys);
+                }
+            });
+        }
+    }
 
-        return query;
+    private static <T> void invalidate(EntityCache<T> cache, List<EntityKey> keys) {
+        for (EntityKey key : keys) {
+            cache.invalidate(key);
+        }
     }
 
-    @Override
-    public void deleteByKey(T key) {
-        List<Field> keys = ReflectionHelper.getKeyFields(cls);
-        String query = getDeleteQuery(key, keys);
-        try (PreparedStatement statement = connection.prepareStatement(query)) {
-            for (int i = 0; i < keys.size(); ++i) {
-                keys.get(i).setAccessible(true);
-                statement.setObject(i + 1, keys.get(i).get(key));
-            }
-            int count = statement.executeUpdate();
-            if (count != 1) {
-                throw new SQLException("On delete modify more then 1 record: " + count);
-            }
-            statement.close();
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Можно ли читать объекты из кэша и класть их туда. Внутри транзакции
+     * нельзя: подключение видит свои незафиксированные изменения, которых
+     * нет в кэше, а прочитанное им может быть ещё откачено.
+     */
+    private boolean isCacheUsable() {
+        return cache != null && !inTransaction();
+    }
+
+    private boolean inTransaction() {
+        try {
+            return !connection.getAutoCommit();
+        } catch (SQLException e) {
+            //подключение закрыто: незавершённая транзакция уже откачена
+            return false;
         }
     }
 
     /**
-     * Получает строку для запроса удаления из таблицы
-     * @param key объект, ключевые поля которого будут указывать что удалить
-     * @param keys ключевые поля
-     * @return SQL запрос на удаление
+     * Адрес БД подключения, по которому различаются кэши
+     * объектов одного класса в разных БД
      */
-    private String getDeleteQuery(T key, List<Field> keys) {
-        String query = "DELETE FROM " + tableName + " WHERE ";
-        query += getFieldsRecord(keys, true, true);
-        query += ";";
+    private static String databaseOf(Connection c, Dialect dialect) {
+        try {
+            return c.getMetaData().getURL();
+        } catch (SQLException e) {
+            return dialect.getName();
+        }
+    }
 
-        return query;
+    /** Операции, которые можно выполнять пакетами */
+    private enum Operation { INSERT, UPSERT, UPDATE, DELETE }
+
+    /**
+     * Записывает в параметры запроса поля объекта, нужные операции
+     * @param operation операция
+     * @param statement запрос
+     * @param object объект
+     * @return номер параметра, следующего за последним записанным
+     * @throws SQLException
+     */
+    private int bind(Operation operation, PreparedStatement statement, T object) throws SQLException {
+        switch (operation) {
+            case INSERT:
+            case UPSERT:
+                return mapper.bindColumns(statement, 1, object);
+            case UPDATE:
+                int next = mapper.bindNonKeyColumns(statement, 1, object);
+                return mapper.bindKeyColumns(statement, next, object);
+            case DELETE:
+                return mapper.bindKeyColumns(statement, 1, object);
+            default:
+                throw new IllegalArgumentException(operation.toString());
+        }
     }
 
     /**
-     * Получает письменное представление поля для использования в запросах
-     * @param f поле
-     * @param withValues указываются ли после названия колонки значения
-     * @return
+     * Выполняет операцию для всех объектов пакетами по batchSize строк
+     * @param operation операция
+     * @param query запрос операции
+     * @param objects объекты
+     * @return число изменённых записей для каждого объекта
+     * @throws DaoException при ошибке; если её причина - BatchUpdateException,
+     * в нём число изменённых записей для каждого объекта,
+     * Statement.EXECUTE_FAILED для невыполненных
      */
-    private String getFieldRecord (Field f, boolean withValues) {
-        f.setAccessible(true);
-        return ReflectionHelper.underScorize(f.getName()) +
-                (withValues ? "= ?" : "");
+    private int[] executeBatch(Operation operation, String query, Collection<T> objects) {
+        int[] counts = new int[objects.size()];
+        Arrays.fill(counts, Statement.EXECUTE_FAILED);
+        int done = 0;
+        try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+            PreparedStatement statement = lease.getStatement();
+            //пакет мог остаться от прерванного вызова
+            statement.clearBatch();
+            int inBatch = 0;
+            int parameters = 0;
+            for (T object : objects) {
+                parameters += bind(operation, statement, object) - 1;
+                statement.addBatch();
+                if (++inBatch == batchSize) {
+                    timer.prepared(query, parameters);
+                    done = copyCounts(statement.executeBatch(), counts, done);
+                    timer.executed();
+                    inBatch = 0;
+                    parameters = 0;
+                }
+            }
+            if (inBatch > 0) {
+                timer.prepared(query, parameters);
+                copyCounts(statement.executeBatch(), counts, done);
+                timer.executed();
+            }
+        } catch (BatchUpdateException e) {
+            //число изменённых записей по всем объектам, а не только по прерванному пакету
+            copyCounts(e.getUpdateCounts(), counts, done);
+            throw failure("execute batch on", new BatchUpdateException(e.getMessage(), e.getSQLState(),
+                    e.getErrorCode(), counts, e));
+        } catch (SQLException e) {
+            throw failure("execute batch on", e);
+        }
+
+        return counts;
     }
 
     /**
-     * Получает письменное представление полей для использования в запросах
-     * @param list список полей
-     * @param withValues идут ли после названий колонок в запросе их значения
-     * @param isAND надо ли ставить между равенствами AND
-     * @return
+     * Вставляет объекты запросами INSERT ... VALUES (...), (...)
+     * по batchSize строк в каждом
+     * @param objects объекты
+     * @param upsert обновлять ли записи с совпавшим ключом (ON DUPLICATE KEY UPDATE)
+     * @return число вставленных записей для каждого объекта
      */
-    private String getFieldsRecord(List<Field> list,
-                                   boolean withValues, boolean isAND) {
-        String record = "";
-        for (int i = 0; i < list.size(); ++i) {
-            list.get(i).setAccessible(true);
-            record += getFieldRecord(list.get(i), withValues);
-            record += i < list.size() - 1 ? (isAND? " AND " : ", ") : "";
+    private int[] insertMultiRow(Collection<T> objects, boolean upsert) {
+        int[] counts = new int[objects.size()];
+        Arrays.fill(counts, Statement.EXECUTE_FAILED);
+        Iterator<T> iterator = objects.iterator();
+        int done = 0;
+        try {
+            while (done < counts.length) {
+                int rows = Math.min(batchSize, counts.length - done);
+                String query = upsert ? queries.getMultiRowUpsertQuery(rows)
+                        : queries.getMultiRowInsertQuery(rows);
+                try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+                    PreparedStatement statement = lease.getStatement();
+                    int index = 1;
+                    for (int i = 0; i < rows; ++i) {
+                        index = mapper.bindColumns(statement, index, iterator.next());
+                    }
+                    timer.prepared(query, index - 1);
+                    int inserted = statement.executeUpdate();
+                    timer.executed();
+                    //MySQL сообщает только общее число строк; обновлённая строка считается дважды
+                    Arrays.fill(counts, done, done + rows,
+                            inserted == rows ? 1 : Statement.SUCCESS_NO_INFO);
+                }
+                done += rows;
+            }
+        } catch (SQLException e) {
+            throw failure("insert into", e);
         }
 
-        return record;
+        return counts;
+    }
+
+    /**
+     * Копирует результаты выполнения пакета в общий массив результатов
+     * @param batch результаты пакета
+     * @param counts общие результаты
+     * @param from позиция первого объекта пакета в общих результатах
+     * @return позиция, следующая за пакетом
+     */
+    private static int copyCounts(int[] batch, int[] counts, int from) {
+        if (batch == null) {
+            return from;
+        }
+        int length = Math.min(batch.length, counts.length - from);
+        System.arraycopy(batch, 0, counts, from, length);
+        return from + length;
     }
 
     @Override
     public T selectByKey(T key) {
-        List<T> result = null;
-        List<Field> keys = ReflectionHelper.getKeyFields(cls);
-        String selectQuery = getSelectQuery(keys);
-        try (PreparedStatement st = connection.prepareStatement(selectQuery)) {
-            for (int i = 0; i < keys.size(); ++i) {
-                keys.get(i).setAccessible(true);
-                st.setObject(i + 1, keys.get(i).get(key));
+        timer.start(DaoOperation.SELECT_BY_KEY);
+        try {
+            boolean cached = isCacheUsable();
+            EntityKey cacheKey = null;
+            long stamp = 0;
+            if (cached) {
+                cacheKey = metadata.keyOf(key);
+                T hit = cache.get(cacheKey);
+                if (hit != null) {
+                    timer.completed(1);
+                    return hit;
+                }
+                stamp = cache.stamp(cacheKey);
             }
-            ResultSet rs = st.executeQuery();
-            result = parseResultSet(rs);
-            st.close();
+
+            List<T> result = null;
+            String selectQuery = queries.getSelectQuery();
+            try (StatementCache.Lease lease = statements.prepare(connection, selectQuery)) {
+                PreparedStatement st = lease.getStatement();
+                int next = mapper.bindKeyColumns(st, 1, key);
+                timer.prepared(selectQuery, next - 1);
+                try (ResultSet rs = st.executeQuery()) {
+                    timer.executed();
+                    result = parseRows(rs);
+                    timer.mapped();
+                }
+            } catch (SQLException e) {
+                throw failure("select from", e);
+            }
+
+            if (result == null || result.size() != 1) {
+                timer.completed(0);
+                return null;
+            }
+            if (cached) {
+                cache.put(cacheKey, result.get(0), stamp);
+            }
+            timer.completed(1);
+            return result.get(0);
+        } finally {
+            timer.end();
+        }
+    }
+
+    @Override
+    public Map<EntityKey, T> selectByKeys(Collection<T> keys) {
+        timer.start(DaoOperation.SELECT_BY_KEYS);
+        Map<EntityKey, T> result = new LinkedHashMap<>();
+        boolean cached = isCacheUsable();
+        //ключи без повторов и без найденных в кэше объектов
+        Map<EntityKey, T> missing = new LinkedHashMap<>();
+        for (T key : keys) {
+            EntityKey entityKey = metadata.keyOf(key);
+            T hit = cached ? cache.get(entityKey) : null;
+            if (hit != null) {
+                result.put(entityKey, hit);
+            } else {
+                missing.put(entityKey, key);
+            }
+        }
+
+        List<T> chunk = new ArrayList<>(Math.min(lookupSize, missing.size()));
+        //отметки ключей группы в кэше, снятые до запроса
+        Map<EntityKey, Long> stamps = cached ? new HashMap<EntityKey, Long>() : null;
+        Iterator<Map.Entry<EntityKey, T>> iterator = missing.entrySet().iterator();
+        try {
+            while (iterator.hasNext()) {
+                chunk.clear();
+                while (chunk.size() < lookupSize && iterator.hasNext()) {
+                    Map.Entry<EntityKey, T> entry = iterator.next();
+                    chunk.add(entry.getValue());
+                    if (cached) {
+                        stamps.put(entry.getKey(), cache.stamp(entry.getKey()));
+                    }
+                }
+                selectChunk(chunk, result, stamps);
+            }
+            timer.completed(result.size());
         } catch (SQLException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+            throw failure("select from", e);
+        } finally {
+            timer.end();
         }
 
-        if (result == null || result.size() != 1) {
-            return null;
+        return result;
+    }
+
+    /**
+     * Выбирает объекты по группе ключей одним запросом
+     * @param keys объекты с заполненными ключевыми полями
+     * @param result найденные объекты по ключам
+     * @param stamps отметки ключей в кэше или null, если найденное не кэшируется
+     * @throws SQLException
+     */
+    private void selectChunk(List<T> keys, Map<EntityKey, T> result, Map<EntityKey, Long> stamps)
+            throws SQLException {
+        String query = queries.getSelectByKeysQuery(keys.size());
+        List<T> found;
+        try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+            PreparedStatement st = lease.getStatement();
+            int index = 1;
+            for (T key : keys) {
+                index = mapper.bindKeyColumns(st, index, key);
+            }
+            timer.prepared(query, index - 1);
+            try (ResultSet rs = st.executeQuery()) {
+                timer.executed();
+                found = parseRows(rs);
+                timer.mapped();
+            }
+        }
+
+        for (T object : found) {
+            EntityKey key = metadata.keyOf(object);
+            result.put(key, object);
+            Long stamp = stamps == null ? null : stamps.get(key);
+            if (stamp != null) {
+                cache.put(key, object, stamp);
+            }
         }
-        return result.get(0);
     }
 
     /**
-     * Получает список объектов класса T из rs
+     * Получает список объектов класса T из результата запроса
+     * всех колонок модели в их порядке
+     * @param rs результат запроса
+     * @return список объектов
+     * @throws SQLException
+     */
+    private List<T> parseRows(ResultSet rs) throws SQLException {
+        List<T> result = new ArrayList<T>();
+        while (rs.next()) {
+            result.add(mapper.read(rs));
+        }
+
+        return result;
+    }
+
+    /**
+     * Получает список объектов класса T из rs, сопоставляя колонки
+     * полям по именам. Подходит для результатов произвольных запросов.
      * @param rs результаты, полученные после выполнения некоторого запроса
      * @return
      */
     protected List<T> parseResultSet(ResultSet rs) {
         LinkedList<T> result = new LinkedList<T>();
         try {
-            ResultSetMetaData rsmd = rs.getMetaData();
-            String[] columnNames = new String[rsmd.getColumnCount()];
-            Field[] fields = new Field[columnNames.length];
-            for (int i = 1; i <= rsmd.getColumnCount(); ++i) {
-                columnNames[i - 1] = rsmd.getColumnName(i);
-                fields[i - 1] = ReflectionHelper.getField(cls,
-                        ReflectionHelper.camelize(columnNames[i - 1]));
-            }
+            ColumnMetadata[] fields = resolveColumns(rs.getMetaData());
             while (rs.next()) {
-                T t = (T) (cls.newInstance());
-                for (int i = 1; i <= fields.length; ++i) {
-                    fields[i - 1].setAccessible(true);
-                    fields[i - 1].set(t, rs.getObject(i));
-                }
-                result.add(t);
+                result.add(mapRow(rs, fields));
             }
         }
-        catch (SQLException e) {
-            e.printStackTrace();
-        } catch (NoSuchFieldException e) {
-            e.printStackTrace();
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+        catch (SQLException | NoSuchFieldException e) {
+            throw new DaoException("Can't read result into " + metadata.getEntityClass().getName(), e);
         }
 
         return result;
     }
 
     /**
-     * Получает запрос на получение объекта из таблицы
-     * @param keys список ключевых полей класса
-     * @return
+     * Сопоставляет колонкам результата запроса колонки модели класса
+     * @param rsmd описание колонок результата
+     * @return колонки модели в порядке колонок результата
+     * @throws SQLException
+     * @throws NoSuchFieldException если колонке результата нет соответствующего поля
+     */
+    private ColumnMetadata[] resolveColumns(ResultSetMetaData rsmd)
+            throws SQLException, NoSuchFieldException {
+        ColumnMetadata[] fields = new ColumnMetadata[rsmd.getColumnCount()];
+        for (int i = 1; i <= fields.length; ++i) {
+            String columnName = rsmd.getColumnName(i);
+            fields[i - 1] = metadata.getColumn(columnName);
+            if (fields[i - 1] == null) {
+                throw new NoSuchFieldException("There are no column " + columnName +
+                        " in class " + metadata.getEntityClass().getName());
+            }
+        }
+
+        return fields;
+    }
+
+    /**
+     * Создаёт объект из текущей строки результата запроса
+     * @param rs результат запроса
+     * @param fields колонки модели в порядке колонок результата
+     * @return объект
+     * @throws SQLException
+     */
+    private T mapRow(ResultSet rs, ColumnMetadata[] fields) throws SQLException {
+        T t = metadata.newInstance();
+        for (int i = 1; i <= fields.length; ++i) {
+            fields[i - 1].read(rs, i, t);
+        }
+
+        return t;
+    }
+
+    @Override
+    public List<T> select(Criteria<T> criteria) {
+        return select(criteria, new String[0]);
+    }
+
+    @Override
+    public List<T> select(Criteria<T> criteria, String... fields) {
+        final Projection projection = queries.getProjection(fields);
+        return selectRows(DaoOperation.SELECT, criteria, projection, new RowReader<T>() {
+            @Override
+            public T read(ResultSet rs) throws SQLException {
+                return projection == queries.getAllColumns() ? mapper.read(rs)
+                        : mapRow(rs, projection.getColumns());
+            }
+        });
+    }
+
+    @Override
+    public List<Object[]> selectTuples(Criteria<T> criteria, String... fields) {
+        Projection projection = queries.getProjection(fields);
+        return selectRows(DaoOperation.SELECT_TUPLES, criteria, projection, tupleReader(projection));
+    }
+
+    /** Создание результата из текущей строки результата запроса */
+    private interface RowReader<R> {
+        R read(ResultSet rs) throws SQLException;
+    }
+
+    /** Чтение строки целиком отображением класса */
+    private final RowReader<T> entityReader = new RowReader<T>() {
+        @Override
+        public T read(ResultSet rs) throws SQLException {
+            return mapper.read(rs);
+        }
+    };
+
+    /**
+     * Чтение значений колонок выборки в массив
+     * @param projection выбираемые колонки
      */
-    private String getSelectQuery(List<Field> keys) {
-        String query = "SELECT * FROM " + tableName + "\n WHERE ";
-        for (int i=0; i<keys.size(); ++i) {
-            query += ReflectionHelper.underScorize(keys.get(i).getName()) + " = ?";
-            query += i<keys.size()-1 ? " AND \n" : ";";
+    private static RowReader<Object[]> tupleReader(Projection projection) {
+        final ColumnMetadata[] columns = projection.getColumns();
+        return new RowReader<Object[]>() {
+            @Override
+            public Object[] read(ResultSet rs) throws SQLException {
+                Object[] tuple = new Object[columns.length];
+                for (int i = 0; i < tuple.length; ++i) {
+                    tuple[i] = columns[i].readValue(rs, i + 1);
+                }
+                return tuple;
+            }
+        };
+    }
+
+    /**
+     * Выполняет выборку по условиям
+     * @param operation операция, о которой сообщается получателю сведений
+     * @param criteria условия
+     * @param projection выбираемые колонки
+     * @param reader создание результата из строки
+     * @return результаты по строкам выборки
+     */
+    private <R> List<R> selectRows(DaoOperation operation, Criteria<T> criteria, Projection projection,
+                                   RowReader<R> reader) {
+        timer.start(operation);
+        List<R> result = new ArrayList<R>();
+        try {
+            String query = queries.getCriteriaQuery(criteria, projection);
+            try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+                PreparedStatement st = lease.getStatement();
+                int next = bindLimit(st, bindCriteria(st, criteria), criteria);
+                timer.prepared(query, next - 1);
+                try (ResultSet rs = st.executeQuery()) {
+                    timer.executed();
+                    while (rs.next()) {
+                        result.add(reader.read(rs));
+                    }
+                    timer.mapped();
+                }
+            } catch (SQLException e) {
+                throw failure("select from", e);
+            }
+            timer.completed(result.size());
+        } finally {
+            timer.end();
+        }
+
+        return result;
+    }
+
+    @Override
+    public long count(Criteria<T> criteria) {
+        timer.start(DaoOperation.COUNT);
+        try {
+            String query = queries.getCountQuery(criteria);
+            try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+                PreparedStatement st = lease.getStatement();
+                int next = bindCriteria(st, criteria);
+                timer.prepared(query, next - 1);
+                try (ResultSet rs = st.executeQuery()) {
+                    timer.executed();
+                    rs.next();
+                    long count = rs.getLong(1);
+                    timer.mapped();
+                    timer.completed(1);
+                    return count;
+                }
+            } catch (SQLException e) {
+                throw failure("count", e);
+            }
+        } finally {
+            timer.end();
+        }
+    }
+
+    /**
+     * Записывает значения условий в параметры запроса
+     * @param statement запрос
+     * @param criteria условия
+     * @return номер параметра, следующего за последним записанным
+     * @throws SQLException
+     * @throws IllegalArgumentException если значение не подходит к типу поля
+     */
+    private int bindCriteria(PreparedStatement statement, Criteria<T> criteria) throws SQLException {
+        int index = 1;
+        for (Criteria.Condition condition : criteria.getConditions()) {
+            ColumnMetadata column = queries.getCriteriaColumn(condition.field);
+            for (Object value : condition.values) {
+                if (!isAssignable(column.getType(), value)) {
+                    throw new IllegalArgumentException("Value " + value + " of " + value.getClass().getName() +
+                            " doesn't match field " + condition.field + " of " + column.getType().getName());
+                }
+                statement.setObject(index++, value);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Записывает ограничение и смещение выборки в параметры запроса
+     * @param statement запрос
+     * @param index номер параметра LIMIT
+     * @param criteria условия
+     * @return номер параметра, следующего за последним записанным
+     * @throws SQLException
+     */
+    private static int bindLimit(PreparedStatement statement, int index, Criteria<?> criteria)
+            throws SQLException {
+        if (criteria.getLimit() >= 0 || criteria.getOffset() > 0) {
+            //OFFSET без LIMIT в MySQL недопустим; H2 не принимает LIMIT больше int
+            statement.setLong(index++, criteria.getLimit() >= 0 ? criteria.getLimit() : Integer.MAX_VALUE);
+        }
+        if (criteria.getOffset() > 0) {
+            statement.setLong(index++, criteria.getOffset());
+        }
+        return index;
+    }
+
+    /**
+     * Подходит ли значение условия к типу поля. Числа сравниваются
+     * с числовыми полями любого типа.
+     * @param type тип поля
+     * @param value значение
+     * @return подходит ли
+     */
+    private static boolean isAssignable(Class<?> type, Object value) {
+        if (value instanceof Number) {
+            return Number.class.isAssignableFrom(type) ||
+                    (type.isPrimitive() && type != boolean.class && type != char.class);
+        }
+        if (type == boolean.class) {
+            return value instanceof Boolean;
+        }
+        if (type == char.class) {
+            return value instanceof Character;
+        }
+        return type.isInstance(value);
+    }
+
+    @Override
+    public Page<T> selectPage(String token, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        timer.start(DaoOperation.SELECT_PAGE);
+        try {
+            return selectPage(token, pageSize, metadata.getKeyColumns());
+        } finally {
+            timer.end();
         }
+    }
+
+    private Page<T> selectPage(String token, int pageSize, List<ColumnMetadata> keys) {
+        EntityKey after = token == null ? null
+                : PageToken.decode(token, queries.getTableName(), keys);
 
-        return query;
+        List<T> items = new ArrayList<T>();
+        String query = after == null ? queries.getFirstPageQuery() : queries.getNextPageQuery();
+        try (StatementCache.Lease lease = statements.prepare(connection, query)) {
+            PreparedStatement st = lease.getStatement();
+            int index = 1;
+            if (after != null) {
+                if (keys.size() > 1) {
+                    st.setObject(index++, after.get(0));
+                }
+                for (int i = 0; i < keys.size(); ++i) {
+                    for (int j = 0; j <= i; ++j) {
+                        st.setObject(index++, after.get(j));
+                    }
+                }
+            }
+            //лишняя строка показывает, есть ли следующая страница
+            st.setInt(index, pageSize + 1);
+            timer.prepared(query, index);
+            try (ResultSet rs = st.executeQuery()) {
+                timer.executed();
+                items = parseRows(rs);
+                timer.mapped();
+            }
+        } catch (SQLException e) {
+            throw failure("select from", e);
+        }
+
+        if (items.size() <= pageSize) {
+            timer.completed(items.size());
+            return new Page<T>(items, null);
+        }
+        items = new ArrayList<T>(items.subList(0, pageSize));
+        timer.completed(pageSize);
+        EntityKey last = metadata.keyOf(items.get(pageSize - 1));
+        return new Page<T>(items, PageToken.encode(last, queries.getTableName(), keys));
     }
 
     @Override
     public List<T> selectAll() {
+        timer.start(DaoOperation.SELECT_ALL);
         List<T> result = new ArrayList<T>();
-        String selectAllQuery = getSelectAllQuery();
-        try (PreparedStatement st = connection.prepareStatement(selectAllQuery)) {
-            ResultSet rs = st.executeQuery();
-            result = parseResultSet(rs);
-            st.close();
+        String selectAllQuery = queries.getSelectAllQuery();
+        try (StatementCache.Lease lease = statements.prepare(connection, selectAllQuery)) {
+            timer.prepared(selectAllQuery, 0);
+            try (ResultSet rs = lease.getStatement().executeQuery()) {
+                timer.executed();
+                result = parseRows(rs);
+                timer.mapped();
+            }
+            timer.completed(result.size());
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw failure("select from", e);
+        } finally {
+            timer.end();
         }
 
         return result;
     }
 
+    @Override
+    public CloseableIterator<T> iterator() {
+        return openIterator(queries.getSelectAllQuery(), null, entityReader);
+    }
+
+    @Override
+    public CloseableIterator<T> iterator(Criteria<T> criteria) {
+        return openIterator(queries.getCriteriaQuery(criteria, queries.getAllColumns()), criteria, entityReader);
+    }
+
+    @Override
+    public CloseableIterator<Object[]> tupleIterator(Criteria<T> criteria, String... fields) {
+        Projection projection = queries.getProjection(fields);
+        return openIterator(queries.getCriteriaQuery(criteria, projection), criteria, tupleReader(projection));
+    }
+
     /**
-     * Запрос на получение списка всех объектов из таблицы
-     * @return
+     * Выполняет выборку отдельным некэшируемым запросом,
+     * результат которого читается по мере обхода
+     * @param query запрос
+     * @param criteria условия, значения которых - параметры запроса, или null
+     * @param reader создание результата из строки
+     * @return итератор по результатам выборки
+     */
+    private <R> CloseableIterator<R> openIterator(String query, Criteria<T> criteria, RowReader<R> reader) {
+        //обход живёт дольше вызова, поэтому засекается отдельно от операций dao
+        OperationTimer scan = new OperationTimer(metadata.getEntityClass(), timer.getListener());
+        scan.start(DaoOperation.ITERATE);
+        PreparedStatement st = null;
+        try {
+            st = connection.prepareStatement(query,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if (fetchSize != 0) {
+                st.setFetchSize(fetchSize);
+            }
+            int next = 1;
+            if (criteria != null) {
+                next = bindLimit(st, bindCriteria(st, criteria), criteria);
+            }
+            scan.prepared(query, next - 1);
+            ResultSet rs = st.executeQuery();
+            scan.executed();
+            return new ResultSetIterator<>(st, rs, scan, reader);
+        } catch (SQLException e) {
+            DaoException failure = scan.failed(failure("select from", e));
+            close(st, failure);
+            scan.end();
+            throw failure;
+        } catch (RuntimeException e) {
+            close(st, e);
+            scan.end();
+            throw e;
+        }
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return stream(iterator());
+    }
+
+    @Override
+    public Stream<T> stream(Criteria<T> criteria) {
+        return stream(iterator(criteria));
+    }
+
+    /**
+     * Оборачивает итератор в поток, закрывающий итератор при закрытии
+     * @param iterator итератор по объектам выборки
+     * @return поток объектов
      */
-    private String getSelectAllQuery () {
-        return "SELECT * FROM " + tableName + ";";
+    private static <T> Stream<T> stream(CloseableIterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        try (CloseableIterator<T> iterator = iterator()) {
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+            }
+        }
+    }
+
+    /**
+     * Оборачивает ошибку БД в DaoException
+     * @param action действие над таблицей
+     * @param e ошибка
+     * @return исключение для выбрасывания
+     */
+    protected DaoException failure(String action, SQLException e) {
+        return timer.failed(new DaoException("Can't " + action + " " + queries.getTableName(), e));
+    }
+
+    /**
+     * Закрывает запрос после ошибки; ошибка закрытия
+     * добавляется к ней как подавленная
+     * @param statement запрос или null
+     * @param error ошибка, которая будет выброшена
+     */
+    private static void close(Statement statement, Throwable error) {
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                error.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Итератор, создающий результаты по мере чтения строк результата запроса.
+     * Закрывает запрос и результат по окончании строк или при вызове close.
+     * Время между вызовами hasNext не засекается: обход сообщается
+     * при закрытии, а чтение строк считается фазой чтения результата.
+     */
+    private class ResultSetIterator<R> implements CloseableIterator<R> {
+        private final PreparedStatement statement;
+        private final ResultSet rs;
+        private final OperationTimer scan;
+        private final RowReader<R> reader;
+        private R next;
+        private int rows;
+        //ошибка чтения, уже выброшенная из hasNext
+        private DaoException failure;
+        private boolean closed;
+
+        ResultSetIterator(PreparedStatement statement, ResultSet rs, OperationTimer scan, RowReader<R> reader) {
+            this.statement = statement;
+            this.rs = rs;
+            this.scan = scan;
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            if (closed) {
+                return false;
+            }
+            try {
+                scan.resume();
+                if (rs.next()) {
+                    next = reader.read(rs);
+                    scan.mapped();
+                    ++rows;
+                    return true;
+                }
+                scan.mapped();
+            } catch (SQLException e) {
+                failure = scan.failed(new DaoException("Can't read from " + queries.getTableName(), e));
+                close();
+                throw failure;
+            }
+            close();
+            return false;
+        }
+
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            R result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Закрывает результат и запрос. Ошибка закрытия после ошибки чтения
+         * добавляется к ней как подавленная, иначе выбрасывается как DaoException
+         * и сообщается получателю как ошибка обхода.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            SQLException error = null;
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                error = e;
+            }
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+            try {
+                if (failure != null) {
+                    if (error != null) {
+                        failure.addSuppressed(error);
+                    }
+                } else if (error != null) {
+                    failure = scan.failed(new DaoException("Can't close result of " + queries.getTableName(), error));
+                    throw failure;
+                } else {
+                    scan.completed(rows);
+                }
+            } finally {
+                scan.end();
+            }
+        }
     }
 }
@@ -0,0 +1,278 @@
+package dao;
+
+import dialects.Dialect;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.EntityMetadata;
+import metrics.DaoListener;
+import pool.ConnectionPool;
+import pool.PoolConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Общая часть фабрик dao над пулом подключений к БД с заданным диалектом.
+ * Таблицы классов создаются в схеме фабрики при первом запросе dao класса.
+ */
+public abstract class JdbcDaoFactory implements DaoFactory<Connection> {
+    private final ConcurrentMap<Class<?>, DaoCreator<Connection>> creators =
+            new ConcurrentHashMap<>(); //"Создаватели" dao зарегистрированных классов
+    private final Dialect dialect;//Диалект БД
+    private final String schema;//Схема, в которой создаются таблицы
+    private int batchSize = GenericDao.DEFAULT_BATCH_SIZE;//Размер пакета пакетных операций
+    private boolean multiRowInsert;//Вставлять ли пакеты одним запросом INSERT ... VALUES (...), (...)
+    private int fetchSize;//Число строк, получаемых за раз при потоковом чтении
+    private int lookupSize = GenericDao.DEFAULT_LOOKUP_SIZE;//Число ключей в одном запросе selectByKeys
+    private int statementCacheSize = StatementCache.DEFAULT_MAX_SIZE;//Размер кэша запросов подключения
+    private DaoListener listener;//Получатель сведений об операциях создаваемых dao
+    private final PoolConfig poolConfig;//Настройки пула подключений
+    private volatile ConnectionPool pool;//Пул подключений, открывается при первом обращении
+
+    /**
+     * @param poolConfig настройки пула подключений
+     * @param dialect диалект БД
+     * @param schema схема, в которой создаются таблицы
+     */
+    protected JdbcDaoFactory(PoolConfig poolConfig, Dialect dialect, String schema) {
+        this.poolConfig = poolConfig;
+        this.dialect = dialect;
+        this.schema = schema;
+    }
+
+    /**
+     * получает подключение к базе из пула. Закрытие подключения
+     * возвращает его в пул.
+     * @return
+     * @throws SQLException если свободное подключение не дождались
+     * или к базе не удалось подключиться
+     */
+    @Override
+    public Connection getContext() throws SQLException {
+        return getPool().getConnection();
+    }
+
+    /**
+     * Возвращает пул подключений фабрики, открывая его при первом обращении
+     * @return пул подключений
+     * @throws SQLException если не удалось открыть minSize подключений
+     */
+    public ConnectionPool getPool() throws SQLException {
+        ConnectionPool result = pool;
+        if (result == null) {
+            synchronized (this) {
+                result = pool;
+                if (result == null) {
+                    result = new ConnectionPool(poolConfig);
+                    pool = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Закрывает пул подключений
+     */
+    public synchronized void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> ReflectionJdbcDao<T> getDao(final Connection connection, final Class<T> daoClass)
+            throws SQLException, NoTableTitleException, NoKeyFieldsException{
+
+        DaoCreator<Connection> creator = creators.get(daoClass);
+        if (creator == null) {
+            creator = register(connection, daoClass);
+        }
+
+        //создатель класса строит dao его объектов
+        return (ReflectionJdbcDao<T>) creator.create(connection);
+    }
+
+    /**
+     * Создаёт dao класса над подключением. Настройки фабрики
+     * применяются к нему после создания.
+     * @param connection подключение
+     * @param metadata модель класса
+     * @return dao
+     */
+    protected GenericDao<?> newDao(Connection connection, EntityMetadata<?> metadata) {
+        return new GenericDao<>(connection, metadata, dialect, schema);
+    }
+
+    /**
+     * Возвращает асинхронный dao, выполняющий не больше операций
+     * одновременно, чем подключений в пуле фабрики
+     * @param cls класс объектов
+     * @return асинхронный dao; его надо закрыть после использования
+     */
+    public <T> AsyncDao<T> getAsyncDao(Class<T> cls) {
+        return new AsyncDao<>(this, cls, poolConfig.getMaxSize());
+    }
+
+    /**
+     * Возвращает параллельное чтение таблицы класса, делящее её
+     * на столько диапазонов, сколько процессоров, но не больше,
+     * чем подключений в пуле фабрики
+     * @param cls класс объектов
+     * @return параллельное чтение таблицы
+     * @throws NoTableTitleException
+     * @throws NoKeyFieldsException
+     */
+    public <T> ParallelScan<T> getParallelScan(Class<T> cls) throws NoTableTitleException, NoKeyFieldsException {
+        int partitions = Math.min(Runtime.getRuntime().availableProcessors(), poolConfig.getMaxSize());
+        return new ParallelScan<>(this, cls, partitions);
+    }
+
+    /**
+     * Возвращает буфер отложенной записи изменений объектов класса
+     * с настройками по умолчанию
+     * @param cls класс объектов
+     * @return буфер; его надо закрыть, чтобы записать оставшиеся изменения
+     * @throws NoTableTitleException
+     * @throws NoKeyFieldsException
+     */
+    public <T> WriteBehindDao<T> getWriteBehindDao(Class<T> cls) throws NoTableTitleException, NoKeyFieldsException {
+        return new WriteBehindDao<>(this, cls, WriteBehindDao.DEFAULT_FLUSH_SIZE,
+                WriteBehindDao.DEFAULT_FLUSH_INTERVAL_MILLIS, WriteBehindDao.DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Начинает единицу работы над подключением из пула фабрики
+     * @return единица работы; её надо закрыть, чтобы вернуть подключение
+     */
+    public UnitOfWork getUnitOfWork() {
+        return new UnitOfWork(this);
+    }
+
+    /**
+     * Регистрирует класс: строит его модель, проверяя наличие имени таблицы
+     * и ключей, и создаёт таблицу. Выполняется один раз на класс, даже если
+     * getDao для него вызывают одновременно несколько потоков.
+     * @param connection подключение, через которое создаётся таблица
+     * @param daoClass класс
+     * @return "создаватель" dao класса
+     * @throws SQLException если не удалось создать таблицу
+     * @throws NoTableTitleException
+     * @throws NoKeyFieldsException
+     */
+    private synchronized DaoCreator<Connection> register(Connection connection, Class<?> daoClass)
+            throws SQLException, NoTableTitleException, NoKeyFieldsException {
+        DaoCreator<Connection> creator = creators.get(daoClass);
+        if (creator != null) {
+            return creator;
+        }
+
+        final EntityMetadata<?> metadata = EntityMetadata.forClass(daoClass);
+        execute(connection, EntityQueries.forEntity(metadata, dialect, schema).getCreateTableQuery());
+        creator = new DaoCreator<Connection>() {
+            @Override
+            public ReflectionJdbcDao create(Connection context) {
+                GenericDao<?> dao = newDao(context, metadata);
+                dao.setBatchSize(batchSize);
+                dao.setMultiRowInsert(multiRowInsert);
+                dao.setFetchSize(fetchSize);
+                dao.setLookupSize(lookupSize);
+                dao.getStatementCache().setMaxSize(statementCacheSize);
+                dao.setListener(listener);
+                return dao;
+            }
+        };
+        creators.put(daoClass, creator);
+
+        return creator;
+    }
+
+    /**
+     * Создаёт схему фабрики, если её ещё нет
+     * @throws SQLException если схему не удалось создать
+     */
+    protected void createSchema() throws SQLException {
+        try (Connection connection = getContext()) {
+            execute(connection, dialect.getCreateSchemaQuery(dialect.quote(schema)));
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(sql);
+        }
+    }
+
+    /** Диалект БД фабрики */
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    /** Схема, в которой создаются таблицы */
+    public String getSchema() {
+        return schema;
+    }
+
+    /**
+     * Задаёт размер пакета для пакетных операций создаваемых dao
+     * @param batchSize размер пакета
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Включает у создаваемых dao пакетную вставку одним запросом
+     * INSERT ... VALUES (...), (...)
+     * @param multiRowInsert вставлять ли пакет одним запросом
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    /**
+     * Задаёт у создаваемых dao число строк, получаемых за раз
+     * при потоковом чтении
+     * @param fetchSize число строк
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Задаёт у создаваемых dao наибольшее число ключей в одном запросе selectByKeys
+     * @param lookupSize число ключей
+     */
+    public void setLookupSize(int lookupSize) {
+        this.lookupSize = lookupSize;
+    }
+
+    /**
+     * Задаёт размер кэша подготовленных запросов подключений,
+     * с которыми создаются dao. 0 отключает кэширование.
+     * @param statementCacheSize число запросов в кэше одного подключения
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Задаёт получателя сведений об операциях dao, создаваемых после вызова.
+     * Получатель вызывается из потоков dao и должен быть потокобезопасным
+     * (см. MetricsRegistry).
+     * @param listener получатель или null, чтобы не засекать операции
+     */
+    public void setListener(DaoListener listener) {
+        this.listener = listener;
+    }
+
+    public DaoListener getListener() {
+        return listener;
+    }
+}
@@ -0,0 +1,38 @@
+package dao;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Страница объектов, выбранных по порядку ключевых полей
+ * (см. ReflectionJdbcDao.selectPage)
+ *
+ * @param <T> класс объектов
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextToken;
+
+    Page(List<T> items, String nextToken) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextToken = nextToken;
+    }
+
+    /** Объекты страницы в порядке ключевых полей */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Метка продолжения для получения следующей страницы
+     * @return метка или null, если страница последняя
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    /** Есть ли за этой страницей следующая */
+    public boolean hasNext() {
+        return nextToken != null;
+    }
+}
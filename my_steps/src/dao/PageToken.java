@@ -0,0 +1,136 @@
+package dao;
+
+import metadata.ColumnMetadata;
+import metadata.EntityKey;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Кодирование значений ключевых полей последнего объекта страницы
+ * в метку продолжения и обратно. Метка - Base64 от значений ключевых
+ * колонок, записанных по их типам, и отпечатка таблицы,
+ * по которому отвергаются метки другой таблицы.
+ */
+final class PageToken {
+    private static final byte VERSION = 1;
+
+    private PageToken() {
+    }
+
+    /**
+     * Кодирует ключ в метку
+     * @param key значения ключевых колонок
+     * @param table полное имя таблицы
+     * @param keys ключевые колонки
+     * @return метка
+     */
+    static String encode(EntityKey key, String table, List<ColumnMetadata> keys) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(fingerprint(table, keys));
+            for (int i = 0; i < keys.size(); ++i) {
+                write(out, keys.get(i).getType(), key.get(i));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't encode page token", e);
+        }
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Раскодирует метку в ключ
+     * @param token метка
+     * @param table полное имя таблицы
+     * @param keys ключевые колонки
+     * @return значения ключевых колонок
+     * @throws IllegalArgumentException если метка повреждена или получена для другой таблицы
+     */
+    static EntityKey decode(String token, String table, List<ColumnMetadata> keys) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page token: " + token, e);
+        }
+
+        Object[] values = new Object[keys.size()];
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != VERSION || in.readInt() != fingerprint(table, keys)) {
+                throw new IllegalArgumentException("Page token doesn't belong to " + table + ": " + token);
+            }
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = read(in, keys.get(i).getType());
+            }
+            if (in.read() != -1) {
+                throw new IllegalArgumentException("Malformed page token: " + token);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed page token: " + token, e);
+        }
+
+        return new EntityKey(values);
+    }
+
+    private static int fingerprint(String table, List<ColumnMetadata> keys) {
+        int hash = table.hashCode();
+        for (ColumnMetadata key : keys) {
+            hash = 31 * hash + key.getColumnName().hashCode();
+        }
+        return hash;
+    }
+
+    private static void write(DataOutputStream out, Class<?> type, Object value) throws IOException {
+        if (type == String.class) {
+            out.writeUTF((String) value);
+        } else if (type == int.class || type == Integer.class) {
+            out.writeInt((Integer) value);
+        } else if (type == long.class || type == Long.class) {
+            out.writeLong((Long) value);
+        } else if (type == short.class || type == Short.class) {
+            out.writeShort((Short) value);
+        } else if (type == byte.class || type == Byte.class) {
+            out.writeByte((Byte) value);
+        } else if (type == double.class || type == Double.class) {
+            out.writeDouble((Double) value);
+        } else if (type == float.class || type == Float.class) {
+            out.writeFloat((Float) value);
+        } else if (type == boolean.class || type == Boolean.class) {
+            out.writeBoolean((Boolean) value);
+        } else if (type == char.class || type == Character.class) {
+            out.writeChar((Character) value);
+        } else {
+            throw new IllegalArgumentException("Unsupported key type " + type.getName());
+        }
+    }
+
+    private static Object read(DataInputStream in, Class<?> type) throws IOException {
+        if (type == String.class) {
+            return in.readUTF();
+        } else if (type == int.class || type == Integer.class) {
+            return in.readInt();
+        } else if (type == long.class || type == Long.class) {
+            return in.readLong();
+        } else if (type == short.class || type == Short.class) {
+            return in.readShort();
+        } else if (type == byte.class || type == Byte.class) {
+            return in.readByte();
+        } else if (type == double.class || type == Double.class) {
+            return in.readDouble();
+        } else if (type == float.class || type == Float.class) {
+            return in.readFloat();
+        } else if (type == boolean.class || type == Boolean.class) {
+            return in.readBoolean();
+        } else if (type == char.class || type == Character.class) {
+            return in.readChar();
+        }
+        throw new IllegalArgumentException("Unsupported key type " + type.getName());
+    }
+}
@@ -0,0 +1,272 @@
+package dao;
+
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.ColumnMetadata;
+import metadata.EntityMetadata;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Параллельное чтение всей таблицы. Таблица делится на диапазоны
+ * значений первого ключевого поля с примерно равным числом записей;
+ * границы находятся запросом COUNT(*) и одним упорядоченным проходом
+ * по значениям этого поля, который заканчивается на последней границе.
+ * Каждый диапазон читается по мере обхода через своё подключение фабрики,
+ * так что диапазоны читаются одновременно столькими потоками,
+ * сколько их у параллельного потока и подключений у пула.
+ *
+ * @param <T> класс объектов
+ */
+public class ParallelScan<T> {
+    private final DaoFactory<Connection> factory;
+    private final EntityMetadata<T> metadata;
+    private final int partitions;
+
+    /**
+     * @param factory фабрика подключений и dao
+     * @param cls класс объектов
+     * @param partitions наибольшее число диапазонов
+     * @throws NoTableTitleException
+     * @throws NoKeyFieldsException
+     */
+    public ParallelScan(DaoFactory<Connection> factory, Class<T> cls, int partitions)
+            throws NoTableTitleException, NoKeyFieldsException {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partition count must be positive: " + partitions);
+        }
+        this.factory = factory;
+        this.metadata = EntityMetadata.forClass(cls);
+        this.partitions = partitions;
+    }
+
+    /**
+     * Параллельный поток всех объектов таблицы. В пределах диапазона
+     * объекты идут в порядке ключевых полей, диапазоны - по возрастанию.
+     * Поток удерживает подключения и должен быть закрыт.
+     * @return поток объектов
+     * @throws DaoException если не удалось найти границы диапазонов
+     */
+    public Stream<T> stream() {
+        long[] total = new long[1];
+        List<Criteria<T>> ranges = split(total);
+        final Set<PartitionSpliterator> opened =
+                Collections.newSetFromMap(new ConcurrentHashMap<PartitionSpliterator, Boolean>());
+        PartitionSpliterator root = new PartitionSpliterator(ranges, 0, ranges.size(),
+                Math.max(1, total[0] / ranges.size()), opened);
+
+        return StreamSupport.stream(root, true).onClose(new Runnable() {
+            @Override
+            public void run() {
+                RuntimeException error = null;
+                for (PartitionSpliterator spliterator : opened) {
+                    try {
+                        spliterator.closeCurrent();
+                    } catch (RuntimeException e) {
+                        if (error == null) {
+                            error = e;
+                        } else {
+                            error.addSuppressed(e);
+                        }
+                    }
+                }
+                if (error != null) {
+                    throw error;
+                }
+            }
+        });
+    }
+
+    /**
+     * Передаёт все объекты таблицы обработчику из нескольких потоков
+     * одновременно; обработчик должен быть потокобезопасным
+     * @param action обработчик объектов
+     */
+    public void forEach(Consumer<? super T> action) {
+        try (Stream<T> stream = stream()) {
+            stream.forEach(action);
+        }
+    }
+
+    /**
+     * Делит таблицу на диапазоны первого ключевого поля
+     * @param total сюда записывается число записей таблицы
+     * @return условия выборки диапазонов по возрастанию
+     */
+    private List<Criteria<T>> split(long[] total) {
+        String leading = metadata.getKeyColumns().get(0).getFieldName();
+        List<Object> bounds = new ArrayList<>();
+        try (Connection connection = factory.getContext()) {
+            ReflectionJdbcDao<T> dao = getDao(connection);
+            total[0] = dao.count(new Criteria<T>());
+            //граница i-го диапазона - значение в строке с номером total * i / partitions
+            int next = 1;
+            long row = 0;
+            try (CloseableIterator<Object[]> values = dao.tupleIterator(new Criteria<T>().orderBy(leading), leading)) {
+                while (next < partitions && values.hasNext()) {
+                    Object value = values.next()[0];
+                    while (next < partitions && total[0] * next / partitions == row) {
+                        //при повторах значений поля соседние границы могут совпасть
+                        if (bounds.isEmpty() || !bounds.get(bounds.size() - 1).equals(value)) {
+                            bounds.add(value);
+                        }
+                        ++next;
+                    }
+                    ++row;
+                }
+            }
+        } catch (SQLException e) {
+            throw new DaoException("Can't split " + metadata.getTableName() + " into partitions", e);
+        }
+
+        List<Criteria<T>> ranges = new ArrayList<>(bounds.size() + 1);
+        for (int i = 0; i <= bounds.size(); ++i) {
+            Criteria<T> range = new Criteria<T>();
+            if (i > 0) {
+                range.ge(leading, bounds.get(i - 1));
+            }
+            if (i < bounds.size()) {
+                range.lt(leading, bounds.get(i));
+            }
+            for (ColumnMetadata key : metadata.getKeyColumns()) {
+                range.orderBy(key.getFieldName());
+            }
+            ranges.add(range);
+        }
+
+        return ranges;
+    }
+
+    private ReflectionJdbcDao<T> getDao(Connection connection) {
+        try {
+            return factory.getDao(connection, metadata.getEntityClass());
+        } catch (SQLException | NoTableTitleException | NoKeyFieldsException e) {
+            throw new DaoException("Can't create dao for " + metadata.getEntityClass().getName(), e);
+        }
+    }
+
+    /**
+     * Обход диапазонов с from по to. Делится пополам по диапазонам,
+     * пока ни один из них не начат; каждый диапазон читается
+     * через отдельное подключение, открываемое при начале его чтения.
+     */
+    private class PartitionSpliterator implements Spliterator<T> {
+        private final List<Criteria<T>> ranges;
+        private int from;
+        private final int to;
+        private final long rowsPerRange;
+        private final Set<PartitionSpliterator> opened;
+        private Connection connection;
+        private CloseableIterator<T> current;
+
+        PartitionSpliterator(List<Criteria<T>> ranges, int from, int to, long rowsPerRange,
+                             Set<PartitionSpliterator> opened) {
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+            this.rowsPerRange = rowsPerRange;
+            this.opened = opened;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                while (true) {
+                    if (current == null) {
+                        if (from >= to) {
+                            return false;
+                        }
+                        open(ranges.get(from++));
+                    }
+                    if (current.hasNext()) {
+                        action.accept(current.next());
+                        return true;
+                    }
+                    closeCurrent();
+                }
+            } catch (RuntimeException e) {
+                try {
+                    closeCurrent();
+                } catch (RuntimeException closing) {
+                    e.addSuppressed(closing);
+                }
+                throw e;
+            }
+        }
+
+        private void open(Criteria<T> range) {
+            opened.add(this);
+            try {
+                connection = factory.getContext();
+            } catch (SQLException e) {
+                throw new DaoException("Can't get connection for " + metadata.getTableName(), e);
+            }
+            current = getDao(connection).iterator(range);
+        }
+
+        /**
+         * Закрывает читаемый диапазон и его подключение
+         * @throws DaoException если их не удалось закрыть
+         */
+        void closeCurrent() {
+            RuntimeException error = null;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                current = null;
+            }
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    DaoException failure = new DaoException("Can't close connection for " + metadata.getTableName(), e);
+                    if (error == null) {
+                        error = failure;
+                    } else {
+                        error.addSuppressed(failure);
+                    }
+                }
+                connection = null;
+            }
+            opened.remove(this);
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (current != null || to - from < 2) {
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            PartitionSpliterator prefix = new PartitionSpliterator(ranges, from, middle, rowsPerRange, opened);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (to - from + (current == null ? 0 : 1)) * rowsPerRange;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package dao;
+
+import metadata.EntityKey;
+import metadata.EntityMetadata;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Накопленные, но ещё не записанные в БД изменения объектов одного класса.
+ * Изменения одного объекта (по значениям ключевых полей) сводятся
+ * к одному итоговому: вставка и обновление дают вставку последнего
+ * состояния, вставка и удаление взаимно уничтожаются, удаление и вставка
+ * дают замену (удаление, затем вставку). Хранятся копии объектов,
+ * поэтому их изменение после регистрации не влияет на записываемое.
+ * Не потокобезопасен.
+ *
+ * @param <T> класс объектов
+ */
+public class PendingChanges<T> {
+    /** Итоговое изменение объекта */
+    enum Kind { INSERT, UPDATE, DELETE, REPLACE }
+
+    /** Изменение объекта и его последнее состояние */
+    private static class Change<T> {
+        final Kind kind;
+        final T entity;
+
+        Change(Kind kind, T entity) {
+            this.kind = kind;
+            this.entity = entity;
+        }
+    }
+
+    private final EntityMetadata<T> metadata;
+    private final LinkedHashMap<EntityKey, Change<T>> changes = new LinkedHashMap<>();
+
+    public PendingChanges(EntityMetadata<T> metadata) {
+        this.metadata = metadata;
+    }
+
+    /**
+     * Регистрирует вставку объекта
+     * @param entity объект
+     */
+    public void insert(T entity) {
+        EntityKey key = metadata.keyOf(entity);
+        Change<T> previous = changes.get(key);
+        Kind kind = Kind.INSERT;
+        if (previous != null && (previous.kind == Kind.DELETE || previous.kind == Kind.REPLACE)) {
+            kind = Kind.REPLACE;
+        } else if (previous != null && previous.kind == Kind.UPDATE) {
+            //запись уже есть, вставка свелась бы к ошибке; записывается последнее состояние
+            kind = Kind.UPDATE;
+        }
+        changes.put(key, new Change<>(kind, metadata.copy(entity)));
+    }
+
+    /**
+     * Регистрирует обновление объекта
+     * @param entity объект
+     */
+    public void update(T entity) {
+        EntityKey key = metadata.keyOf(entity);
+        Change<T> previous = changes.get(key);
+        if (previous != null && previous.kind == Kind.DELETE) {
+            //удалённую запись обновить нельзя
+            return;
+        }
+        Kind kind = previous == null ? Kind.UPDATE : previous.kind;
+        changes.put(key, new Change<>(kind, metadata.copy(entity)));
+    }
+
+    /**
+     * Регистрирует удаление объекта
+     * @param key объект с заполненными ключевыми полями
+     */
+    public void delete(T key) {
+        EntityKey entityKey = metadata.keyOf(key);
+        Change<T> previous = changes.get(entityKey);
+        if (previous != null && previous.kind == Kind.INSERT) {
+            changes.remove(entityKey);
+        } else {
+            changes.put(entityKey, new Change<>(Kind.DELETE, metadata.copy(key)));
+        }
+    }
+
+    /**
+     * Есть ли изменение объекта с таким ключом
+     * @param key значения ключевых полей
+     * @return есть ли изменение
+     */
+    public boolean contains(EntityKey key) {
+        return changes.containsKey(key);
+    }
+
+    /** Число изменённых объектов */
+    public int size() {
+        return changes.size();
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /** Удаляет все изменения */
+    public void clear() {
+        changes.clear();
+    }
+
+    /** Объекты, записи которых надо удалить, в т.ч. перед заменой */
+    public List<T> getDeletes() {
+        return select(Kind.DELETE, Kind.REPLACE);
+    }
+
+    /** Объекты, которые надо вставить, в т.ч. после удаления при замене */
+    public List<T> getInserts() {
+        return select(Kind.INSERT, Kind.REPLACE);
+    }
+
+    /** Объекты, записи которых надо обновить */
+    public List<T> getUpdates() {
+        return select(Kind.UPDATE, Kind.UPDATE);
+    }
+
+    private List<T> select(Kind first, Kind second) {
+        List<T> result = new ArrayList<>();
+        for (Map.Entry<EntityKey, Change<T>> entry : changes.entrySet()) {
+            Kind kind = entry.getValue().kind;
+            if (kind == first || kind == second) {
+                result.add(entry.getValue().entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Записывает изменения через dao: удаления, затем вставки, затем обновления.
+     * Изменения при этом не удаляются.
+     * @param dao dao, через подключение которого выполняется запись
+     * @throws exceptions.DaoException при ошибке записи
+     */
+    public void writeTo(ReflectionJdbcDao<T> dao) {
+        List<T> deletes = getDeletes();
+        if (!deletes.isEmpty()) {
+            dao.deleteAllByKeys(deletes);
+        }
+        List<T> inserts = getInserts();
+        if (!inserts.isEmpty()) {
+            dao.insertAll(inserts);
+        }
+        List<T> updates = getUpdates();
+        if (!updates.isEmpty()) {
+            dao.updateAll(updates);
+        }
+    }
+
+    public EntityMetadata<T> getMetadata() {
+        return metadata;
+    }
+}
@@ -0,0 +1,45 @@
+package dao;
+
+import metadata.ColumnMetadata;
+
+import java.util.List;
+
+/**
+ * Выбираемые запросом колонки. Колонки перечисляются в SELECT явно,
+ * поэтому i-я колонка результата соответствует i-му полю
+ * и сопоставлять их по именам при чтении не нужно.
+ */
+final class Projection {
+    private final ColumnMetadata[] columns;
+    private final String selectFrom;
+    private final String key;
+
+    /**
+     * @param columns выбираемые колонки в порядке SELECT
+     * @param selectFrom начало запроса: SELECT колонки FROM таблица
+     */
+    Projection(List<ColumnMetadata> columns, String selectFrom) {
+        this.columns = columns.toArray(new ColumnMetadata[columns.size()]);
+        this.selectFrom = selectFrom;
+        StringBuilder key = new StringBuilder();
+        for (ColumnMetadata column : columns) {
+            key.append(column.getFieldName()).append(',');
+        }
+        this.key = key.toString();
+    }
+
+    /** Колонки в порядке колонок результата */
+    ColumnMetadata[] getColumns() {
+        return columns;
+    }
+
+    /** Начало запроса: SELECT колонки FROM таблица */
+    String getSelectFrom() {
+        return selectFrom;
+    }
+
+    /** Строка, различающая наборы колонок в кэше запросов */
+    String getKey() {
+        return key;
+    }
+}
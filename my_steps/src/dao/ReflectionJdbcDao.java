@@ -1,6 +1,12 @@
 package dao;
 
+import metadata.EntityKey;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * User: kost
@@ -32,6 +38,54 @@ public interface ReflectionJdbcDao<T> {
      * */
     public void deleteByKey(T key);
 
+    /**
+     * Пакетная вставка объектов в соответствующую таблицу БД.
+     *
+     * @param objects вставляемые объекты
+     *
+     * @return число вставленных записей для каждого объекта в порядке
+     * обхода коллекции (см. Statement.executeBatch)
+     */
+    public int[] insertAll(Collection<T> objects);
+
+    /**
+     * Вставка объекта или, если запись с такими же ключевыми полями
+     * уже есть, обновление её остальных полей одним запросом.
+     *
+     * @param object вставляемый или обновляемый объект
+     */
+    public void upsert(T object);
+
+    /**
+     * Пакетная вставка или обновление объектов (см. upsert).
+     *
+     * @param objects вставляемые или обновляемые объекты
+     *
+     * @return число изменённых записей для каждого объекта
+     * (для MySQL 1 при вставке, 2 при обновлении, 0 без изменений)
+     */
+    public int[] upsertAll(Collection<T> objects);
+
+    /**
+     * Пакетное обновление записей в таблице БД. Идентификация записей
+     * происходит по ключевым полям объектов.
+     *
+     * @param objects обновляемые объекты
+     *
+     * @return число обновлённых записей для каждого объекта
+     */
+    public int[] updateAll(Collection<T> objects);
+
+    /**
+     * Пакетное удаление объектов из таблицы БД. Идентификация записей
+     * происходит по ключевым полям объектов.
+     *
+     * @param keys удаляемые объекты с заполненными ключевыми полями
+     *
+     * @return число удалённых записей для каждого объекта
+     */
+    public int[] deleteAllByKeys(Collection<T> keys);
+
     /**
      * Выборка из таблицы БД объекта. Идентификация записи происходит
      * по ключевым полям объекта. Остальные поля объекта в методе не
@@ -43,10 +97,142 @@ public interface ReflectionJdbcDao<T> {
      */
     public T selectByKey(T key);
 
+    /**
+     * Выборка из таблицы БД объектов по нескольким ключам. Записи
+     * выбираются несколькими запросами, каждый по группе ключей.
+     * Остальные поля объектов-ключей в методе не используются.
+     *
+     * @param keys объекты с заполненными ключевыми полями
+     *
+     * @return найденные объекты по значениям их ключевых полей
+     * (см. EntityMetadata.keyOf); ненайденных ключей в результате нет
+     */
+    public Map<EntityKey, T> selectByKeys(Collection<T> keys);
+
+    /**
+     * Выборка из таблицы БД объектов, удовлетворяющих условиям,
+     * в заданном порядке и с заданными ограничением и смещением.
+     * Отбор и упорядочивание выполняются в БД.
+     *
+     * @param criteria условия выборки
+     *
+     * @return список выбранных объектов
+     */
+    public List<T> select(Criteria<T> criteria);
+
+    /**
+     * Выборка из таблицы БД только заданных полей объектов, удовлетворяющих
+     * условиям. Остальные поля объектов остаются незаполненными.
+     *
+     * @param criteria условия выборки
+     * @param fields имена выбираемых полей; без полей выбираются все
+     *
+     * @return список частично заполненных объектов
+     */
+    public List<T> select(Criteria<T> criteria, String... fields);
+
+    /**
+     * Выборка из таблицы БД значений заданных полей без создания объектов.
+     *
+     * @param criteria условия выборки
+     * @param fields имена выбираемых полей; без полей выбираются все
+     * в порядке колонок таблицы
+     *
+     * @return значения полей по строкам в порядке fields;
+     * значения примитивных полей - обёртки, NULL - null
+     */
+    public List<Object[]> selectTuples(Criteria<T> criteria, String... fields);
+
+    /**
+     * Число записей в таблице БД, удовлетворяющих условиям.
+     * Порядок, ограничение и смещение из условий не учитываются.
+     *
+     * @param criteria условия выборки
+     *
+     * @return число записей
+     */
+    public long count(Criteria<T> criteria);
+
+    /**
+     * Выборка страницы объектов из таблицы БД в порядке ключевых полей.
+     * Следующая страница выбирается по значениям ключевых полей последнего
+     * объекта предыдущей, поэтому стоимость страницы не зависит от того,
+     * насколько далеко она от начала таблицы.
+     *
+     * @param token метка продолжения из Page.getNextToken
+     * предыдущей страницы или null для первой страницы
+     * @param pageSize наибольшее число объектов на странице
+     *
+     * @return страница объектов
+     */
+    public Page<T> selectPage(String token, int pageSize);
+
     /**
      * Выборка всех объектов из соответствующей таблицы БД.
      *
      * @return список выбранных объектов
      */
     public List<T> selectAll();
+
+    /**
+     * Последовательное чтение всех объектов из соответствующей таблицы БД.
+     * Объекты создаются по мере чтения строк, поэтому таблица целиком
+     * в память не загружается. Итератор надо закрыть, если обход
+     * прерывается до последнего объекта.
+     *
+     * @return итератор по объектам таблицы
+     */
+    public CloseableIterator<T> iterator();
+
+    /**
+     * Поток всех объектов из соответствующей таблицы БД, читаемых
+     * по мере обхода. Поток удерживает запрос к БД и должен быть закрыт,
+     * например в try-with-resources.
+     *
+     * @return поток объектов таблицы
+     */
+    public Stream<T> stream();
+
+    /**
+     * Последовательное чтение объектов, удовлетворяющих условиям,
+     * по мере обхода (см. iterator()). Итератор надо закрыть,
+     * если обход прерывается до последнего объекта.
+     *
+     * @param criteria условия выборки
+     *
+     * @return итератор по выбранным объектам
+     */
+    public CloseableIterator<T> iterator(Criteria<T> criteria);
+
+    /**
+     * Последовательное чтение значений заданных полей записей,
+     * удовлетворяющих условиям, по мере обхода (см. iterator(Criteria)
+     * и selectTuples). Итератор надо закрыть, если обход прерывается
+     * до последней записи.
+     *
+     * @param criteria условия выборки
+     * @param fields имена выбираемых полей; без полей выбираются все
+     * в порядке колонок таблицы
+     *
+     * @return итератор по значениям полей в порядке fields
+     */
+    public CloseableIterator<Object[]> tupleIterator(Criteria<T> criteria, String... fields);
+
+    /**
+     * Поток объектов, удовлетворяющих условиям, читаемых по мере обхода
+     * (см. stream()). Поток должен быть закрыт.
+     *
+     * @param criteria условия выборки
+     *
+     * @return поток выбранных объектов
+     */
+    public Stream<T> stream(Criteria<T> criteria);
+
+    /**
+     * Передаёт все объекты из соответствующей таблицы БД обработчику
+     * по мере чтения строк.
+     *
+     * @param action обработчик объектов
+     */
+    public void forEach(Consumer<? super T> action);
 }
@@ -0,0 +1,286 @@
+package dao;
+
+import pool.PooledConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU кэш подготовленных запросов одного подключения.
+ * Запросы различаются текстом SQL, а он у каждой операции
+ * каждого класса свой (см. EntityQueries). Вытесняемый запрос закрывается,
+ * как только он перестаёт использоваться. Кэш разделяется всеми dao,
+ * работающими через одно подключение. Для подключений из пула кэш привязан
+ * к настоящему подключению к БД и переживает возврат подключения в пул.
+ * Ошибка закрытия запроса выбрасывается из ближайшего Lease.close,
+ * как при закрытии запроса в try-with-resources.
+ */
+public class StatementCache {
+    /** Размер кэша по умолчанию */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    //кэши открытых подключений не из пула; у подключений из пула
+    //кэш привязан к настоящему подключению (PooledConnection.getAttachment)
+    private static final ConcurrentMap<Connection, StatementCache> caches = new ConcurrentHashMap<>();
+
+    private final Connection connection;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    //запросы, выданные и ещё не возвращённые
+    private final Set<PreparedStatement> inUse =
+            Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
+    //выданные запросы, вытесненные из кэша; закрываются при возврате
+    private final Set<PreparedStatement> evicted =
+            Collections.newSetFromMap(new IdentityHashMap<PreparedStatement, Boolean>());
+    private int maxSize = DEFAULT_MAX_SIZE;
+    //ошибки закрытия запросов, ещё не выброшенные из Lease.close
+    private SQLException closeFailure;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private StatementCache(Connection connection) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    closeIfUnused(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Возвращает кэш подключения, создавая его при первом обращении.
+     * Кэш подключения из пула привязан к настоящему подключению и отбрасывается,
+     * когда пул его закрывает. Кэши прочих подключений хранятся в общей
+     * таблице; кэши уже закрытых подключений удаляются из неё при создании
+     * нового кэша.
+     * @param connection подключение
+     * @return кэш запросов подключения
+     */
+    public static StatementCache forConnection(Connection connection) {
+        if (connection instanceof PooledConnection) {
+            PooledConnection pooled = (PooledConnection) connection;
+            Object attached = pooled.getAttachment();
+            if (attached == null) {
+                attached = pooled.attachIfAbsent(new StatementCache(pooled.getPhysicalConnection()));
+            }
+            return (StatementCache) attached;
+        }
+
+        StatementCache cache = caches.get(connection);
+        if (cache == null) {
+            removeClosed();
+            StatementCache created = new StatementCache(connection);
+            cache = caches.putIfAbsent(connection, created);
+            if (cache == null) {
+                cache = created;
+            }
+        }
+        return cache;
+    }
+
+    /** Удаляет кэши закрытых подключений */
+    private static void removeClosed() {
+        for (Map.Entry<Connection, StatementCache> entry : caches.entrySet()) {
+            if (isClosed(entry.getKey()) && caches.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().clear();
+            }
+        }
+    }
+
+    private static boolean isClosed(Connection connection) {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Выдаёт подготовленный запрос из кэша или готовит новый.
+     * Запрос надо вернуть, закрыв полученный Lease. Если запрос с тем же
+     * текстом уже выдан и не возвращён, готовится отдельный некэшируемый запрос.
+     * @param owner подключение, через которое работает запрашивающий dao;
+     * для подключений из пула оно может быть уже возвращено в пул
+     * @param sql текст запроса
+     * @return выданный запрос
+     * @throws SQLException если подключение закрыто
+     */
+    public synchronized Lease prepare(Connection owner, String sql) throws SQLException {
+        if (owner.isClosed()) {
+            if (connection.isClosed()) {
+                clear();
+            }
+            throw new SQLException("Connection is closed");
+        }
+
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && statement.isClosed()) {
+            statements.remove(sql);
+            statement = null;
+        }
+        if (statement != null && !inUse.contains(statement)) {
+            hits.incrementAndGet();
+            inUse.add(statement);
+            return new Lease(statement, true);
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement prepared = connection.prepareStatement(sql);
+        if (statement == null && maxSize > 0) {
+            statements.put(sql, prepared);
+            inUse.add(prepared);
+            return new Lease(prepared, true);
+        }
+
+        return new Lease(prepared, false);
+    }
+
+    /**
+     * Возвращает выданный запрос. Некэшируемые запросы и запросы,
+     * вытесненные из кэша за время использования, закрываются.
+     * @param statement запрос
+     * @param cached выдан ли запрос из кэша
+     */
+    private synchronized void release(PreparedStatement statement, boolean cached) {
+        if (!cached) {
+            close(statement);
+            return;
+        }
+        inUse.remove(statement);
+        if (evicted.remove(statement)) {
+            close(statement);
+        }
+    }
+
+    private void closeIfUnused(PreparedStatement statement) {
+        if (inUse.contains(statement)) {
+            evicted.add(statement);
+        } else {
+            close(statement);
+        }
+    }
+
+    private void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            if (closeFailure == null) {
+                closeFailure = e;
+            } else {
+                closeFailure.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Забирает накопленную ошибку закрытия запросов
+     * @return ошибка или null
+     */
+    private synchronized SQLException takeCloseFailure() {
+        SQLException failure = closeFailure;
+        closeFailure = null;
+        return failure;
+    }
+
+    /** Закрывает все невыданные запросы и очищает кэш */
+    public synchronized void clear() {
+        List<PreparedStatement> cached = new ArrayList<>(statements.values());
+        statements.clear();
+        for (PreparedStatement statement : cached) {
+            closeIfUnused(statement);
+        }
+    }
+
+    /**
+     * Задаёт максимальное число запросов в кэше; лишние вытесняются.
+     * 0 отключает кэширование.
+     * @param maxSize размер кэша
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        Iterator<PreparedStatement> iterator = statements.values().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            PreparedStatement eldest = iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+            closeIfUnused(eldest);
+        }
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Число запросов, находящихся в кэше */
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    /** Число выдач запроса из кэша */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Число подготовок новых запросов */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Число вытесненных из кэша запросов */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Выданный запрос. Закрытие возвращает его в кэш,
+     * а некэшируемый запрос закрывает.
+     */
+    public class Lease implements AutoCloseable {
+        private final PreparedStatement statement;
+        private final boolean cached;
+
+        private Lease(PreparedStatement statement, boolean cached) {
+            this.statement = statement;
+            this.cached = cached;
+        }
+
+        public PreparedStatement getStatement() {
+            return statement;
+        }
+
+        /**
+         * Возвращает запрос
+         * @throws SQLException если не удалось закрыть этот или вытесненный запрос
+         */
+        @Override
+        public void close() throws SQLException {
+            release(statement, cached);
+            SQLException failure = takeCloseFailure();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package dao;
+
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.EntityMetadata;
+import metrics.StatementScope;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Единица работы: накапливает новые, изменённые и удалённые объекты
+ * любых классов и записывает их одной транзакцией. Изменения каждого
+ * класса сводятся (см. PendingChanges) и пишутся пакетами: удаления,
+ * вставки, обновления. Таблицы пишутся в порядке их имён, поэтому
+ * одновременные единицы работы блокируют записи таблиц в одном порядке.
+ *
+ * Подключение берётся у фабрики при первой записи и возвращается
+ * при close. Пока подключение открыто, в потоке открыта StatementScope,
+ * поэтому StatementLog считает повторы запросов в пределах единицы работы.
+ * Не потокобезопасна.
+ */
+public class UnitOfWork implements AutoCloseable {
+    private final DaoFactory<Connection> factory;
+    //класс -> накопленные изменения
+    private final Map<Class<?>, PendingChanges<?>> changes = new LinkedHashMap<>();
+    private Connection connection;
+    private StatementScope scope;
+    private boolean closed;
+
+    /**
+     * @param factory фабрика подключений и dao
+     */
+    public UnitOfWork(DaoFactory<Connection> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Регистрирует новый объект, который надо вставить
+     * @param entity объект
+     */
+    public <T> void registerNew(T entity) {
+        changesOf(entity).insert(entity);
+    }
+
+    /**
+     * Регистрирует изменённый объект, запись которого надо обновить
+     * @param entity объект
+     */
+    public <T> void registerDirty(T entity) {
+        changesOf(entity).update(entity);
+    }
+
+    /**
+     * Регистрирует объект, запись которого надо удалить
+     * @param key объект с заполненными ключевыми полями
+     */
+    public <T> void registerDeleted(T key) {
+        changesOf(key).delete(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> PendingChanges<T> changesOf(T entity) {
+        checkOpen();
+        Class<T> cls = (Class<T>) entity.getClass();
+        PendingChanges<T> pending = (PendingChanges<T>) changes.get(cls);
+        if (pending == null) {
+            try {
+                pending = new PendingChanges<>(EntityMetadata.forClass(cls));
+            } catch (NoTableTitleException | NoKeyFieldsException e) {
+                throw new DaoException("Can't register " + cls.getName(), e);
+            }
+            changes.put(cls, pending);
+        }
+
+        return pending;
+    }
+
+    /**
+     * Dao, работающий в транзакции единицы работы. Через него видны
+     * изменения, записанные flush, но не зарегистрированные после.
+     * @param cls класс объектов
+     * @return dao
+     * @throws DaoException если не удалось получить подключение или dao
+     */
+    public <T> ReflectionJdbcDao<T> getDao(Class<T> cls) {
+        try {
+            return factory.getDao(getConnection(), cls);
+        } catch (SQLException | NoTableTitleException | NoKeyFieldsException e) {
+            throw new DaoException("Can't create dao for " + cls.getName(), e);
+        }
+    }
+
+    /**
+     * Записывает накопленные изменения в транзакцию, не завершая её.
+     * При ошибке транзакция откатывается и все изменения отбрасываются.
+     * @throws DaoException при ошибке записи
+     */
+    public void flush() {
+        checkOpen();
+        if (isEmpty()) {
+            return;
+        }
+        List<PendingChanges<?>> tables = new ArrayList<>(changes.values());
+        Collections.sort(tables, new Comparator<PendingChanges<?>>() {
+            @Override
+            public int compare(PendingChanges<?> a, PendingChanges<?> b) {
+                return a.getMetadata().getTableName().compareTo(b.getMetadata().getTableName());
+            }
+        });
+        try {
+            for (PendingChanges<?> pending : tables) {
+                write(pending);
+            }
+        } catch (RuntimeException e) {
+            rollbackAfter(e);
+            throw e;
+        }
+        changes.clear();
+    }
+
+    private <T> void write(PendingChanges<T> pending) {
+        if (!pending.isEmpty()) {
+            pending.writeTo(getDao(pending.getMetadata().getEntityClass()));
+        }
+    }
+
+    /**
+     * Записывает накопленные изменения и фиксирует транзакцию.
+     * При ошибке транзакция откатывается и все изменения отбрасываются.
+     * @throws DaoException при ошибке записи или фиксации
+     */
+    public void commit() {
+        flush();
+        if (connection != null) {
+            try {
+                connection.commit();
+            } catch (SQLException e) {
+                DaoException failure = new DaoException("Can't commit unit of work", e);
+                rollbackAfter(failure);
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Отбрасывает накопленные изменения и откатывает записанные flush
+     * @throws DaoException при ошибке отката
+     */
+    public void rollback() {
+        changes.clear();
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                throw new DaoException("Can't roll back unit of work", e);
+            }
+        }
+    }
+
+    /**
+     * Откатывает транзакцию после ошибки; ошибка отката
+     * добавляется к ней как подавленная
+     * @param error ошибка, которая будет выброшена
+     */
+    private void rollbackAfter(Throwable error) {
+        try {
+            rollback();
+        } catch (DaoException e) {
+            error.addSuppressed(e);
+        }
+    }
+
+    /** Нет ли накопленных изменений */
+    public boolean isEmpty() {
+        for (PendingChanges<?> pending : changes.values()) {
+            if (!pending.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Откатывает незафиксированные изменения и возвращает подключение.
+     * Подключение возвращается, даже если откат не удался.
+     * @throws DaoException при ошибке отката или возврата подключения
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        changes.clear();
+        if (connection != null) {
+            SQLException error = null;
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                error = e;
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                if (error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            } finally {
+                connection = null;
+                scope.close();
+                scope = null;
+            }
+            if (error != null) {
+                throw new DaoException("Can't close unit of work", error);
+            }
+        }
+    }
+
+    /**
+     * Подключение единицы работы, открываемое с выключенным автокоммитом
+     * @return подключение
+     * @throws SQLException если подключение не удалось получить
+     */
+    private Connection getConnection() throws SQLException {
+        checkOpen();
+        if (connection == null) {
+            Connection opened = factory.getContext();
+            try {
+                opened.setAutoCommit(false);
+            } catch (SQLException e) {
+                opened.close();
+                throw e;
+            }
+            connection = opened;
+            scope = StatementScope.open();
+        }
+        return connection;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Unit of work is closed");
+        }
+    }
+}
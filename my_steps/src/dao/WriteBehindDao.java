@@ -0,0 +1,301 @@
+package dao;
+
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.EntityKey;
+import metadata.EntityMetadata;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись изменений объектов. insert, update и deleteByKey
+ * только регистрируют изменение (см. PendingChanges), а фоновый поток
+ * записывает накопленное пакетами в одной транзакции, когда изменённых
+ * объектов набирается flushSize или проходит flushInterval.
+ * Повторные изменения одного объекта до записи сводятся к одному.
+ *
+ * Изменённых объектов хранится не больше maxPending: при заполнении
+ * вызывающий поток ждёт записи накопленного. Ошибка фоновой записи
+ * выбрасывается из следующего вызова, в том числе из flush, ждавшего
+ * окончания этой записи; изменения неудавшейся записи теряются.
+ * Чтение через обычные dao видит только записанные изменения.
+ *
+ * @param <T> класс объектов
+ */
+public class WriteBehindDao<T> implements AutoCloseable {
+    /** Число изменённых объектов, при котором запись начинается, по умолчанию */
+    public static final int DEFAULT_FLUSH_SIZE = 1000;
+    /** Наибольший интервал между записями по умолчанию */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    /** Наибольшее число хранимых изменённых объектов по умолчанию */
+    public static final int DEFAULT_MAX_PENDING = 10000;
+
+    private final DaoFactory<Connection> factory;
+    private final EntityMetadata<T> metadata;
+    private final int flushSize;
+    private final long flushIntervalNanos;
+    private final int maxPending;
+
+    //защищает pending и флаги
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    //упорядочивает записи: изменения пишутся в порядке их извлечения из pending
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private PendingChanges<T> pending;
+    private boolean flushRequested;
+    private boolean closed;
+    private volatile RuntimeException failure;
+    private final Thread flusher;
+
+    /**
+     * @param factory фабрика подключений и dao
+     * @param cls класс объектов
+     * @param flushSize число изменённых объектов, при котором начинается запись
+     * @param flushIntervalMillis наибольший интервал между записями
+     * @param maxPending наибольшее число хранимых изменённых объектов
+     * @throws NoTableTitleException
+     * @throws NoKeyFieldsException
+     */
+    public WriteBehindDao(DaoFactory<Connection> factory, Class<T> cls, int flushSize,
+                          long flushIntervalMillis, int maxPending)
+            throws NoTableTitleException, NoKeyFieldsException {
+        if (flushSize < 1 || maxPending < flushSize || flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Invalid write-behind settings: flush size " + flushSize +
+                    ", interval " + flushIntervalMillis + " ms, max pending " + maxPending);
+        }
+        this.factory = factory;
+        this.metadata = EntityMetadata.forClass(cls);
+        this.flushSize = flushSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.maxPending = maxPending;
+        this.pending = new PendingChanges<>(metadata);
+
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "write-behind-" + metadata.getTableName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** Регистрирует вставку объекта */
+    public void insert(T object) {
+        lock.lock();
+        try {
+            awaitRoom(metadata.keyOf(object));
+            pending.insert(object);
+            afterChange();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Регистрирует обновление объекта */
+    public void update(T object) {
+        lock.lock();
+        try {
+            awaitRoom(metadata.keyOf(object));
+            pending.update(object);
+            afterChange();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Регистрирует удаление объекта по ключевым полям */
+    public void deleteByKey(T key) {
+        lock.lock();
+        try {
+            awaitRoom(metadata.keyOf(key));
+            pending.delete(key);
+            afterChange();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ждёт, пока для нового изменённого объекта освободится место.
+     * Изменение уже изменённого объекта места не занимает.
+     * Выполняется под lock.
+     * @param key ключ изменяемого объекта
+     */
+    private void awaitRoom(EntityKey key) {
+        checkState();
+        while (pending.size() >= maxPending && !pending.contains(key)) {
+            flushRequested = true;
+            flushNeeded.signal();
+            notFull.awaitUninterruptibly();
+            checkState();
+        }
+    }
+
+    private void afterChange() {
+        if (pending.size() >= flushSize) {
+            flushNeeded.signal();
+        }
+    }
+
+    private void checkState() {
+        if (closed) {
+            throw new IllegalStateException("Write-behind buffer for " + metadata.getTableName() + " is closed");
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * Выбрасывает ошибку фоновой записи, если она была, один раз
+     * @throws DaoException с ошибкой фоновой записи
+     */
+    private void rethrowFailure() {
+        RuntimeException error = failure;
+        if (error != null) {
+            failure = null;
+            throw new DaoException("Background write to " + metadata.getTableName() + " failed", error);
+        }
+    }
+
+    /**
+     * Записывает все зарегистрированные к моменту вызова изменения.
+     * Если часть их забрала фоновая запись, ждёт её окончания.
+     * @throws DaoException при ошибке записи, в том числе фоновой
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            checkState();
+        } finally {
+            lock.unlock();
+        }
+        writePending();
+        //writePending ждал writeLock, пока шла фоновая запись: её ошибка уже записана в failure
+        lock.lock();
+        try {
+            rethrowFailure();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Число изменённых объектов, ожидающих записи */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Записывает оставшиеся изменения и останавливает фоновый поток
+     * @throws DaoException при ошибке записи
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushNeeded.signal();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writePending();
+        rethrowFailure();
+    }
+
+    /**
+     * Фоновая запись: ждёт flushSize изменённых объектов, запроса
+     * записи или истечения flushInterval и записывает накопленное
+     */
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                long remaining = flushIntervalNanos;
+                while (!closed && !flushRequested && pending.size() < flushSize && remaining > 0) {
+                    try {
+                        remaining = flushNeeded.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    remaining = Math.min(remaining, deadline - System.nanoTime());
+                }
+                if (closed) {
+                    return;
+                }
+                flushRequested = false;
+            } finally {
+                lock.unlock();
+            }
+            //ошибка запоминается до освобождения writeLock, чтобы flush,
+            //ждавший этой записи, увидел её
+            writeLock.lock();
+            try {
+                writePending();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Забирает накопленные изменения и записывает их в одной транзакции
+     * @throws DaoException при ошибке записи
+     */
+    private void writePending() {
+        writeLock.lock();
+        try {
+            PendingChanges<T> batch;
+            lock.lock();
+            try {
+                batch = pending;
+                pending = new PendingChanges<>(metadata);
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(PendingChanges<T> batch) {
+        try (Connection connection = factory.getContext()) {
+            connection.setAutoCommit(false);
+            try {
+                batch.writeTo(factory.getDao(connection, metadata.getEntityClass()));
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | NoTableTitleException | NoKeyFieldsException e) {
+            throw new DaoException("Can't write " + batch.size() + " changes to " + metadata.getTableName(), e);
+        }
+    }
+}
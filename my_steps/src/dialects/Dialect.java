@@ -0,0 +1,74 @@
+package dialects;
+
+import java.util.List;
+
+/**
+ * Особенности SQL конкретной БД, которые нужны dao и фабрикам:
+ * экранирование имён, типы колонок, вставка с обновлением,
+ * вставка нескольких строк одним запросом и ограничение выборки.
+ * Остальные запросы строятся на общем для всех БД подмножестве SQL.
+ * Диалекты не хранят состояния, поэтому используются их единственные экземпляры.
+ */
+public interface Dialect {
+
+    /**
+     * Имя диалекта; запросы к таблицам кэшируются отдельно для каждого имени
+     * @return имя
+     */
+    public String getName();
+
+    /**
+     * Экранирует имя схемы, таблицы или колонки
+     * @param identifier имя
+     * @return имя для подстановки в запрос
+     */
+    public String quote(String identifier);
+
+    /**
+     * Тип колонки для типа поля
+     * @param type тип поля из ReflectionHelper.typeNames
+     * @return тип колонки в DDL
+     */
+    public String getSqlType(Class<?> type);
+
+    /**
+     * Запрос создания схемы, если её ещё нет
+     * @param schema экранированное имя схемы
+     * @return SQL запрос
+     */
+    public String getCreateSchemaQuery(String schema);
+
+    /**
+     * Запрос вставки строк, обновляющий при совпадении ключа
+     * неключевые колонки вставляемыми значениями.
+     * Параметры те же, что у вставки тех же строк.
+     * @param table экранированное полное имя таблицы
+     * @param columns экранированные имена всех колонок в порядке вставки
+     * @param keys экранированные имена ключевых колонок
+     * @param values значения строк вида (?, ?), (?, ?)
+     * @return SQL запрос
+     */
+    public String renderUpsert(String table, List<String> columns, List<String> keys, String values);
+
+    /**
+     * Можно ли вставлять несколько строк одним запросом INSERT ... VALUES (...), (...)
+     * @return поддерживается ли многострочная вставка
+     */
+    public boolean supportsMultiRowInsert();
+
+    /**
+     * Можно ли сравнивать несколько колонок со списком строк:
+     * WHERE (a, b) IN ((?, ?), (?, ?)). Иначе выборка по составным
+     * ключам строится цепочкой (a = ? AND b = ?) OR (...).
+     * @return поддерживается ли сравнение строк в IN
+     */
+    public boolean supportsRowValueIn();
+
+    /**
+     * Окончание запроса, ограничивающее число строк результата.
+     * Параметры - ограничение, затем смещение, если оно есть.
+     * @param offset есть ли смещение
+     * @return окончание запроса, начинающееся с перевода строки
+     */
+    public String renderLimit(boolean offset);
+}
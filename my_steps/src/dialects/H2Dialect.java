@@ -0,0 +1,61 @@
+package dialects;
+
+import classes.ReflectionHelper;
+
+import java.util.List;
+
+/**
+ * Диалект H2 в собственном режиме: имена в двойных кавычках
+ * (и потому чувствительны к регистру), MERGE INTO ... KEY (...) VALUES
+ * и LIMIT ? OFFSET ?. Типы те же, что у MySQL, кроме CHAR,
+ * длина которого в H2 по умолчанию не 1.
+ */
+public final class H2Dialect implements Dialect {
+    public static final H2Dialect INSTANCE = new H2Dialect();
+
+    private H2Dialect() {}
+
+    @Override
+    public String getName() {
+        return "h2";
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    @Override
+    public String getSqlType(Class<?> type) {
+        if (type == char.class || type == Character.class) {
+            return "CHAR(1)";
+        }
+        return ReflectionHelper.typeNames.get(type);
+    }
+
+    @Override
+    public String getCreateSchemaQuery(String schema) {
+        return "CREATE SCHEMA IF NOT EXISTS " + schema;
+    }
+
+    @Override
+    public String renderUpsert(String table, List<String> columns, List<String> keys, String values) {
+        return "MERGE INTO " + table + " \n(" + String.join(", ", columns) + ") KEY (" +
+                String.join(", ", keys) + ") \nVALUES" + values;
+    }
+
+    @Override
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRowValueIn() {
+        return true;
+    }
+
+    @Override
+    public String renderLimit(boolean offset) {
+        return offset ? "\n LIMIT ? OFFSET ?" : "\n LIMIT ?";
+    }
+}
@@ -0,0 +1,69 @@
+package dialects;
+
+import classes.ReflectionHelper;
+
+import java.util.List;
+
+/**
+ * Диалект MySQL: имена в обратных кавычках, типы из ReflectionHelper.typeNames,
+ * INSERT ... ON DUPLICATE KEY UPDATE и LIMIT ? OFFSET ?
+ */
+public final class MySqlDialect implements Dialect {
+    public static final MySqlDialect INSTANCE = new MySqlDialect();
+
+    private MySqlDialect() {}
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    @Override
+    public String getSqlType(Class<?> type) {
+        return ReflectionHelper.typeNames.get(type);
+    }
+
+    @Override
+    public String getCreateSchemaQuery(String schema) {
+        return "CREATE SCHEMA IF NOT EXISTS " + schema + " DEFAULT CHARACTER SET utf8";
+    }
+
+    @Override
+    public String renderUpsert(String table, List<String> columns, List<String> keys, String values) {
+        StringBuilder query = new StringBuilder("INSERT INTO ").append(table)
+                .append(" \n(").append(String.join(", ", columns)).append(") \nVALUES").append(values).append(" \nON DUPLICATE KEY UPDATE ");
+        //без неключевых колонок обновлять нечего, но MySQL требует хотя бы одну
+        boolean first = true;
+        for (String column : columns) {
+            if (!keys.contains(column)) {
+                query.append(first ? "" : ", ").append(column).append(" = VALUES(").append(column).append(")");
+                first = false;
+            }
+        }
+        if (first) {
+            query.append(keys.get(0)).append(" = VALUES(").append(keys.get(0)).append(")");
+        }
+
+        return query.toString();
+    }
+
+    @Override
+    public boolean supportsMultiRowInsert() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRowValueIn() {
+        return true;
+    }
+
+    @Override
+    public String renderLimit(boolean offset) {
+        return offset ? "\n LIMIT ? OFFSET ?" : "\n LIMIT ?";
+    }
+}
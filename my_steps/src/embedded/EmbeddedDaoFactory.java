@@ -0,0 +1,43 @@
+package embedded;
+
+import dao.GenericDao;
+import dao.JdbcDaoFactory;
+import dialects.H2Dialect;
+import pool.PoolConfig;
+
+import java.sql.SQLException;
+
+/**
+ * Фабрика dao над встроенной БД H2, работающей в том же процессе.
+ * По умолчанию база хранится в памяти и живёт до завершения процесса,
+ * поэтому для тестов и замеров не нужен запущенный сервер MySQL.
+ * Драйвер H2 должен быть в classpath.
+ */
+public class EmbeddedDaoFactory extends JdbcDaoFactory {
+    private static final String driver = "org.h2.Driver";//Имя драйвера
+
+    /**
+     * Создаёт фабрику над базой в памяти с заданным именем.
+     * Фабрики с одним именем работают с одной базой.
+     * @param database имя базы
+     * @throws SQLException если не удалось создать схему
+     */
+    public EmbeddedDaoFactory(String database) throws SQLException {
+        this(new PoolConfig("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1", "sa", ""));
+    }
+
+    /**
+     * Создаёт фабрику, выдающую подключения к H2 из пула с заданными настройками
+     * @param poolConfig настройки пула; URL должен быть адресом H2
+     * @throws SQLException если не удалось создать схему
+     */
+    public EmbeddedDaoFactory(PoolConfig poolConfig) throws SQLException {
+        super(poolConfig, H2Dialect.INSTANCE, GenericDao.DEFAULT_SCHEMA);
+        try {
+            Class.forName(driver);//Регистрируем драйвер
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("H2 driver is not in classpath", e);
+        }
+        createSchema();
+    }
+}
@@ -0,0 +1,33 @@
+package exceptions;
+
+/**
+ * Исключение на случай ошибки обращения к БД при выполнении
+ * операции dao. Исходная ошибка JDBC доступна через getCause.
+ */
+public class DaoException extends RuntimeException {
+
+    public DaoException() {
+
+    }
+
+    public DaoException(String message) {
+
+        super(message);
+    }
+
+    public DaoException(String message, Throwable cause) {
+
+        super(message, cause);
+    }
+
+    public DaoException(Throwable cause) {
+
+        super(cause);
+    }
+
+    public DaoException(String message, Throwable cause,
+                        boolean enableSuppression, boolean writableStackTrace) {
+
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
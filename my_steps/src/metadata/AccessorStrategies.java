@@ -0,0 +1,32 @@
+package metadata;
+
+/**
+ * Доступные стратегии доступа к полям и стратегия,
+ * используемая при построении EntityMetadata по умолчанию.
+ * По умолчанию используется рефлексия: MethodHandle хранятся в полях
+ * объектов доступа, а не в static final полях, поэтому JIT не может
+ * подставить их как константы, и по замерам AccessorBenchmark
+ * они не быстрее рефлексии. Быстрее обоих сгенерированное
+ * при компиляции отображение (см. EntityMappers).
+ */
+public class AccessorStrategies {
+    public static final AccessorStrategy REFLECTIVE = new ReflectiveAccessorStrategy();
+    public static final AccessorStrategy METHOD_HANDLES = new MethodHandleAccessorStrategy();
+
+    private static volatile AccessorStrategy defaultStrategy = REFLECTIVE;
+
+    public static AccessorStrategy getDefault() {
+        return defaultStrategy;
+    }
+
+    /**
+     * Задаёт стратегию для моделей классов, которые ещё не построены
+     * @param strategy стратегия
+     */
+    public static void setDefault(AccessorStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("Accessor strategy is null");
+        }
+        defaultStrategy = strategy;
+    }
+}
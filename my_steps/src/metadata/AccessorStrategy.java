@@ -0,0 +1,25 @@
+package metadata;
+
+import java.lang.reflect.Field;
+
+/**
+ * Способ чтения и записи полей объекта и создания объектов.
+ * Используется при построении EntityMetadata, поэтому привязка
+ * к полям выполняется один раз на класс.
+ */
+public interface AccessorStrategy {
+
+    /**
+     * Создаёт объект доступа к полю
+     * @param field поле, уже сделанное доступным
+     * @return объект доступа
+     */
+    public FieldAccessor accessorFor(Field field);
+
+    /**
+     * Создаёт объект для создания экземпляров класса
+     * @param cls класс с конструктором без параметров
+     * @return объект создания экземпляров
+     */
+    public <T> EntityInstantiator<T> instantiatorFor(Class<T> cls);
+}
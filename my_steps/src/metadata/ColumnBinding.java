@@ -0,0 +1,35 @@
+package metadata;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Запись значения поля в параметр запроса и чтение колонки
+ * результата в поле объекта методами JDBC, соответствующими типу поля.
+ * Выбирается один раз на колонку (см. ColumnBindings).
+ */
+public interface ColumnBinding {
+
+    /**
+     * Записывает значение поля объекта в параметр запроса
+     * @param statement запрос
+     * @param index номер параметра, начиная с 1
+     * @param entity объект
+     * @param accessor доступ к полю
+     * @throws SQLException
+     */
+    public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+            throws SQLException;
+
+    /**
+     * Читает значение колонки текущей строки в поле объекта
+     * @param rs результат запроса
+     * @param index номер колонки, начиная с 1
+     * @param entity объект
+     * @param accessor доступ к полю
+     * @throws SQLException
+     */
+    public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+            throws SQLException;
+}
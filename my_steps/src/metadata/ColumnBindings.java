@@ -0,0 +1,350 @@
+package metadata;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Типизированные привязки колонок для типов из ReflectionHelper.typeNames.
+ * Примитивные поля пишутся через setInt, setLong и т.д. и читаются
+ * через getInt, getLong и т.д. прямо в поле без упаковки.
+ * Поля-обёртки учитывают NULL через setNull и wasNull.
+ */
+public class ColumnBindings {
+    private static final Map<Class<?>, ColumnBinding> bindings = new HashMap<>();
+
+    /** Запасная привязка через setObject/getObject */
+    public static final ColumnBinding OBJECT = new ColumnBinding() {
+        @Override
+        public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                throws SQLException {
+            statement.setObject(index, accessor.get(entity));
+        }
+
+        @Override
+        public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                throws SQLException {
+            accessor.set(entity, rs.getObject(index));
+        }
+    };
+
+    static {
+        bindings.put(String.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setString(index, (String) accessor.get(entity));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                accessor.set(entity, rs.getString(index));
+            }
+        });
+
+        bindings.put(int.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setInt(index, accessor.getInt(entity));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                accessor.setInt(entity, rs.getInt(index));
+            }
+        });
+        bindings.put(Integer.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                Integer value = (Integer) accessor.get(entity);
+                if (value == null) {
+                    statement.setNull(index, Types.INTEGER);
+                } else {
+                    statement.setInt(index, value);
+                }
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                int value = rs.getInt(index);
+                accessor.set(entity, rs.wasNull() ? null : Integer.valueOf(value));
+            }
+        });
+
+        bindings.put(long.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setLong(index, accessor.getLong(entity));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                accessor.setLong(entity, rs.getLong(index));
+            }
+        });
+        bindings.put(Long.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                Long value = (Long) accessor.get(entity);
+                if (value == null) {
+                    statement.setNull(index, Types.BIGINT);
+                } else {
+                    statement.setLong(index, value);
+                }
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                long value = rs.getLong(index);
+                accessor.set(entity, rs.wasNull() ? null : Long.valueOf(value));
+            }
+        });
+
+        bindings.put(short.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setShort(index, accessor.getShort(entity));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                accessor.setShort(entity, rs.getShort(index));
+            }
+        });
+        bindings.put(Short.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                Short value = (Short) accessor.get(entity);
+                if (value == null) {
+                    statement.setNull(index, Types.SMALLINT);
+                } else {
+                    statement.setShort(index, value);
+                }
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                short value = rs.getShort(index);
+                accessor.set(entity, rs.wasNull() ? null : Short.valueOf(value));
+            }
+        });
+
+        bindings.put(byte.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setByte(index, accessor.getByte(entity));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                accessor.setByte(entity, rs.getByte(index));
+            }
+        });
+        bindings.put(Byte.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                Byte value = (Byte) accessor.get(entity);
+                if (value == null) {
+                    statement.setNull(index, Types.TINYINT);
+                } else {
+                    statement.setByte(index, value);
+                }
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                byte value = rs.getByte(index);
+                accessor.set(entity, rs.wasNull() ? null : Byte.valueOf(value));
+            }
+        });
+
+        bindings.put(double.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setDouble(index, accessor.getDouble(entity));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                accessor.setDouble(entity, rs.getDouble(index));
+            }
+        });
+        bindings.put(Double.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                Double value = (Double) accessor.get(entity);
+                if (value == null) {
+                    statement.setNull(index, Types.DOUBLE);
+                } else {
+                    statement.setDouble(index, value);
+                }
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                double value = rs.getDouble(index);
+                accessor.set(entity, rs.wasNull() ? null : Double.valueOf(value));
+            }
+        });
+
+        bindings.put(float.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setFloat(index, accessor.getFloat(entity));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                accessor.setFloat(entity, rs.getFloat(index));
+            }
+        });
+        bindings.put(Float.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                Float value = (Float) accessor.get(entity);
+                if (value == null) {
+                    statement.setNull(index, Types.REAL);
+                } else {
+                    statement.setFloat(index, value);
+                }
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                float value = rs.getFloat(index);
+                accessor.set(entity, rs.wasNull() ? null : Float.valueOf(value));
+            }
+        });
+
+        bindings.put(boolean.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setBoolean(index, accessor.getBoolean(entity));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                accessor.setBoolean(entity, rs.getBoolean(index));
+            }
+        });
+        bindings.put(Boolean.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                Boolean value = (Boolean) accessor.get(entity);
+                if (value == null) {
+                    statement.setNull(index, Types.BOOLEAN);
+                } else {
+                    statement.setBoolean(index, value);
+                }
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                boolean value = rs.getBoolean(index);
+                accessor.set(entity, rs.wasNull() ? null : Boolean.valueOf(value));
+            }
+        });
+
+        bindings.put(char.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                statement.setString(index, String.valueOf(accessor.getChar(entity)));
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                String value = rs.getString(index);
+                accessor.setChar(entity, value == null || value.isEmpty() ? '\0' : value.charAt(0));
+            }
+        });
+        bindings.put(Character.class, new ColumnBinding() {
+            @Override
+            public void bind(PreparedStatement statement, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                Character value = (Character) accessor.get(entity);
+                if (value == null) {
+                    statement.setNull(index, Types.CHAR);
+                } else {
+                    statement.setString(index, String.valueOf(value.charValue()));
+                }
+            }
+
+            @Override
+            public void read(ResultSet rs, int index, Object entity, FieldAccessor accessor)
+                    throws SQLException {
+                String value = rs.getString(index);
+                accessor.set(entity, value == null || value.isEmpty() ? null : Character.valueOf(value.charAt(0)));
+            }
+        });
+    }
+
+    //примитивный тип -> обёртка
+    private static final Map<Class<?>, Class<?>> wrappers = new HashMap<>();
+
+    static {
+        wrappers.put(int.class, Integer.class);
+        wrappers.put(long.class, Long.class);
+        wrappers.put(short.class, Short.class);
+        wrappers.put(byte.class, Byte.class);
+        wrappers.put(double.class, Double.class);
+        wrappers.put(float.class, Float.class);
+        wrappers.put(boolean.class, Boolean.class);
+        wrappers.put(char.class, Character.class);
+    }
+
+    /**
+     * Выбирает привязку для значения колонки вне объекта:
+     * для примитивного типа берётся привязка его обёртки,
+     * чтобы NULL читался как null
+     * @param type тип поля
+     * @return привязка, работающая через FieldAccessor.get и set
+     */
+    public static ColumnBinding forValueType(Class<?> type) {
+        Class<?> wrapper = wrappers.get(type);
+        return forType(wrapper == null ? type : wrapper);
+    }
+
+    /**
+     * Выбирает привязку для типа поля
+     * @param type тип поля
+     * @return типизированная привязка или OBJECT, если типа нет среди известных
+     */
+    public static ColumnBinding forType(Class<?> type) {
+        ColumnBinding binding = bindings.get(type);
+        return binding == null ? OBJECT : binding;
+    }
+}
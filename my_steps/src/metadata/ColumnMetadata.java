@@ -0,0 +1,134 @@
+package metadata;
+
+import annotations.KeyField;
+import classes.ReflectionHelper;
+
+import java.lang.reflect.Field;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Неизменяемое описание одной колонки таблицы:
+ * поле класса, имя колонки, SQL тип и признак ключа.
+ * Доступ к полю привязывается один раз при построении.
+ */
+public final class ColumnMetadata {
+    private final Field field;
+    private final FieldAccessor accessor;
+    private final ColumnBinding binding;
+    private final ColumnBinding valueBinding;
+    private final String fieldName;
+    private final String columnName;
+    private final String sqlType;
+    private final boolean key;
+
+    ColumnMetadata(Field field, AccessorStrategy strategy) {
+        field.setAccessible(true);
+        this.field = field;
+        this.accessor = strategy.accessorFor(field);
+        this.binding = ColumnBindings.forType(field.getType());
+        this.valueBinding = ColumnBindings.forValueType(field.getType());
+        this.fieldName = field.getName();
+        this.columnName = ReflectionHelper.underScorize(fieldName);
+        this.sqlType = ReflectionHelper.typeNames.get(field.getType());
+        this.key = field.isAnnotationPresent(KeyField.class);
+    }
+
+    /**
+     * Получает значение колонки из объекта
+     * @param entity объект
+     * @return значение поля
+     */
+    public Object get(Object entity) {
+        return accessor.get(entity);
+    }
+
+    /**
+     * Записывает значение колонки в объект
+     * @param entity объект
+     * @param value значение поля
+     */
+    public void set(Object entity, Object value) {
+        accessor.set(entity, value);
+    }
+
+    /**
+     * Записывает значение колонки из объекта в параметр запроса
+     * @param statement запрос
+     * @param index номер параметра, начиная с 1
+     * @param entity объект
+     * @throws SQLException
+     */
+    public void bind(PreparedStatement statement, int index, Object entity) throws SQLException {
+        binding.bind(statement, index, entity, accessor);
+    }
+
+    /**
+     * Читает колонку текущей строки результата в поле объекта
+     * @param rs результат запроса
+     * @param index номер колонки, начиная с 1
+     * @param entity объект
+     * @throws SQLException
+     */
+    public void read(ResultSet rs, int index, Object entity) throws SQLException {
+        binding.read(rs, index, entity, accessor);
+    }
+
+    /**
+     * Читает колонку текущей строки результата как значение,
+     * не записывая его в объект
+     * @param rs результат запроса
+     * @param index номер колонки, начиная с 1
+     * @return значение типа поля (для примитивов - обёртки) или null для NULL
+     * @throws SQLException
+     */
+    public Object readValue(ResultSet rs, int index) throws SQLException {
+        ValueHolder holder = new ValueHolder();
+        valueBinding.read(rs, index, null, holder);
+        return holder.value;
+    }
+
+    public FieldAccessor getAccessor() {
+        return accessor;
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public String getSqlType() {
+        return sqlType;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    public boolean isKey() {
+        return key;
+    }
+
+    /** Принимает прочитанное привязкой значение вместо поля объекта */
+    private static class ValueHolder extends FieldAccessor {
+        Object value;
+
+        @Override
+        public Object get(Object entity) {
+            return value;
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            this.value = value;
+        }
+    }
+}
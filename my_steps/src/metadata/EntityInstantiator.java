@@ -0,0 +1,15 @@
+package metadata;
+
+/**
+ * Создание нового объекта класса через конструктор без параметров
+ *
+ * @param <T> класс объекта
+ */
+public interface EntityInstantiator<T> {
+
+    /**
+     * Создаёт новый объект
+     * @return объект с незаполненными полями
+     */
+    public T newInstance();
+}
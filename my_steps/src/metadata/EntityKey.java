@@ -0,0 +1,50 @@
+package metadata;
+
+import java.util.Arrays;
+
+/**
+ * Значения ключевых полей объекта в порядке EntityMetadata.getKeyColumns.
+ * Используется как ключ отображений, в т.ч. для составных ключей.
+ */
+public final class EntityKey {
+    private final Object[] values;
+    private final int hash;
+
+    public EntityKey(Object... values) {
+        this.values = values.clone();
+        this.hash = Arrays.hashCode(this.values);
+    }
+
+    /**
+     * Значение ключевой колонки
+     * @param index номер колонки среди ключевых, начиная с 0
+     * @return значение
+     */
+    public Object get(int index) {
+        return values[index];
+    }
+
+    /** Число ключевых колонок */
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof EntityKey) {
+            EntityKey key = (EntityKey) obj;
+            return hash == key.hash && Arrays.equals(values, key.values);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
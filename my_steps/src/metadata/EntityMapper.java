@@ -0,0 +1,75 @@
+package metadata;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Запись объекта в параметры запроса и чтение строки результата
+ * в объект целиком, по всем колонкам модели класса.
+ * Для классов, скомпилированных с processor.DaoMapperProcessor,
+ * используется сгенерированная реализация <Класс>_DaoMapper,
+ * обращающаяся к полям и методам класса напрямую, для остальных -
+ * реализация через ColumnMetadata (см. EntityMappers).
+ *
+ * @param <T> класс объектов
+ */
+public interface EntityMapper<T> {
+
+    /**
+     * Имена колонок в порядке EntityMetadata.getColumns
+     * @return имена колонок
+     */
+    public String[] getColumnNames();
+
+    /**
+     * Имена ключевых колонок в порядке EntityMetadata.getKeyColumns
+     * @return имена колонок
+     */
+    public String[] getKeyColumnNames();
+
+    /**
+     * Создаёт новый объект конструктором без параметров
+     * @return объект с незаполненными полями
+     */
+    public T newInstance();
+
+    /**
+     * Записывает значения всех колонок объекта в параметры запроса подряд
+     * @param statement запрос
+     * @param index номер первого параметра
+     * @param entity объект
+     * @return номер параметра, следующего за последним записанным
+     * @throws SQLException
+     */
+    public int bindColumns(PreparedStatement statement, int index, T entity) throws SQLException;
+
+    /**
+     * Записывает значения ключевых колонок объекта в параметры запроса подряд
+     * @param statement запрос
+     * @param index номер первого параметра
+     * @param entity объект
+     * @return номер параметра, следующего за последним записанным
+     * @throws SQLException
+     */
+    public int bindKeyColumns(PreparedStatement statement, int index, T entity) throws SQLException;
+
+    /**
+     * Записывает значения неключевых колонок объекта в параметры запроса подряд
+     * @param statement запрос
+     * @param index номер первого параметра
+     * @param entity объект
+     * @return номер параметра, следующего за последним записанным
+     * @throws SQLException
+     */
+    public int bindNonKeyColumns(PreparedStatement statement, int index, T entity) throws SQLException;
+
+    /**
+     * Создаёт объект из текущей строки результата, колонки которого
+     * идут в порядке EntityMetadata.getColumns
+     * @param rs результат запроса
+     * @return объект
+     * @throws SQLException
+     */
+    public T read(ResultSet rs) throws SQLException;
+}
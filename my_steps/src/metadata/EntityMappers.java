@@ -0,0 +1,96 @@
+package metadata;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Выбор отображения класса (EntityMapper) при построении его модели.
+ * Сгенерированное при компиляции отображение <Класс>_DaoMapper
+ * из пакета класса берётся, если оно есть и его колонки совпадают
+ * с колонками модели; иначе (класс изменён без перекомпиляции,
+ * процессор аннотаций не подключён) используется отображение
+ * через колонки модели.
+ */
+public class EntityMappers {
+    /** Окончание имени сгенерированного отображения */
+    public static final String SUFFIX = "_DaoMapper";
+
+    private static volatile boolean generatedEnabled = true;
+
+    /**
+     * Имя класса сгенерированного отображения: имя класса, у вложенных
+     * классов '$' заменяется на '_', с окончанием SUFFIX
+     * @param cls класс объектов
+     * @return полное имя класса отображения
+     */
+    public static String mapperName(Class<?> cls) {
+        return cls.getName().replace('$', '_') + SUFFIX;
+    }
+
+    /**
+     * Выбирает отображение для модели класса
+     * @param metadata модель класса, колонки которой уже построены
+     * @return сгенерированное отображение или отображение через колонки
+     */
+    static <T> EntityMapper<T> forMetadata(EntityMetadata<T> metadata) {
+        if (generatedEnabled) {
+            EntityMapper<T> generated = findGenerated(metadata);
+            if (generated != null) {
+                return generated;
+            }
+        }
+        return new ReflectiveEntityMapper<>(metadata);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> EntityMapper<T> findGenerated(EntityMetadata<T> metadata) {
+        Class<T> cls = metadata.getEntityClass();
+        Class<?> mapperClass;
+        try {
+            mapperClass = Class.forName(mapperName(cls), true, cls.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!EntityMapper.class.isAssignableFrom(mapperClass)) {
+            return null;
+        }
+        EntityMapper<T> mapper;
+        try {
+            mapper = (EntityMapper<T>) mapperClass.getConstructor().newInstance();
+        } catch (NoSuchMethodException | InstantiationException |
+                IllegalAccessException | InvocationTargetException e) {
+            //сгенерированное отображение всегда публично и создаётся без параметров
+            throw new IllegalStateException("Can't create " + mapperClass.getName(), e);
+        }
+        //отображение, сгенерированное по старой версии класса, не подходит
+        if (!Arrays.equals(mapper.getColumnNames(), columnNames(metadata.getColumns())) ||
+                !Arrays.equals(mapper.getKeyColumnNames(), columnNames(metadata.getKeyColumns()))) {
+            return null;
+        }
+
+        return mapper;
+    }
+
+    static String[] columnNames(List<ColumnMetadata> columns) {
+        String[] names = new String[columns.size()];
+        for (int i = 0; i < names.length; ++i) {
+            names[i] = columns.get(i).getColumnName();
+        }
+        return names;
+    }
+
+    public static boolean isGeneratedEnabled() {
+        return generatedEnabled;
+    }
+
+    /**
+     * Разрешает или запрещает сгенерированные отображения для моделей
+     * классов, которые ещё не построены (например, для сравнения
+     * производительности)
+     * @param enabled использовать ли сгенерированные отображения
+     */
+    public static void setGeneratedEnabled(boolean enabled) {
+        generatedEnabled = enabled;
+    }
+}
@@ -0,0 +1,222 @@
+package metadata;
+
+import annotations.TaggedObject;
+import classes.ReflectionHelper;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Неизменяемая модель отображения класса на таблицу БД.
+ * Содержит имя таблицы и упорядоченные списки колонок
+ * (всех, ключевых и неключевых). Строится один раз на класс
+ * и разделяется всеми dao, поэтому на каждом вызове
+ * dao рефлексивный обход иерархии классов не выполняется.
+ * Объекты целиком пишутся и читаются отображением (getMapper),
+ * сгенерированным при компиляции, если оно есть.
+ *
+ * @param <T> класс, помеченный TaggedObject
+ */
+public final class EntityMetadata<T> {
+    //уже построенные модели классов
+    private static final ConcurrentMap<Class<?>, EntityMetadata<?>> cache =
+            new ConcurrentHashMap<>();
+
+    private final Class<T> entityClass;
+    private final EntityInstantiator<T> instantiator;
+    private final String tableName;
+    private final List<ColumnMetadata> columns;
+    private final List<ColumnMetadata> keyColumns;
+    private final List<ColumnMetadata> nonKeyColumns;
+    private final Map<String, ColumnMetadata> byColumnName;
+    private final Map<String, ColumnMetadata> byFieldName;
+    private final EntityMapper<T> mapper;
+
+    private EntityMetadata(Class<T> entityClass, EntityInstantiator<T> instantiator,
+                           String tableName, List<ColumnMetadata> columns) {
+        this.entityClass = entityClass;
+        this.instantiator = instantiator;
+        this.tableName = tableName;
+
+        List<ColumnMetadata> keys = new ArrayList<>();
+        List<ColumnMetadata> nonKeys = new ArrayList<>();
+        Map<String, ColumnMetadata> columnNames = new HashMap<>();
+        Map<String, ColumnMetadata> fieldNames = new HashMap<>();
+        for (ColumnMetadata column : columns) {
+            (column.isKey() ? keys : nonKeys).add(column);
+            //ближайшее в иерархии поле перекрывает родительское
+            if (!fieldNames.containsKey(column.getFieldName())) {
+                fieldNames.put(column.getFieldName(), column);
+                columnNames.put(column.getColumnName(), column);
+            }
+        }
+
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.keyColumns = Collections.unmodifiableList(keys);
+        this.nonKeyColumns = Collections.unmodifiableList(nonKeys);
+        this.byColumnName = Collections.unmodifiableMap(columnNames);
+        this.byFieldName = Collections.unmodifiableMap(fieldNames);
+        this.mapper = EntityMappers.forMetadata(this);
+    }
+
+    /**
+     * Возвращает модель класса, строя её при первом обращении
+     * @param cls класс
+     * @return модель класса
+     * @throws NoTableTitleException если класс не помечен именем таблицы
+     * @throws NoKeyFieldsException если у класса нет ключевых полей
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityMetadata<T> forClass(Class<T> cls)
+            throws NoTableTitleException, NoKeyFieldsException {
+        EntityMetadata<T> metadata = (EntityMetadata<T>) cache.get(cls);
+        if (metadata == null) {
+            metadata = build(cls);
+            EntityMetadata<T> existing = (EntityMetadata<T>) cache.putIfAbsent(cls, metadata);
+            if (existing != null) {
+                metadata = existing;
+            }
+        }
+
+        return metadata;
+    }
+
+    /**
+     * Строит модель класса без использования кэша со стратегией доступа
+     * к полям по умолчанию
+     * @param cls класс
+     * @return модель класса
+     * @throws NoTableTitleException
+     * @throws NoKeyFieldsException
+     */
+    public static <T> EntityMetadata<T> build(Class<T> cls)
+            throws NoTableTitleException, NoKeyFieldsException {
+        return build(cls, AccessorStrategies.getDefault());
+    }
+
+    /**
+     * Строит модель класса без использования кэша
+     * @param cls класс
+     * @param strategy стратегия доступа к полям и создания объектов
+     * @return модель класса
+     * @throws NoTableTitleException
+     * @throws NoKeyFieldsException
+     */
+    public static <T> EntityMetadata<T> build(Class<T> cls, AccessorStrategy strategy)
+            throws NoTableTitleException, NoKeyFieldsException {
+        TaggedObject tag = cls.getAnnotation(TaggedObject.class);
+        if (tag == null || tag.name().length() == 0) {
+            throw new NoTableTitleException("Class " + cls.getSimpleName() +
+                    " is not tagged");
+        }
+
+        List<ColumnMetadata> columns = new ArrayList<>();
+        for (Field field : ReflectionHelper.getAllValidFields(cls)) {
+            columns.add(new ColumnMetadata(field, strategy));
+        }
+
+        EntityMetadata<T> metadata = new EntityMetadata<>(cls, strategy.instantiatorFor(cls),
+                tag.name(), columns);
+        if (metadata.keyColumns.isEmpty()) {
+            throw new NoKeyFieldsException("Class " + cls.getSimpleName() +
+                    " has no key fields");
+        }
+
+        return metadata;
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * Создаёт новый объект класса конструктором без параметров
+     * @return объект с незаполненными полями
+     */
+    public T newInstance() {
+        return instantiator.newInstance();
+    }
+
+    /**
+     * Отображение, которым объекты пишутся в запросы и читаются
+     * из результатов по всем колонкам модели
+     * @return сгенерированное отображение или отображение через колонки
+     */
+    public EntityMapper<T> getMapper() {
+        return mapper;
+    }
+
+    /**
+     * Получает значения ключевых полей объекта
+     * @param entity объект с заполненными ключевыми полями
+     * @return ключ объекта
+     */
+    public EntityKey keyOf(T entity) {
+        Object[] values = new Object[keyColumns.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = keyColumns.get(i).get(entity);
+        }
+
+        return new EntityKey(values);
+    }
+
+    /**
+     * Создаёт новый объект с теми же значениями полей
+     * @param entity исходный объект
+     * @return копия объекта
+     */
+    public T copy(T entity) {
+        T copy = newInstance();
+        for (ColumnMetadata column : columns) {
+            column.set(copy, column.get(entity));
+        }
+
+        return copy;
+    }
+
+    /** Имя таблицы из аннотации TaggedObject */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /** Все колонки в порядке полей класса, начиная с самого класса */
+    public List<ColumnMetadata> getColumns() {
+        return columns;
+    }
+
+    /** Колонки, помеченные KeyField */
+    public List<ColumnMetadata> getKeyColumns() {
+        return keyColumns;
+    }
+
+    /** Колонки, не являющиеся ключевыми */
+    public List<ColumnMetadata> getNonKeyColumns() {
+        return nonKeyColumns;
+    }
+
+    /**
+     * Находит колонку по её имени в under_score
+     * @param columnName имя колонки
+     * @return колонка или null, если её нет
+     */
+    public ColumnMetadata getColumn(String columnName) {
+        return byColumnName.get(columnName);
+    }
+
+    /**
+     * Находит колонку по имени поля класса
+     * @param fieldName имя поля
+     * @return колонка или null, если её нет
+     */
+    public ColumnMetadata getColumnByField(String fieldName) {
+        return byFieldName.get(fieldName);
+    }
+}
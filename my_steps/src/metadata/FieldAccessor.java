@@ -0,0 +1,90 @@
+package metadata;
+
+/**
+ * Доступ к значению одного поля объекта.
+ * Реализации создаются стратегией AccessorStrategy один раз на поле.
+ * Типизированные методы позволяют читать и писать примитивные поля
+ * без упаковки; по умолчанию они выражены через get и set, и стратегии
+ * переопределяют их. Вызывать типизированный метод можно только для поля
+ * соответствующего примитивного типа.
+ */
+public abstract class FieldAccessor {
+
+    /**
+     * Получает значение поля объекта
+     * @param entity объект
+     * @return значение поля
+     */
+    public abstract Object get(Object entity);
+
+    /**
+     * Записывает значение в поле объекта
+     * @param entity объект
+     * @param value новое значение поля
+     */
+    public abstract void set(Object entity, Object value);
+
+    public int getInt(Object entity) {
+        return (Integer) get(entity);
+    }
+
+    public void setInt(Object entity, int value) {
+        set(entity, value);
+    }
+
+    public long getLong(Object entity) {
+        return (Long) get(entity);
+    }
+
+    public void setLong(Object entity, long value) {
+        set(entity, value);
+    }
+
+    public double getDouble(Object entity) {
+        return (Double) get(entity);
+    }
+
+    public void setDouble(Object entity, double value) {
+        set(entity, value);
+    }
+
+    public float getFloat(Object entity) {
+        return (Float) get(entity);
+    }
+
+    public void setFloat(Object entity, float value) {
+        set(entity, value);
+    }
+
+    public short getShort(Object entity) {
+        return (Short) get(entity);
+    }
+
+    public void setShort(Object entity, short value) {
+        set(entity, value);
+    }
+
+    public byte getByte(Object entity) {
+        return (Byte) get(entity);
+    }
+
+    public void setByte(Object entity, byte value) {
+        set(entity, value);
+    }
+
+    public boolean getBoolean(Object entity) {
+        return (Boolean) get(entity);
+    }
+
+    public void setBoolean(Object entity, boolean value) {
+        set(entity, value);
+    }
+
+    public char getChar(Object entity) {
+        return (Character) get(entity);
+    }
+
+    public void setChar(Object entity, char value) {
+        set(entity, value);
+    }
+}
@@ -0,0 +1,248 @@
+package metadata;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+/**
+ * Доступ к полям и создание объектов через MethodHandle,
+ * привязанные один раз на поле и класс. Если привязать
+ * MethodHandle не удалось, используется ReflectiveAccessorStrategy.
+ * Не используется по умолчанию (см. AccessorStrategies).
+ */
+public class MethodHandleAccessorStrategy implements AccessorStrategy {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private final AccessorStrategy fallback = new ReflectiveAccessorStrategy();
+
+    @Override
+    public FieldAccessor accessorFor(final Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandle getter = lookup.unreflectGetter(field);
+            MethodHandle setter = lookup.unreflectSetter(field);
+            return new MethodHandleFieldAccessor(field.getName(),
+                    getter.asType(GETTER_TYPE), setter.asType(SETTER_TYPE),
+                    getter.asType(MethodType.methodType(field.getType(), Object.class)),
+                    setter.asType(MethodType.methodType(void.class, Object.class, field.getType())));
+        } catch (IllegalAccessException e) {
+            return fallback.accessorFor(field);
+        }
+    }
+
+    @Override
+    public <T> EntityInstantiator<T> instantiatorFor(final Class<T> cls) {
+        final MethodHandle constructor;
+        try {
+            Constructor<T> declared = cls.getDeclaredConstructor();
+            declared.setAccessible(true);
+            constructor = lookup.unreflectConstructor(declared).asType(CONSTRUCTOR_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return fallback.instantiatorFor(cls);
+        }
+
+        return new EntityInstantiator<T>() {
+            @Override
+            public T newInstance() {
+                try {
+                    return cls.cast((Object) constructor.invokeExact());
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Can't instantiate " + cls.getName(), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Доступ к полю через MethodHandle. Помимо обобщённых get/set
+     * хранит MethodHandle с точным типом поля, через которые
+     * примитивные значения читаются и пишутся без упаковки.
+     */
+    private static class MethodHandleFieldAccessor extends FieldAccessor {
+        private final String name;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+        private final MethodHandle typedGetter;
+        private final MethodHandle typedSetter;
+
+        MethodHandleFieldAccessor(String name, MethodHandle getter, MethodHandle setter,
+                                  MethodHandle typedGetter, MethodHandle typedSetter) {
+            this.name = name;
+            this.getter = getter;
+            this.setter = setter;
+            this.typedGetter = typedGetter;
+            this.typedSetter = typedSetter;
+        }
+
+        private IllegalStateException failure(Throwable e) {
+            return new IllegalStateException("Can't access field " + name, e);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return (Object) getter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                setter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public int getInt(Object entity) {
+            try {
+                return (int) typedGetter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setInt(Object entity, int value) {
+            try {
+                typedSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public long getLong(Object entity) {
+            try {
+                return (long) typedGetter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setLong(Object entity, long value) {
+            try {
+                typedSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public double getDouble(Object entity) {
+            try {
+                return (double) typedGetter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setDouble(Object entity, double value) {
+            try {
+                typedSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public float getFloat(Object entity) {
+            try {
+                return (float) typedGetter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setFloat(Object entity, float value) {
+            try {
+                typedSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public short getShort(Object entity) {
+            try {
+                return (short) typedGetter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setShort(Object entity, short value) {
+            try {
+                typedSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public byte getByte(Object entity) {
+            try {
+                return (byte) typedGetter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setByte(Object entity, byte value) {
+            try {
+                typedSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public boolean getBoolean(Object entity) {
+            try {
+                return (boolean) typedGetter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setBoolean(Object entity, boolean value) {
+            try {
+                typedSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public char getChar(Object entity) {
+            try {
+                return (char) typedGetter.invokeExact(entity);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setChar(Object entity, char value) {
+            try {
+                typedSetter.invokeExact(entity, value);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        }
+    }
+}
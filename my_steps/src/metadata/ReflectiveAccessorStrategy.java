@@ -0,0 +1,219 @@
+package metadata;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
+/**
+ * Доступ к полям через Field.get/Field.set и создание объектов
+ * через Constructor.newInstance. Используется как запасной вариант,
+ * если другие стратегии не могут привязаться к полю.
+ */
+public class ReflectiveAccessorStrategy implements AccessorStrategy {
+
+    @Override
+    public FieldAccessor accessorFor(final Field field) {
+        field.setAccessible(true);
+        return new ReflectiveFieldAccessor(field);
+    }
+
+    @Override
+    public <T> EntityInstantiator<T> instantiatorFor(final Class<T> cls) {
+        final Constructor<T> constructor;
+        try {
+            constructor = cls.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Class " + cls.getName() +
+                    " has no default constructor", e);
+        }
+        constructor.setAccessible(true);
+
+        return new EntityInstantiator<T>() {
+            @Override
+            public T newInstance() {
+                try {
+                    return constructor.newInstance();
+                } catch (Exception e) {
+                    throw new IllegalStateException("Can't instantiate " + cls.getName(), e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Доступ к полю через рефлексию. Поле уже сделано доступным,
+     * поэтому IllegalAccessException означает ошибку в модели класса.
+     */
+    private static class ReflectiveFieldAccessor extends FieldAccessor {
+        private final Field field;
+
+        ReflectiveFieldAccessor(Field field) {
+            this.field = field;
+        }
+
+        private IllegalStateException failure(IllegalAccessException e) {
+            return new IllegalStateException("Can't access field " + field.getName(), e);
+        }
+
+        @Override
+        public Object get(Object entity) {
+            try {
+                return field.get(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void set(Object entity, Object value) {
+            try {
+                field.set(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public int getInt(Object entity) {
+            try {
+                return field.getInt(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setInt(Object entity, int value) {
+            try {
+                field.setInt(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public long getLong(Object entity) {
+            try {
+                return field.getLong(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setLong(Object entity, long value) {
+            try {
+                field.setLong(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public double getDouble(Object entity) {
+            try {
+                return field.getDouble(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setDouble(Object entity, double value) {
+            try {
+                field.setDouble(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public float getFloat(Object entity) {
+            try {
+                return field.getFloat(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setFloat(Object entity, float value) {
+            try {
+                field.setFloat(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public short getShort(Object entity) {
+            try {
+                return field.getShort(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setShort(Object entity, short value) {
+            try {
+                field.setShort(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public byte getByte(Object entity) {
+            try {
+                return field.getByte(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setByte(Object entity, byte value) {
+            try {
+                field.setByte(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public boolean getBoolean(Object entity) {
+            try {
+                return field.getBoolean(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setBoolean(Object entity, boolean value) {
+            try {
+                field.setBoolean(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public char getChar(Object entity) {
+            try {
+                return field.getChar(entity);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void setChar(Object entity, char value) {
+            try {
+                field.setChar(entity, value);
+            } catch (IllegalAccessException e) {
+                throw failure(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package metadata;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Отображение через колонки модели класса: каждая колонка пишется
+ * и читается своей привязкой (ColumnBinding) через доступ к полю
+ * стратегии модели (AccessorStrategy)
+ */
+final class ReflectiveEntityMapper<T> implements EntityMapper<T> {
+    private final EntityMetadata<T> metadata;
+    private final ColumnMetadata[] columns;
+    private final ColumnMetadata[] keyColumns;
+    private final ColumnMetadata[] nonKeyColumns;
+
+    ReflectiveEntityMapper(EntityMetadata<T> metadata) {
+        this.metadata = metadata;
+        this.columns = toArray(metadata.getColumns());
+        this.keyColumns = toArray(metadata.getKeyColumns());
+        this.nonKeyColumns = toArray(metadata.getNonKeyColumns());
+    }
+
+    private static ColumnMetadata[] toArray(List<ColumnMetadata> columns) {
+        return columns.toArray(new ColumnMetadata[columns.size()]);
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return EntityMappers.columnNames(metadata.getColumns());
+    }
+
+    @Override
+    public String[] getKeyColumnNames() {
+        return EntityMappers.columnNames(metadata.getKeyColumns());
+    }
+
+    @Override
+    public T newInstance() {
+        return metadata.newInstance();
+    }
+
+    @Override
+    public int bindColumns(PreparedStatement statement, int index, T entity) throws SQLException {
+        return bind(statement, index, columns, entity);
+    }
+
+    @Override
+    public int bindKeyColumns(PreparedStatement statement, int index, T entity) throws SQLException {
+        return bind(statement, index, keyColumns, entity);
+    }
+
+    @Override
+    public int bindNonKeyColumns(PreparedStatement statement, int index, T entity) throws SQLException {
+        return bind(statement, index, nonKeyColumns, entity);
+    }
+
+    private static int bind(PreparedStatement statement, int index, ColumnMetadata[] columns, Object entity)
+            throws SQLException {
+        for (ColumnMetadata column : columns) {
+            column.bind(statement, index++, entity);
+        }
+        return index;
+    }
+
+    @Override
+    public T read(ResultSet rs) throws SQLException {
+        T entity = metadata.newInstance();
+        for (int i = 1; i <= columns.length; ++i) {
+            columns[i - 1].read(rs, i, entity);
+        }
+
+        return entity;
+    }
+}
@@ -0,0 +1,40 @@
+package metrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Передаёт сведения об операциях нескольким получателям по порядку,
+ * например MetricsRegistry и StatementLog
+ */
+public class CompositeListener implements DaoListener {
+    private final DaoListener[] listeners;
+
+    /**
+     * @param listeners получатели
+     */
+    public CompositeListener(DaoListener... listeners) {
+        this.listeners = listeners.clone();
+    }
+
+    @Override
+    public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                   long prepareNanos, long executeNanos, long mapNanos, int rows) {
+        for (DaoListener listener : listeners) {
+            listener.operationCompleted(entityClass, operation, sql, parameters,
+                    prepareNanos, executeNanos, mapNanos, rows);
+        }
+    }
+
+    @Override
+    public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                long elapsedNanos, Throwable error) {
+        for (DaoListener listener : listeners) {
+            listener.operationFailed(entityClass, operation, sql, elapsedNanos, error);
+        }
+    }
+
+    public List<DaoListener> getListeners() {
+        return Arrays.asList(listeners.clone());
+    }
+}
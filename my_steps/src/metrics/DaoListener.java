@@ -0,0 +1,42 @@
+package metrics;
+
+/**
+ * Получатель сведений о выполненных операциях dao.
+ * Время операции делится на фазы: подготовка (поиск текста запроса,
+ * получение подготовленного запроса и запись параметров), выполнение
+ * запроса в БД и чтение строк результата в объекты.
+ * Текст запроса передаётся с параметрами-?, поэтому одинаков
+ * для всех вызовов операции с одним числом объектов.
+ *
+ * Методы вызываются в потоке, выполнившем операцию, сразу после неё,
+ * поэтому должны быть быстрыми, потокобезопасными и не выбрасывать исключений.
+ */
+public interface DaoListener {
+
+    /**
+     * Операция выполнена
+     * @param entityClass класс объектов dao
+     * @param operation операция
+     * @param sql текст последнего выполненного запроса или null, если
+     *            операция не обращалась к БД (объект взят из кэша)
+     * @param parameters число записанных параметров всех запросов операции
+     * @param prepareNanos время подготовки
+     * @param executeNanos время выполнения запросов
+     * @param mapNanos время чтения строк результата
+     * @param rows число записанных или прочитанных объектов
+     */
+    public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                   long prepareNanos, long executeNanos, long mapNanos, int rows);
+
+    /**
+     * Операция завершилась исключением
+     * @param entityClass класс объектов dao
+     * @param operation операция
+     * @param sql текст запроса, подготовленного последним, или null
+     * @param elapsedNanos время от начала операции до ошибки
+     * @param error исключение, выброшенное dao, или null, если
+     *              исключение возникло не при обращении к БД
+     */
+    public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                long elapsedNanos, Throwable error);
+}
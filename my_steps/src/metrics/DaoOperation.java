@@ -0,0 +1,12 @@
+package metrics;
+
+/**
+ * Операции ReflectionJdbcDao, о которых сообщается DaoListener
+ */
+public enum DaoOperation {
+    INSERT, UPDATE, DELETE, UPSERT,
+    INSERT_ALL, UPSERT_ALL, UPDATE_ALL, DELETE_ALL, BULK_LOAD,
+    SELECT_BY_KEY, SELECT_BY_KEYS, SELECT, SELECT_TUPLES, COUNT, SELECT_PAGE, SELECT_ALL,
+    /** Чтение через iterator, stream или forEach; сообщается при закрытии итератора */
+    ITERATE
+}
@@ -0,0 +1,16 @@
+package metrics;
+
+/**
+ * Получатель подозрительных операций, найденных StatementLog:
+ * медленных и повторяющихся одним и тем же запросом (N+1).
+ * Вызывается в потоке, выполнившем операцию, не больше одного раза
+ * на повторяющийся запрос в области или окне времени.
+ */
+public interface DiagnosticsHandler {
+
+    /**
+     * Найдена подозрительная операция
+     * @param record запись операции с причиной подозрения и стеком вызвавшего кода
+     */
+    public void statementFlagged(StatementRecord record);
+}
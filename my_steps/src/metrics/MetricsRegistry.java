@@ -0,0 +1,130 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Хранит в памяти сведения об операциях dao по классам и операциям.
+ * Назначается dao или фабрике как DaoListener; накопленное читается
+ * через get и getAll или текстом для сбора метрик через scrape.
+ */
+public class MetricsRegistry implements DaoListener {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final DaoOperation[] OPERATIONS = DaoOperation.values();
+
+    //класс -> сведения по номерам операций
+    private final ConcurrentMap<Class<?>, AtomicReferenceArray<OperationMetrics>> metrics =
+            new ConcurrentHashMap<>();
+
+    @Override
+    public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                   long prepareNanos, long executeNanos, long mapNanos, int rows) {
+        metricsOf(entityClass, operation).recordCompleted(prepareNanos, executeNanos, mapNanos, rows);
+    }
+
+    @Override
+    public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                long elapsedNanos, Throwable error) {
+        metricsOf(entityClass, operation).recordFailed();
+    }
+
+    private OperationMetrics metricsOf(Class<?> entityClass, DaoOperation operation) {
+        AtomicReferenceArray<OperationMetrics> byOperation = metrics.get(entityClass);
+        if (byOperation == null) {
+            byOperation = new AtomicReferenceArray<>(OPERATIONS.length);
+            AtomicReferenceArray<OperationMetrics> existing = metrics.putIfAbsent(entityClass, byOperation);
+            if (existing != null) {
+                byOperation = existing;
+            }
+        }
+        OperationMetrics result = byOperation.get(operation.ordinal());
+        if (result == null) {
+            byOperation.compareAndSet(operation.ordinal(), null, new OperationMetrics(entityClass, operation));
+            result = byOperation.get(operation.ordinal());
+        }
+
+        return result;
+    }
+
+    /**
+     * Сведения об операции класса
+     * @param entityClass класс объектов
+     * @param operation операция
+     * @return сведения или null, если операция не выполнялась
+     */
+    public OperationMetrics get(Class<?> entityClass, DaoOperation operation) {
+        AtomicReferenceArray<OperationMetrics> byOperation = metrics.get(entityClass);
+        return byOperation == null ? null : byOperation.get(operation.ordinal());
+    }
+
+    /** Сведения обо всех выполнявшихся операциях */
+    public List<OperationMetrics> getAll() {
+        List<OperationMetrics> result = new ArrayList<>();
+        for (AtomicReferenceArray<OperationMetrics> byOperation : metrics.values()) {
+            for (int i = 0; i < byOperation.length(); ++i) {
+                if (byOperation.get(i) != null) {
+                    result.add(byOperation.get(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Обнуляет все накопленные сведения */
+    public void reset() {
+        for (OperationMetrics operation : getAll()) {
+            operation.reset();
+        }
+    }
+
+    /**
+     * Накопленные сведения в текстовом формате Prometheus:
+     * счётчики операций, ошибок и объектов и квантили длительностей
+     * фаз в секундах
+     * @return текст метрик
+     */
+    public String scrape() {
+        StringBuilder text = new StringBuilder();
+        text.append("# TYPE dao_operations_total counter\n")
+                .append("# TYPE dao_operation_errors_total counter\n")
+                .append("# TYPE dao_rows_total counter\n")
+                .append("# TYPE dao_operation_seconds summary\n");
+        for (OperationMetrics operation : getAll()) {
+            String labels = "entity=\"" + operation.getEntityClass().getSimpleName() +
+                    "\",operation=\"" + operation.getOperation() + "\"";
+            text.append("dao_operations_total{").append(labels).append("} ")
+                    .append(operation.getCompletedCount()).append('\n');
+            text.append("dao_operation_errors_total{").append(labels).append("} ")
+                    .append(operation.getFailedCount()).append('\n');
+            text.append("dao_rows_total{").append(labels).append("} ")
+                    .append(operation.getRows()).append('\n');
+            appendPhase(text, labels, "prepare", operation.getPrepare());
+            appendPhase(text, labels, "execute", operation.getExecute());
+            appendPhase(text, labels, "map", operation.getMap());
+            appendPhase(text, labels, "total", operation.getTotal());
+        }
+
+        return text.toString();
+    }
+
+    private static void appendPhase(StringBuilder text, String labels, String phase, LatencyHistogram histogram) {
+        String phaseLabels = labels + ",phase=\"" + phase + "\"";
+        for (double quantile : QUANTILES) {
+            text.append("dao_operation_seconds{").append(phaseLabels).append(",quantile=\"")
+                    .append(quantile).append("\"} ")
+                    .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+        }
+        text.append("dao_operation_seconds_count{").append(phaseLabels).append("} ")
+                .append(histogram.getCount()).append('\n');
+        text.append("dao_operation_seconds_sum{").append(phaseLabels).append("} ")
+                .append(seconds(histogram.getMean() * histogram.getCount())).append('\n');
+    }
+
+    private static String seconds(double nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -0,0 +1,90 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопленные сведения об одной операции dao одного класса:
+ * число выполнений и ошибок, число объектов и длительности по фазам
+ */
+public final class OperationMetrics {
+    private final Class<?> entityClass;
+    private final DaoOperation operation;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LatencyHistogram prepare = new LatencyHistogram();
+    private final LatencyHistogram execute = new LatencyHistogram();
+    private final LatencyHistogram map = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+
+    OperationMetrics(Class<?> entityClass, DaoOperation operation) {
+        this.entityClass = entityClass;
+        this.operation = operation;
+    }
+
+    void recordCompleted(long prepareNanos, long executeNanos, long mapNanos, int count) {
+        completed.increment();
+        rows.add(count);
+        prepare.record(prepareNanos);
+        execute.record(executeNanos);
+        map.record(mapNanos);
+        total.record(prepareNanos + executeNanos + mapNanos);
+    }
+
+    void recordFailed() {
+        failed.increment();
+    }
+
+    void reset() {
+        completed.reset();
+        failed.reset();
+        rows.reset();
+        prepare.reset();
+        execute.reset();
+        map.reset();
+        total.reset();
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public DaoOperation getOperation() {
+        return operation;
+    }
+
+    /** Число успешно выполненных операций */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /** Число операций, завершившихся исключением */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /** Число записанных или прочитанных объектов успешных операций */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /** Длительности подготовки запросов */
+    public LatencyHistogram getPrepare() {
+        return prepare;
+    }
+
+    /** Длительности выполнения запросов */
+    public LatencyHistogram getExecute() {
+        return execute;
+    }
+
+    /** Длительности чтения строк результата */
+    public LatencyHistogram getMap() {
+        return map;
+    }
+
+    /** Длительности успешных операций целиком */
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+}
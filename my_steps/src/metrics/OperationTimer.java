@@ -0,0 +1,149 @@
+package metrics;
+
+/**
+ * Засекает фазы операции dao и сообщает их DaoListener.
+ * Без получателя все методы сразу возвращаются, не засекая времени,
+ * поэтому выключенные метрики почти ничего не стоят.
+ *
+ * Один экземпляр переиспользуется всеми операциями dao и, как dao,
+ * не потокобезопасен. Вложенные операции (например, select через
+ * другой select) сообщаются один раз как внешняя операция.
+ *
+ * Порядок вызовов: start, затем prepared, executed и mapped по мере
+ * прохождения фаз (можно несколько раз, время и число параметров
+ * складываются), completed при успехе и end в finally.
+ */
+public final class OperationTimer {
+    private final Class<?> entityClass;
+    private DaoListener listener;
+    private DaoOperation operation;
+    private int depth;
+    private boolean completed;
+    private Throwable error;
+    private String sql;
+    private int parameters;
+    private long start;
+    private long mark;
+    private long prepareNanos;
+    private long executeNanos;
+    private long mapNanos;
+    private int rows;
+
+    /**
+     * @param entityClass класс объектов dao
+     * @param listener получатель сведений или null
+     */
+    public OperationTimer(Class<?> entityClass, DaoListener listener) {
+        this.entityClass = entityClass;
+        this.listener = listener;
+    }
+
+    /**
+     * Задаёт получателя сведений; вызывается между операциями
+     * @param listener получатель или null, чтобы выключить замеры
+     */
+    public void setListener(DaoListener listener) {
+        if (depth == 0) {
+            this.listener = listener;
+        }
+    }
+
+    public DaoListener getListener() {
+        return listener;
+    }
+
+    /** Начало операции; начинается фаза подготовки */
+    public void start(DaoOperation operation) {
+        if (listener == null || depth++ > 0) {
+            return;
+        }
+        this.operation = operation;
+        completed = false;
+        error = null;
+        sql = null;
+        parameters = 0;
+        prepareNanos = 0;
+        executeNanos = 0;
+        mapNanos = 0;
+        rows = 0;
+        start = System.nanoTime();
+        mark = start;
+    }
+
+    /**
+     * Конец подготовки запроса; начинается его выполнение
+     * @param sql текст запроса с параметрами-?
+     * @param parameters число записанных параметров
+     */
+    public void prepared(String sql, int parameters) {
+        if (listener != null) {
+            this.sql = sql;
+            this.parameters += parameters;
+            long now = System.nanoTime();
+            prepareNanos += now - mark;
+            mark = now;
+        }
+    }
+
+    /** Конец выполнения запроса; начинается чтение результата */
+    public void executed() {
+        if (listener != null) {
+            long now = System.nanoTime();
+            executeNanos += now - mark;
+            mark = now;
+        }
+    }
+
+    /** Конец чтения строк результата */
+    public void mapped() {
+        if (listener != null) {
+            long now = System.nanoTime();
+            mapNanos += now - mark;
+            mark = now;
+        }
+    }
+
+    /** Возобновление после паузы, время которой ни к одной фазе не относится */
+    public void resume() {
+        if (listener != null) {
+            mark = System.nanoTime();
+        }
+    }
+
+    /**
+     * Операция выполнена. У вложенных операций сообщается
+     * число объектов последней выполненной.
+     * @param count число записанных или прочитанных объектов
+     */
+    public void completed(int count) {
+        if (listener != null) {
+            completed = true;
+            rows = count;
+        }
+    }
+
+    /**
+     * Запоминает исключение, которым завершится операция
+     * @param e исключение
+     * @return то же исключение, для выбрасывания
+     */
+    public <E extends Throwable> E failed(E e) {
+        if (listener != null && error == null) {
+            error = e;
+        }
+        return e;
+    }
+
+    /** Конец операции: сообщает о ней получателю */
+    public void end() {
+        if (listener == null || depth == 0 || --depth > 0) {
+            return;
+        }
+        if (completed && error == null) {
+            listener.operationCompleted(entityClass, operation, sql, parameters,
+                    prepareNanos, executeNanos, mapNanos, rows);
+        } else {
+            listener.operationFailed(entityClass, operation, sql, System.nanoTime() - start, error);
+        }
+    }
+}
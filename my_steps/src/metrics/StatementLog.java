@@ -0,0 +1,217 @@
+package metrics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Диагностический журнал запросов dao. Назначается dao или фабрике
+ * как DaoListener (вместе с MetricsRegistry - через CompositeListener).
+ *
+ * Последние операции хранятся в кольцевом буфере без блокировок:
+ * текст запроса, число параметров, длительность и число объектов.
+ * Подозрительные операции дополнительно попадают в отдельный буфер
+ * и передаются DiagnosticsHandler вместе со стеком вызвавшего кода:
+ * - медленные, дольше порога slowThreshold;
+ * - повторяющиеся: один и тот же запрос выполнен repeatThreshold раз
+ *   в одной области StatementScope (например, единице работы), а вне
+ *   областей - в одном потоке за repeatWindow. Так выглядят обращения
+ *   к selectByKey в цикле вместо одного selectByKeys (N+1).
+ *
+ * Стек снимается только у подозрительных операций, поэтому журнал
+ * можно держать включённым в рабочей системе.
+ */
+public class StatementLog implements DaoListener {
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_FLAGGED_CAPACITY = 256;
+    public static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 100;
+    public static final int DEFAULT_REPEAT_THRESHOLD = 20;
+    public static final long DEFAULT_REPEAT_WINDOW_MILLIS = 1000;
+    //кадры стека этих пакетов не показываются как вызвавший код
+    private static final String[] LIBRARY_PACKAGES = {"metrics.", "dao.", "mySQL.", "embedded."};
+
+    private final StatementRing recent;
+    private final StatementRing flagged;
+    private final ThreadLocal<RepeatCounter> counters = new ThreadLocal<RepeatCounter>() {
+        @Override
+        protected RepeatCounter initialValue() {
+            return new RepeatCounter();
+        }
+    };
+    private volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_THRESHOLD_MILLIS);
+    private volatile int repeatThreshold = DEFAULT_REPEAT_THRESHOLD;
+    private volatile long repeatWindowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_REPEAT_WINDOW_MILLIS);
+    private volatile DiagnosticsHandler handler;
+
+    public StatementLog() {
+        this(DEFAULT_CAPACITY, DEFAULT_FLAGGED_CAPACITY);
+    }
+
+    /**
+     * @param capacity число хранимых последних операций
+     * @param flaggedCapacity число хранимых подозрительных операций
+     */
+    public StatementLog(int capacity, int flaggedCapacity) {
+        recent = new StatementRing(capacity);
+        flagged = new StatementRing(flaggedCapacity);
+    }
+
+    @Override
+    public void operationCompleted(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                                   long prepareNanos, long executeNanos, long mapNanos, int rows) {
+        record(entityClass, operation, sql, parameters, prepareNanos + executeNanos + mapNanos, rows, null);
+    }
+
+    @Override
+    public void operationFailed(Class<?> entityClass, DaoOperation operation, String sql,
+                                long elapsedNanos, Throwable error) {
+        record(entityClass, operation, sql, 0, elapsedNanos, 0, error);
+    }
+
+    private void record(Class<?> entityClass, DaoOperation operation, String sql, int parameters,
+                        long elapsedNanos, int rows, Throwable error) {
+        StatementRecord record = new StatementRecord(recent.nextSequence(), System.currentTimeMillis(),
+                Thread.currentThread().getName(), entityClass, operation, sql, parameters, elapsedNanos, rows, error);
+        recent.put(record);
+
+        if (elapsedNanos >= slowThresholdNanos) {
+            flag(record, StatementRecord.Suspicion.SLOW, 0);
+        }
+        //без запроса (объект из кэша) обращения к БД не было
+        if (sql != null) {
+            int repeats = counters.get().count(sql, repeatWindowNanos);
+            if (repeats == repeatThreshold) {
+                flag(record, StatementRecord.Suspicion.REPEATED, repeats);
+            }
+        }
+    }
+
+    private void flag(StatementRecord record, StatementRecord.Suspicion suspicion, int repeats) {
+        StatementRecord suspect = record.flag(flagged.nextSequence(), suspicion, repeats, callerStack());
+        flagged.put(suspect);
+        DiagnosticsHandler current = handler;
+        if (current != null) {
+            current.statementFlagged(suspect);
+        }
+    }
+
+    /**
+     * Стек текущего потока без кадров журнала и dao
+     * @return кадры, начиная с вызвавшего dao кода
+     */
+    private static StackTraceElement[] callerStack() {
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        int first = 0;
+        while (first < stack.length && isLibraryFrame(stack[first])) {
+            ++first;
+        }
+        StackTraceElement[] caller = new StackTraceElement[stack.length - first];
+        System.arraycopy(stack, first, caller, 0, caller.length);
+
+        return caller;
+    }
+
+    private static boolean isLibraryFrame(StackTraceElement frame) {
+        for (String library : LIBRARY_PACKAGES) {
+            if (frame.getClassName().startsWith(library)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Последние операции, от старых к новым */
+    public List<StatementRecord> getRecent() {
+        return recent.snapshot();
+    }
+
+    /** Последние подозрительные операции, от старых к новым */
+    public List<StatementRecord> getFlagged() {
+        return flagged.snapshot();
+    }
+
+    /**
+     * Очищает буферы. Счётчики повторов потоков сбрасываются
+     * с окончанием их окна или области.
+     */
+    public void clear() {
+        recent.clear();
+        flagged.clear();
+    }
+
+    /**
+     * Задаёт порог медленной операции
+     * @param threshold длительность, начиная с которой операция медленная
+     * @param unit единица длительности
+     */
+    public void setSlowThreshold(long threshold, TimeUnit unit) {
+        slowThresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * Задаёт, сколько выполнений одного запроса считаются N+1
+     * @param repeatThreshold число выполнений
+     */
+    public void setRepeatThreshold(int repeatThreshold) {
+        if (repeatThreshold < 2) {
+            throw new IllegalArgumentException("Repeat threshold must be at least 2: " + repeatThreshold);
+        }
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    /**
+     * Задаёт окно, в котором считаются повторы запросов потока вне StatementScope
+     * @param window длительность окна
+     * @param unit единица длительности
+     */
+    public void setRepeatWindow(long window, TimeUnit unit) {
+        repeatWindowNanos = unit.toNanos(window);
+    }
+
+    /**
+     * Задаёт получателя подозрительных операций
+     * @param handler получатель или null
+     */
+    public void setHandler(DiagnosticsHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Счётчик выполнений запросов одного потока в текущей области
+     * или окне времени
+     */
+    private static final class RepeatCounter {
+        private final Map<String, int[]> counts = new HashMap<>();
+        private long scope;
+        private long windowStart;
+
+        /**
+         * Учитывает выполнение запроса
+         * @param sql текст запроса
+         * @param windowNanos окно времени вне областей
+         * @return число выполнений запроса в области или окне
+         */
+        int count(String sql, long windowNanos) {
+            long current = StatementScope.currentId();
+            if (current != scope) {
+                counts.clear();
+                scope = current;
+                windowStart = System.nanoTime();
+            } else if (current == 0) {
+                long now = System.nanoTime();
+                if (now - windowStart > windowNanos) {
+                    counts.clear();
+                    windowStart = now;
+                }
+            }
+            int[] count = counts.get(sql);
+            if (count == null) {
+                count = new int[1];
+                counts.put(sql, count);
+            }
+
+            return ++count[0];
+        }
+    }
+}
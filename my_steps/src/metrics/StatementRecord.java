@@ -0,0 +1,164 @@
+package metrics;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Запись журнала запросов (см. StatementLog): одна операция dao
+ * с текстом её запроса, длительностью и числом объектов.
+ * У записей о подозрительных операциях заполнена причина
+ * и стек вызвавшего dao кода.
+ */
+public final class StatementRecord {
+    /** Почему операция попала в список подозрительных */
+    public enum Suspicion {
+        /** Операция дольше порога медленных запросов */
+        SLOW,
+        /** Один и тот же запрос повторяется в потоке или единице работы (N+1) */
+        REPEATED
+    }
+
+    private final long sequence;
+    private final long timeMillis;
+    private final String thread;
+    private final Class<?> entityClass;
+    private final DaoOperation operation;
+    private final String sql;
+    private final int parameters;
+    private final long elapsedNanos;
+    private final int rows;
+    private final Throwable error;
+    private final Suspicion suspicion;
+    private final int repeats;
+    private final StackTraceElement[] caller;
+
+    StatementRecord(long sequence, long timeMillis, String thread, Class<?> entityClass, DaoOperation operation,
+                    String sql, int parameters, long elapsedNanos, int rows, Throwable error) {
+        this(sequence, timeMillis, thread, entityClass, operation, sql, parameters, elapsedNanos, rows, error,
+                null, 0, null);
+    }
+
+    private StatementRecord(long sequence, long timeMillis, String thread, Class<?> entityClass,
+                            DaoOperation operation, String sql, int parameters, long elapsedNanos, int rows,
+                            Throwable error, Suspicion suspicion, int repeats, StackTraceElement[] caller) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.thread = thread;
+        this.entityClass = entityClass;
+        this.operation = operation;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.elapsedNanos = elapsedNanos;
+        this.rows = rows;
+        this.error = error;
+        this.suspicion = suspicion;
+        this.repeats = repeats;
+        this.caller = caller;
+    }
+
+    /**
+     * Копия записи, отмеченная как подозрительная
+     * @param sequence номер копии в её журнале
+     * @param suspicion причина
+     * @param repeats число повторов запроса
+     * @param caller стек вызвавшего dao кода
+     * @return отмеченная запись
+     */
+    StatementRecord flag(long sequence, Suspicion suspicion, int repeats, StackTraceElement[] caller) {
+        return new StatementRecord(sequence, timeMillis, thread, entityClass, operation, sql, parameters,
+                elapsedNanos, rows, error, suspicion, repeats, caller);
+    }
+
+    /** Номер записи в журнале, по возрастанию времени добавления */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Время окончания операции, мс с начала эпохи */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /** Имя потока, выполнившего операцию */
+    public String getThread() {
+        return thread;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public DaoOperation getOperation() {
+        return operation;
+    }
+
+    /** Текст запроса с параметрами-? или null, если операция не обращалась к БД */
+    public String getSql() {
+        return sql;
+    }
+
+    /** Число записанных параметров */
+    public int getParameters() {
+        return parameters;
+    }
+
+    /** Длительность операции в наносекундах */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Число записанных или прочитанных объектов */
+    public int getRows() {
+        return rows;
+    }
+
+    /** Исключение, которым завершилась операция, или null */
+    public Throwable getError() {
+        return error;
+    }
+
+    /** Причина подозрения или null у обычной записи */
+    public Suspicion getSuspicion() {
+        return suspicion;
+    }
+
+    /** Сколько раз запрос выполнен подряд в потоке или единице работы (для REPEATED) */
+    public int getRepeats() {
+        return repeats;
+    }
+
+    /** Стек вызвавшего dao кода или null у обычной записи */
+    public StackTraceElement[] getCaller() {
+        return caller == null ? null : caller.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(new SimpleDateFormat("HH:mm:ss.SSS").format(new Date(timeMillis)))
+                .append(" [").append(thread).append("] ")
+                .append(entityClass.getSimpleName()).append(' ').append(operation)
+                .append(String.format(" %.3f ms", elapsedNanos / 1e6))
+                .append(", rows ").append(rows)
+                .append(", parameters ").append(parameters);
+        if (error != null) {
+            text.append(", failed: ").append(error);
+        }
+        if (suspicion != null) {
+            text.append(", ").append(suspicion);
+            if (suspicion == Suspicion.REPEATED) {
+                text.append(" x").append(repeats);
+            }
+        }
+        if (sql != null) {
+            text.append(": ").append(sql);
+        }
+        if (caller != null) {
+            for (StackTraceElement frame : caller) {
+                text.append("\n\tat ").append(frame);
+            }
+        }
+
+        return text.toString();
+    }
+}
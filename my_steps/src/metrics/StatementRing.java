@@ -0,0 +1,75 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Кольцевой буфер последних записей журнала без блокировок:
+ * запись занимает номер атомарным инкрементом и кладётся в ячейку
+ * номер % ёмкость, вытесняя самую старую.
+ */
+final class StatementRing {
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReferenceArray<StatementRecord> slots;
+    private final int mask;
+
+    /**
+     * @param capacity ёмкость; округляется вверх до степени двойки
+     */
+    StatementRing(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /** Занимает номер следующей записи */
+    long nextSequence() {
+        return sequence.getAndIncrement();
+    }
+
+    /**
+     * Кладёт запись в ячейку её номера
+     * @param record запись с номером, полученным nextSequence
+     */
+    void put(StatementRecord record) {
+        slots.set((int) (record.getSequence() & mask), record);
+    }
+
+    /**
+     * Записи, находящиеся в буфере, от старых к новым. Записи, номер
+     * которых занят, но которые ещё не положены или уже вытеснены
+     * во время чтения, пропускаются.
+     * @return копия записей
+     */
+    List<StatementRecord> snapshot() {
+        long end = sequence.get();
+        long start = Math.max(0, end - slots.length());
+        List<StatementRecord> result = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; ++i) {
+            StatementRecord record = slots.get((int) (i & mask));
+            if (record != null && record.getSequence() == i) {
+                result.add(record);
+            }
+        }
+
+        return result;
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); ++i) {
+            slots.set(i, null);
+        }
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,78 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Область потока, внутри которой StatementLog считает повторы
+ * одинаковых запросов целиком, а не в скользящем окне времени.
+ * Открывается единицей работы (UnitOfWork) или вызывающим кодом
+ * вокруг обработки одного запроса пользователя:
+ *
+ *     try (StatementScope scope = StatementScope.open()) {
+ *         ...
+ *     }
+ *
+ * Области закрываются в том же потоке в обратном порядке. Во вложенных
+ * областях повторы считаются для внешней.
+ */
+public final class StatementScope implements AutoCloseable {
+    private static final AtomicLong ids = new AtomicLong();
+    private static final ThreadLocal<StatementScope> current = new ThreadLocal<>();
+
+    private final long id;
+    private final StatementScope outer;
+    private boolean closed;
+
+    private StatementScope(long id, StatementScope outer) {
+        this.id = id;
+        this.outer = outer;
+    }
+
+    /**
+     * Открывает область в текущем потоке
+     * @return область; её надо закрыть
+     */
+    public static StatementScope open() {
+        StatementScope scope = new StatementScope(ids.incrementAndGet(), current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * Номер внешней открытой области текущего потока
+     * @return номер или 0, если область не открыта
+     */
+    static long currentId() {
+        StatementScope scope = current.get();
+        if (scope == null) {
+            return 0;
+        }
+        while (scope.outer != null) {
+            scope = scope.outer;
+        }
+        return scope.id;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        //вложенные области, не закрытые до внешней, закрываются вместе с ней
+        for (StatementScope scope = current.get(); scope != null; scope = scope.outer) {
+            if (scope == this) {
+                StatementScope open = outer;
+                while (open != null && open.closed) {
+                    open = open.outer;
+                }
+                if (open == null) {
+                    current.remove();
+                } else {
+                    current.set(open);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package mySQL;
+
+import metadata.ColumnMetadata;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Поток строк таблицы в формате LOAD DATA по умолчанию: поля разделены
+ * табуляцией, строки - переводом строки, NULL записывается как \N,
+ * а '\', табуляция, перевод строки, возврат каретки, символ 0 и Ctrl-Z
+ * экранируются '\'. Строки кодируются по мере чтения потока,
+ * поэтому в памяти одновременно хранится только текущая строка.
+ *
+ * @param <T> класс объектов
+ */
+public class DelimitedRowStream<T> extends InputStream {
+    private final Iterator<? extends T> entities;
+    private final List<ColumnMetadata> columns;
+    private final StringBuilder row = new StringBuilder();
+    private byte[] buffer = new byte[0];
+    private int position;
+    private int rows;
+
+    /**
+     * @param entities записываемые объекты
+     * @param columns колонки в порядке запроса загрузки
+     */
+    public DelimitedRowStream(Iterator<? extends T> entities, List<ColumnMetadata> columns) {
+        this.entities = entities;
+        this.columns = columns;
+    }
+
+    @Override
+    public int read() {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int read = 0;
+        while (read < len && fill()) {
+            int count = Math.min(len - read, buffer.length - position);
+            System.arraycopy(buffer, position, b, off + read, count);
+            position += count;
+            read += count;
+        }
+
+        return read == 0 ? -1 : read;
+    }
+
+    /** Число строк, отданных потоком к текущему моменту */
+    int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Кодирует следующую строку, если текущая прочитана
+     * @return остались ли непрочитанные байты
+     */
+    private boolean fill() {
+        while (position == buffer.length) {
+            if (!entities.hasNext()) {
+                return false;
+            }
+            encode(entities.next());
+        }
+        return true;
+    }
+
+    private void encode(T entity) {
+        row.setLength(0);
+        for (int i = 0; i < columns.size(); ++i) {
+            if (i > 0) {
+                row.append('\t');
+            }
+            appendValue(columns.get(i).get(entity));
+        }
+        row.append('\n');
+
+        buffer = row.toString().getBytes(StandardCharsets.UTF_8);
+        position = 0;
+        ++rows;
+    }
+
+    private void appendValue(Object value) {
+        if (value == null) {
+            row.append("\\N");
+        } else if (value instanceof Boolean) {
+            row.append((Boolean) value ? '1' : '0');
+        } else if (value instanceof Number) {
+            row.append(value);
+        } else {
+            appendEscaped(String.valueOf(value));
+        }
+    }
+
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    row.append("\\\\");
+                    break;
+                case '\t':
+                    row.append("\\t");
+                    break;
+                case '\n':
+                    row.append("\\n");
+                    break;
+                case '\r':
+                    row.append("\\r");
+                    break;
+                case '\0':
+                    row.append("\\0");
+                    break;
+                case '\u001a':
+                    row.append("\\Z");
+                    break;
+                default:
+                    row.append(c);
+            }
+        }
+    }
+}
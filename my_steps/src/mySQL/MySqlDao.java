@@ -0,0 +1,125 @@
+package mySQL;
+
+import dao.GenericDao;
+import dialects.MySqlDialect;
+import exceptions.DaoException;
+import exceptions.NoKeyFieldsException;
+import exceptions.NoTableTitleException;
+import metadata.EntityMetadata;
+import metrics.DaoOperation;
+import metrics.OperationTimer;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+
+/**
+ * Dao для MySQL: к операциям GenericDao добавляет быструю загрузку
+ * большого числа объектов запросом LOAD DATA LOCAL INFILE.
+ *
+ * @param <T> класс объектов
+ */
+public class MySqlDao<T> extends GenericDao<T> {
+    //интерфейсы запросов Connector/J 8 и 5 с методом setLocalInfileInputStream
+    private static final String[] LOCAL_INFILE_STATEMENTS = {
+            "com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement"};
+    private static final Class<?> localInfileStatement = findLocalInfileStatement();
+
+    public MySqlDao(Connection c, Class<T> cls) throws NoTableTitleException, NoKeyFieldsException {
+        super(c, cls);
+    }
+
+    public MySqlDao(Connection c, EntityMetadata<T> metadata) {
+        super(c, metadata);
+    }
+
+    /**
+     * @param c подключение к MySQL
+     * @param metadata модель класса
+     * @param schema схема БД, в которой хранится таблица класса
+     */
+    public MySqlDao(Connection c, EntityMetadata<T> metadata, String schema) {
+        super(c, metadata, MySqlDialect.INSTANCE, schema);
+    }
+
+    /**
+     * Загружает объекты в таблицу одним запросом LOAD DATA LOCAL INFILE.
+     * Строки передаются серверу потоком по мере кодирования, без временного
+     * файла. Как и у LOAD DATA LOCAL, строки с уже существующим ключом
+     * пропускаются. Подключение должно быть открыто с allowLoadLocalInfile=true,
+     * а на сервере включён local_infile.
+     * Если драйвер подключения не поддерживает передачу потока,
+     * объекты вставляются через insertAll.
+     * @param objects объекты
+     * @return число вставленных строк
+     * @throws DaoException при ошибке загрузки
+     */
+    public int bulkLoad(Collection<T> objects) {
+        if (objects.isEmpty()) {
+            return 0;
+        }
+        OperationTimer timer = getTimer();
+        timer.start(DaoOperation.BULK_LOAD);
+        try {
+            try (Statement statement = getConnection().createStatement()) {
+                if (localInfileStatement != null && statement.isWrapperFor(localInfileStatement)) {
+                    DelimitedRowStream<T> rows = new DelimitedRowStream<>(objects.iterator(), getMetadata().getColumns());
+                    setLocalInfileInputStream(statement.unwrap(localInfileStatement), rows);
+                    //строки кодируются во время выполнения запроса
+                    timer.prepared(getQueries().getLoadDataQuery(), 0);
+                    try {
+                        int count = statement.executeUpdate(getQueries().getLoadDataQuery());
+                        timer.executed();
+                        timer.completed(count);
+                        return count;
+                    } finally {
+                        evict(objects);
+                    }
+                }
+            } catch (SQLException e) {
+                throw failure("bulk load into", e);
+            }
+            insertAll(objects);
+            timer.completed(objects.size());
+            return objects.size();
+        } finally {
+            timer.end();
+        }
+    }
+
+    /**
+     * Задаёт поток, из которого драйвер читает данные LOAD DATA LOCAL INFILE
+     * @param statement запрос драйвера MySQL
+     * @param stream поток данных
+     * @throws SQLException
+     */
+    private static void setLocalInfileInputStream(Object statement, InputStream stream) throws SQLException {
+        try {
+            Method setter = localInfileStatement.getMethod("setLocalInfileInputStream", InputStream.class);
+            setter.invoke(statement, stream);
+        } catch (InvocationTargetException e) {
+            throw new SQLException("Can't set LOAD DATA input stream", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("Can't set LOAD DATA input stream", e);
+        }
+    }
+
+    /**
+     * Ищет среди доступных классов интерфейс запроса драйвера MySQL
+     * @return интерфейс или null, если драйвера MySQL нет
+     */
+    private static Class<?> findLocalInfileStatement() {
+        for (String name : LOCAL_INFILE_STATEMENTS) {
+            try {
+                return Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                //пробуем интерфейс другой версии драйвера
+            }
+        }
+        return null;
+    }
+}
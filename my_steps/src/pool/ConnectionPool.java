@@ -0,0 +1,347 @@
+package pool;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул подключений к БД.
+ * Число одновременно выданных подключений ограничено семафором,
+ * свободные подключения хранятся в неблокирующей очереди, поэтому
+ * выдача и возврат подключения при наличии свободных обходятся без блокировок.
+ * Выданное подключение проверяется через Connection.isValid,
+ * при возврате откатывается незавершённая транзакция.
+ * К завершению транзакции выданного подключения можно привязать
+ * действия (см. PooledConnection.afterCompletion).
+ * Подключения, простаивающие дольше idleTimeout, закрываются
+ * фоновым потоком, пока их больше minSize. Ошибки открытия и закрытия
+ * подключений, которые некому выбросить (в фоновом потоке, при закрытии
+ * пула), считаются и доступны через getFailureCount и getLastFailure.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final PoolConfig config;
+    private final Semaphore permits;
+    //свободные подключения; последнее возвращённое выдаётся первым
+    private final ConcurrentLinkedDeque<PhysicalConnection> idle = new ConcurrentLinkedDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder failures = new LongAdder();
+    private volatile SQLException lastFailure;
+
+    /**
+     * Создаёт пул и открывает minSize подключений
+     * @param config настройки пула
+     * @throws SQLException если не удалось открыть подключения
+     */
+    public ConnectionPool(PoolConfig config) throws SQLException {
+        if (config.getMaxSize() < 1 || config.getMinSize() < 0
+                || config.getMinSize() > config.getMaxSize()) {
+            throw new IllegalArgumentException("Invalid pool size: min " + config.getMinSize() +
+                    ", max " + config.getMaxSize());
+        }
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxSize());
+
+        for (int i = 0; i < config.getMinSize(); ++i) {
+            idle.offerLast(new PhysicalConnection(open()));
+        }
+
+        if (config.getEvictionIntervalMillis() > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "connection-pool-evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            evictor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evictIdle();
+                }
+            }, config.getEvictionIntervalMillis(), config.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            evictor = null;
+        }
+    }
+
+    /**
+     * Выдаёт подключение из пула, ожидая освобождения не дольше borrowTimeout.
+     * Закрытие выданного подключения возвращает его в пул.
+     * @return подключение PooledConnection
+     * @throws SQLException если пул закрыт, время ожидания истекло
+     * или не удалось открыть новое подключение
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        if (!permits.tryAcquire()) {
+            long start = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(config.getBorrowTimeoutMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", e);
+            }
+            recordWait(System.nanoTime() - start);
+            if (!acquired) {
+                timeouts.increment();
+                throw new SQLException("Timed out after " + config.getBorrowTimeoutMillis() +
+                        " ms waiting for a connection, pool size " + config.getMaxSize());
+            }
+        }
+
+        try {
+            PhysicalConnection physical = takeIdle();
+            if (physical == null) {
+                physical = new PhysicalConnection(open());
+            }
+            active.incrementAndGet();
+            borrows.increment();
+            return new PooledConnection(this, physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Берёт свободное подключение, закрывая непрошедшие проверку
+     * @return подключение или null, если свободных нет
+     */
+    private PhysicalConnection takeIdle() {
+        PhysicalConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (!config.isValidateOnBorrow() || isValid(entry.connection)) {
+                return entry;
+            }
+            //подключение неисправно, ошибка его закрытия ожидаема
+            destroy(entry.connection);
+        }
+
+        return null;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Открывает новое подключение к БД
+     * @return подключение
+     * @throws SQLException
+     */
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(config.getUrl(),
+                config.getUser(), config.getPassword());
+        total.incrementAndGet();
+        return connection;
+    }
+
+    /**
+     * Закрывает подключение к БД
+     * @param connection подключение
+     * @return ошибка закрытия или null
+     */
+    private SQLException destroy(Connection connection) {
+        total.decrementAndGet();
+        try {
+            connection.close();
+            return null;
+        } catch (SQLException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Запоминает ошибку, которую некому выбросить
+     * @param error ошибка или null
+     */
+    private void recordFailure(SQLException error) {
+        if (error != null) {
+            failures.increment();
+            lastFailure = error;
+        }
+    }
+
+    /**
+     * Принимает возвращённое подключение. Незавершённая транзакция
+     * откатывается; подключение, которое не удалось привести
+     * в исходное состояние, закрывается.
+     * @param physical подключение к БД
+     * @throws SQLException если подключение не удалось закрыть
+     */
+    void release(PhysicalConnection physical) throws SQLException {
+        active.decrementAndGet();
+        SQLException error = null;
+        if (!closed && reset(physical.connection)) {
+            physical.since = System.nanoTime();
+            idle.offerFirst(physical);
+        } else {
+            error = destroy(physical.connection);
+        }
+        permits.release();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private boolean reset(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            connection.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Закрывает подключения, простаивающие дольше idleTimeout,
+     * и открывает недостающие до minSize
+     */
+    void evictIdle() {
+        long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        //в конце очереди дольше всех простаивающие подключения
+        Iterator<PhysicalConnection> iterator = idle.descendingIterator();
+        while (iterator.hasNext() && total.get() > config.getMinSize()) {
+            PhysicalConnection entry = iterator.next();
+            if (entry.since - deadline < 0 && idle.remove(entry)) {
+                recordFailure(destroy(entry.connection));
+            }
+        }
+
+        while (!closed && total.get() < config.getMinSize()) {
+            try {
+                idle.offerLast(new PhysicalConnection(open()));
+            } catch (SQLException e) {
+                //подключение ещё раз попробует открыть getConnection
+                recordFailure(e);
+                break;
+            }
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, nanos)) {
+            //повтор, пока максимум не обновлён
+        }
+    }
+
+    /**
+     * Закрывает свободные подключения; выданные закроются при возврате
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        PhysicalConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            recordFailure(destroy(entry.connection));
+        }
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    /** Число выданных и ещё не возвращённых подключений */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /** Число свободных подключений */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /** Число открытых подключений к БД */
+    public int getTotalCount() {
+        return total.get();
+    }
+
+    /** Число выдач подключений */
+    public long getBorrowCount() {
+        return borrows.sum();
+    }
+
+    /** Число выдач, не дождавшихся свободного подключения */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /** Число ошибок открытия и закрытия подключений в фоновом потоке и при закрытии пула */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Последняя ошибка открытия или закрытия подключения
+     * в фоновом потоке или при закрытии пула
+     * @return ошибка или null
+     */
+    public SQLException getLastFailure() {
+        return lastFailure;
+    }
+
+    /** Суммарное время ожидания свободного подключения в наносекундах */
+    public long getTotalWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    /** Наибольшее время ожидания свободного подключения в наносекундах */
+    public long getMaxWaitNanos() {
+        return maxWaitNanos.get();
+    }
+
+    /**
+     * Подключение к БД, живущее в пуле между выдачами, с привязанным
+     * к нему объектом и моментом последнего возврата в пул
+     */
+    static final class PhysicalConnection {
+        final Connection connection;
+        final AtomicReference<Object> attachment = new AtomicReference<>();
+        long since;
+
+        PhysicalConnection(Connection connection) {
+            this.connection = connection;
+            this.since = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package pool;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Подключение, выданное пулом. Вызовы передаются настоящему подключению
+ * к БД; закрытие возвращает его в пул, после чего выданным подключением
+ * пользоваться нельзя. Каждая выдача создаёт новый объект.
+ */
+public final class PooledConnection implements Connection {
+    private final ConnectionPool pool;
+    private final ConnectionPool.PhysicalConnection entry;
+    private final Connection physical;
+    private final AtomicBoolean returned = new AtomicBoolean();
+    //действия, ждущие завершения текущей транзакции
+    private final List<Runnable> completions = new ArrayList<>();
+
+    PooledConnection(ConnectionPool pool, ConnectionPool.PhysicalConnection entry) {
+        this.pool = pool;
+        this.entry = entry;
+        this.physical = entry.connection;
+    }
+
+    /**
+     * Настоящее подключение к БД, через которое работает выданное.
+     * Одно и то же настоящее подключение выдаётся пулом много раз.
+     * @return подключение к БД
+     */
+    public Connection getPhysicalConnection() {
+        return physical;
+    }
+
+    /**
+     * Объект, привязанный к настоящему подключению, например StatementCache.
+     * Переживает возврат подключения в пул и отбрасывается вместе
+     * с подключением, когда пул его закрывает.
+     * @return привязанный объект или null
+     */
+    public Object getAttachment() {
+        return entry.attachment.get();
+    }
+
+    /**
+     * Привязывает объект к настоящему подключению, если привязанного ещё нет
+     * @param attachment объект
+     * @return привязанный к подключению объект: attachment или прежний
+     */
+    public Object attachIfAbsent(Object attachment) {
+        return entry.attachment.compareAndSet(null, attachment) ? attachment : entry.attachment.get();
+    }
+
+    /**
+     * Регистрирует действие, выполняемое один раз после завершения текущей
+     * транзакции: commit, rollback, включения autocommit или возврата
+     * подключения в пул, при котором транзакция откатывается.
+     * Действие выполняется, даже если завершение не удалось.
+     * @param action действие
+     * @throws IllegalStateException если подключение уже возвращено в пул
+     */
+    public void afterCompletion(Runnable action) {
+        if (returned.get()) {
+            throw new IllegalStateException("Connection is closed");
+        }
+        synchronized (completions) {
+            completions.add(action);
+        }
+    }
+
+    private void runCompletions() {
+        List<Runnable> actions;
+        synchronized (completions) {
+            if (completions.isEmpty()) {
+                return;
+            }
+            actions = new ArrayList<>(completions);
+            completions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Возвращённым в пул подключением пользоваться нельзя
+     * @return настоящее подключение
+     * @throws SQLException если подключение возвращено в пул
+     */
+    private Connection open() throws SQLException {
+        if (returned.get()) {
+            throw new SQLException("Connection is closed");
+        }
+        return physical;
+    }
+
+    /**
+     * Возвращает подключение в пул; повторный вызов ничего не делает
+     */
+    @Override
+    public void close() throws SQLException {
+        if (returned.compareAndSet(false, true)) {
+            try {
+                pool.release(entry);
+            } finally {
+                runCompletions();
+            }
+        }
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return returned.get() || physical.isClosed();
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        try {
+            open().commit();
+        } finally {
+            runCompletions();
+        }
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        try {
+            open().rollback();
+        } finally {
+            runCompletions();
+        }
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        try {
+            open().setAutoCommit(autoCommit);
+        } finally {
+            if (autoCommit) {
+                runCompletions();
+            }
+        }
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        return open().getAutoCommit();
+    }
+
+    @Override
+    public Statement createStatement() throws SQLException {
+        return open().createStatement();
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+        return open().createStatement(resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+            throws SQLException {
+        return open().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return open().prepareStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        return open().prepareStatement(sql, resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
+                                              int resultSetHoldability) throws SQLException {
+        return open().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        return open().prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        return open().prepareStatement(sql, columnIndexes);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        return open().prepareStatement(sql, columnNames);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql) throws SQLException {
+        return open().prepareCall(sql);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+            throws SQLException {
+        return open().prepareCall(sql, resultSetType, resultSetConcurrency);
+    }
+
+    @Override
+    public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
+                                         int resultSetHoldability) throws SQLException {
+        return open().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    }
+
+    @Override
+    public String nativeSQL(String sql) throws SQLException {
+        return open().nativeSQL(sql);
+    }
+
+    @Override
+    public DatabaseMetaData getMetaData() throws SQLException {
+        return open().getMetaData();
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        open().setReadOnly(readOnly);
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        return open().isReadOnly();
+    }
+
+    @Override
+    public void setCatalog(String catalog) throws SQLException {
+        open().setCatalog(catalog);
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        return open().getCatalog();
+    }
+
+    @Override
+    public void setTransactionIsolation(int level) throws SQLException {
+        open().setTransactionIsolation(level);
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        return open().getTransactionIsolation();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return open().getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        open().clearWarnings();
+    }
+
+    @Override
+    public Map<String, Class<?>> getTypeMap() throws SQLException {
+        return open().getTypeMap();
+    }
+
+    @Override
+    public void setTypeMap(Map<String, Class<?>> map) throws SQLException {
+        open().setTypeMap(map);
+    }
+
+    @Override
+    public void setHoldability(int holdability) throws SQLException {
+        open().setHoldability(holdability);
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        return open().getHoldability();
+    }
+
+    @Override
+    public Savepoint setSavepoint() throws SQLException {
+        return open().setSavepoint();
+    }
+
+    @Override
+    public Savepoint setSavepoint(String name) throws SQLException {
+        return open().setSavepoint(name);
+    }
+
+    /**
+     * Откат к точке сохранения не завершает транзакцию
+     */
+    @Override
+    public void rollback(Savepoint savepoint) throws SQLException {
+        open().rollback(savepoint);
+    }
+
+    @Override
+    public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+        open().releaseSavepoint(savepoint);
+    }
+
+    @Override
+    public Clob createClob() throws SQLException {
+        return open().createClob();
+    }
+
+    @Override
+    public Blob createBlob() throws SQLException {
+        return open().createBlob();
+    }
+
+    @Override
+    public NClob createNClob() throws SQLException {
+        return open().createNClob();
+    }
+
+    @Override
+    public SQLXML createSQLXML() throws SQLException {
+        return open().createSQLXML();
+    }
+
+    @Override
+    public boolean isValid(int timeout) throws SQLException {
+        return !returned.get() && physical.isValid(timeout);
+    }
+
+    @Override
+    public void setClientInfo(String name, String value) throws SQLClientInfoException {
+        if (returned.get()) {
+            throw new SQLClientInfoException("Connection is closed", null);
+        }
+        physical.setClientInfo(name, value);
+    }
+
+    @Override
+    public void setClientInfo(Properties properties) throws SQLClientInfoException {
+        if (returned.get()) {
+            throw new SQLClientInfoException("Connection is closed", null);
+        }
+        physical.setClientInfo(properties);
+    }
+
+    @Override
+    public String getClientInfo(String name) throws SQLException {
+        return open().getClientInfo(name);
+    }
+
+    @Override
+    public Properties getClientInfo() throws SQLException {
+        return open().getClientInfo();
+    }
+
+    @Override
+    public Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        return open().createArrayOf(typeName, elements);
+    }
+
+    @Override
+    public Struct createStruct(String typeName, Object[] attributes) throws SQLException {
+        return open().createStruct(typeName, attributes);
+    }
+
+    @Override
+    public void setSchema(String schema) throws SQLException {
+        open().setSchema(schema);
+    }
+
+    @Override
+    public String getSchema() throws SQLException {
+        return open().getSchema();
+    }
+
+    @Override
+    public void abort(Executor executor) throws SQLException {
+        open().abort(executor);
+    }
+
+    @Override
+    public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
+        open().setNetworkTimeout(executor, milliseconds);
+    }
+
+    @Override
+    public int getNetworkTimeout() throws SQLException {
+        return open().getNetworkTimeout();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return open().unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || open().isWrapperFor(iface);
+    }
+
+    @Override
+    public String toString() {
+        return "Pooled " + physical;
+    }
+}